@@ -0,0 +1,15 @@
+package com.casestudy.bank.reactive;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration;
+
+//the H2 driver r2dbc-h2 brings along would otherwise get an embedded JDBC database of its own
+@SpringBootApplication(exclude = DataSourceAutoConfiguration.class)
+public class ReactiveBankApplication {
+
+    public static void main(String[] args) {
+        SpringApplication.run(ReactiveBankApplication.class, args);
+    }
+
+}
@@ -0,0 +1,18 @@
+package com.casestudy.bank.reactive.config;
+
+import com.casestudy.bank.reactive.repository.AccountRows;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.r2dbc.convert.R2dbcCustomConversions;
+
+import java.util.List;
+
+//Replaces Spring Boot's empty conversions, accounts are read and written by AccountRows
+@Configuration
+public class ConversionConfig {
+
+    @Bean
+    public R2dbcCustomConversions r2dbcCustomConversions() {
+        return new R2dbcCustomConversions(List.of(new AccountRows.Reader(), new AccountRows.Writer()));
+    }
+}
@@ -0,0 +1,113 @@
+package com.casestudy.bank.reactive.controller;
+
+import com.casestudy.bank.reactive.dto.AccountBalance;
+import com.casestudy.bank.reactive.dto.CustomerPage;
+import com.casestudy.bank.reactive.dto.FundTransfer;
+import com.casestudy.bank.reactive.model.Account;
+import com.casestudy.bank.reactive.model.Customer;
+import com.casestudy.bank.reactive.service.BankService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import javax.validation.Valid;
+import java.nio.charset.StandardCharsets;
+
+//The /bank endpoints of the JPA application with the same statuses, served from the event loop
+@RestController
+@RequestMapping("/bank")
+public class BankController {
+
+    //text/plain;charset=UTF-8, as Spring MVC answers a String
+    private static final MediaType TEXT_PLAIN_UTF8 = new MediaType(MediaType.TEXT_PLAIN, StandardCharsets.UTF_8);
+
+    @Autowired
+    private BankService bankService;
+
+    @Value("${bank.customers.page.max-size:1000}")
+    private int maxPageSize;
+
+    @PostMapping("/account")
+    public Mono<ResponseEntity<Account>> addAccount(@Valid @RequestBody Account accountRequest) {
+        return Mono.defer(() -> bankService.addAccount(accountRequest))
+                .map(account -> new ResponseEntity<>(account, HttpStatus.CREATED))
+                .defaultIfEmpty(new ResponseEntity<>(HttpStatus.BAD_REQUEST))
+                .onErrorResume(exception -> Mono.just(new ResponseEntity<>(HttpStatus.BAD_REQUEST)));
+    }
+
+    @PutMapping("/customer/{customerId}")
+    public Mono<ResponseEntity<Customer>> updateCustomer(@PathVariable(value = "customerId") Integer customerId, @Valid @RequestBody Customer customerRequest) {
+        return bankService.upDateCustomer(customerId, customerRequest)
+                .map(ResponseEntity::ok)
+                .defaultIfEmpty(new ResponseEntity<>(HttpStatus.NOT_FOUND))
+                .onErrorResume(DataIntegrityViolationException.class, exception -> Mono.just(new ResponseEntity<>(HttpStatus.CONFLICT)));
+    }
+
+    @GetMapping("/customer/{customerId}")
+    public Mono<ResponseEntity<Customer>> getOneCustomer(@PathVariable(value = "customerId") Integer customerId) {
+        return bankService.getCustomerById(customerId)
+                .map(ResponseEntity::ok)
+                .defaultIfEmpty(new ResponseEntity<>(HttpStatus.NOT_FOUND));
+    }
+
+    @GetMapping("/customer")
+    public Mono<ResponseEntity<Customer>> getCustomerByEmail(@RequestParam("email") String email) {
+        return bankService.getCustomerByEmail(email)
+                .map(ResponseEntity::ok)
+                .defaultIfEmpty(new ResponseEntity<>(HttpStatus.NOT_FOUND));
+    }
+
+    //a JSON array, or one customer per line under Accept: application/stream+json with rows read as the client consumes them
+    @GetMapping("/customers")
+    public Flux<Customer> getALLCustomers() {
+        return bankService.getAllCustomers();
+    }
+
+    @GetMapping("/customers/page")
+    public Mono<ResponseEntity<CustomerPage>> getCustomersPage(@RequestParam(value = "after", required = false) Integer after,
+                                                               @RequestParam(value = "size", defaultValue = "100") int size) {
+        if (size < 1 || size > maxPageSize)
+            return Mono.just(new ResponseEntity<>(HttpStatus.BAD_REQUEST));
+        return bankService.getCustomersPage(after, size).collectList().map(customers -> {
+            Integer nextCursor = customers.size() < size ? null : customers.get(customers.size() - 1).getCustomerId();
+            return ResponseEntity.ok(new CustomerPage(customers, nextCursor));
+        });
+    }
+
+    //backpressured: the next rows are fetched only when the client has read the previous ones.
+    //application/stream+json is the newline delimited JSON the Jackson encoder streams, the JPA application's application/x-ndjson
+    @GetMapping(value = "/customers/stream", produces = MediaType.APPLICATION_STREAM_JSON_VALUE)
+    public Flux<Customer> streamAllCustomers() {
+        return bankService.getAllCustomers();
+    }
+
+    @PostMapping("/transfer")
+    public Mono<ResponseEntity<String>> transferFund(@Valid @RequestBody FundTransfer fundTransfer) {
+        return Mono.defer(() -> bankService.transferFunds(fundTransfer.getFromAccount(), fundTransfer.getToAccount(), fundTransfer.getAmount()))
+                .map(this::toTransferResponse);
+    }
+
+    private ResponseEntity<String> toTransferResponse(String result) {
+        ResponseEntity.BodyBuilder response;
+        if (result.equals("SUCCESS"))
+            response = ResponseEntity.status(HttpStatus.OK);
+        else if (result.equals("INSUFFICIENT FUNDS") || result.equals("CONFLICT"))
+            response = ResponseEntity.status(HttpStatus.CONFLICT);
+        else
+            response = ResponseEntity.status(HttpStatus.NOT_FOUND);
+        return response.contentType(TEXT_PLAIN_UTF8).body(result);
+    }
+
+    @GetMapping("/balance/{accountId}")
+    public Mono<ResponseEntity<AccountBalance>> getBalanceOf(@PathVariable(value = "accountId") Integer accountId) {
+        return bankService.getBalanceOf(accountId)
+                .map(ResponseEntity::ok)
+                .defaultIfEmpty(new ResponseEntity<>(HttpStatus.NOT_FOUND));
+    }
+}
@@ -0,0 +1,29 @@
+package com.casestudy.bank.reactive.dto;
+
+import com.casestudy.bank.reactive.model.AccountType;
+import com.casestudy.bank.reactive.money.MoneyDeserializer;
+import com.casestudy.bank.reactive.money.MoneySerializer;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+//Balance-only read view of an Account
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class AccountBalance implements Serializable {
+
+    private Integer accountId;
+
+    private AccountType accountType;
+
+    //minor units
+    @JsonSerialize(using = MoneySerializer.class)
+    @JsonDeserialize(using = MoneyDeserializer.class)
+    private long balance;
+
+}
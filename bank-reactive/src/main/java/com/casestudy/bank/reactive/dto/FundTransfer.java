@@ -0,0 +1,27 @@
+package com.casestudy.bank.reactive.dto;
+
+import com.casestudy.bank.reactive.money.MoneyDeserializer;
+import com.casestudy.bank.reactive.money.MoneySerializer;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class FundTransfer implements Serializable {
+
+    private Integer fromAccount;
+
+    private Integer toAccount;
+
+    //minor units, sent as major units with at most two decimal places
+    @JsonSerialize(using = MoneySerializer.class)
+    @JsonDeserialize(using = MoneyDeserializer.class)
+    private long amount;
+
+}
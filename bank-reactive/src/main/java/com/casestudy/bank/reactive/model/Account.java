@@ -0,0 +1,55 @@
+package com.casestudy.bank.reactive.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.casestudy.bank.reactive.money.MoneyDeserializer;
+import com.casestudy.bank.reactive.money.MoneySerializer;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Transient;
+import org.springframework.data.annotation.Version;
+import org.springframework.data.relational.core.mapping.Table;
+
+import javax.validation.constraints.NotNull;
+import java.io.Serializable;
+import java.util.List;
+
+//Row of the account table, same schema as the JPA application
+@Data
+@NoArgsConstructor
+@Table("account")
+public class Account implements Serializable {
+
+    //identity column, null until inserted
+    @Id
+    private Integer accountId;
+
+    @NotNull(message = "AccountType cannot be null")
+    private AccountType accountType;
+
+    //minor units, stored as DECIMAL(19,2) in major units by AccountRows
+    @JsonSerialize(using = MoneySerializer.class)
+    @JsonDeserialize(using = MoneyDeserializer.class)
+    private long balance;
+
+    //bumped on every update, a transfer that read a stale version fails instead of losing an update
+    @Version
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private Long version;
+
+    //R2DBC maps no relationships, customers are inserted and read with their own statements
+    @Transient
+    @JsonIgnoreProperties("account")
+    @NotNull(message = "Customer cannot be null")
+    private List<Customer> customers;
+
+    public Account(Integer accountId, AccountType accountType, long balance, List<Customer> customers) {
+        this.accountId = accountId;
+        this.accountType = accountType;
+        this.balance = balance;
+        this.customers = customers;
+    }
+}
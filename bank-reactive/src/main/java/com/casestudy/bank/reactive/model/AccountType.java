@@ -0,0 +1,7 @@
+package com.casestudy.bank.reactive.model;
+
+public enum AccountType {
+    CURRENT,
+    JOINT,
+    SAVING
+}
@@ -0,0 +1,53 @@
+package com.casestudy.bank.reactive.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Transient;
+import org.springframework.data.relational.core.mapping.Table;
+
+import javax.validation.constraints.Email;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Size;
+import java.io.Serializable;
+
+//Row of the customer table, its account is joined in by the reads that return it
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Table("customer")
+public class Customer implements Serializable {
+
+    @Id
+    private Integer customerId;
+
+    @NotNull(message = "First Name cannot be null")
+    @Size(max = 65)
+    private String firstName;
+
+    @NotNull(message = "Last Name cannot be null")
+    @Size(max = 65)
+    private String lastName;
+
+    @Email(message = "Invalid Email format")
+    @NotNull(message = "Email cannot be null")
+    @Size(max = 100)
+    private String email;
+
+    @JsonIgnore
+    private Integer accountId;
+
+    @Transient
+    @JsonIgnoreProperties("customers")
+    private Account account;
+
+    public Customer(String firstName, String lastName, String email, Account account) {
+        this.firstName = firstName;
+        this.lastName = lastName;
+        this.email = email;
+        this.account = account;
+    }
+}
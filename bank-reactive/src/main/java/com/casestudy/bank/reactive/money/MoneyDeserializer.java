@@ -0,0 +1,20 @@
+package com.casestudy.bank.reactive.money;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+
+import java.io.IOException;
+
+//Reads a decimal number in major units into minor units, e.g. 200.5 -> 20050
+public class MoneyDeserializer extends JsonDeserializer<Long> {
+
+    @Override
+    public Long deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+        try {
+            return Money.fromDecimal(parser.getDecimalValue());
+        } catch (ArithmeticException exception) {
+            return (Long) context.handleWeirdNumberValue(Long.class, parser.getNumberValue(), "not representable in %d decimal places", Money.SCALE);
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.casestudy.bank.reactive.money;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+
+import java.io.IOException;
+
+//Writes minor units as a decimal number in major units, e.g. 20000 -> 200.00
+public class MoneySerializer extends JsonSerializer<Long> {
+
+    @Override
+    public void serialize(Long value, JsonGenerator generator, SerializerProvider serializers) throws IOException {
+        generator.writeNumber(Money.toDecimal(value));
+    }
+}
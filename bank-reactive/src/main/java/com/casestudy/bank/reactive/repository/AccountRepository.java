@@ -0,0 +1,9 @@
+package com.casestudy.bank.reactive.repository;
+
+import com.casestudy.bank.reactive.model.Account;
+import org.springframework.data.r2dbc.repository.R2dbcRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface AccountRepository extends R2dbcRepository<Account, Integer> {
+}
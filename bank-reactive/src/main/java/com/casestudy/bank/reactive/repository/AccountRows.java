@@ -0,0 +1,54 @@
+package com.casestudy.bank.reactive.repository;
+
+import com.casestudy.bank.reactive.model.Account;
+import com.casestudy.bank.reactive.model.AccountType;
+import com.casestudy.bank.reactive.money.Money;
+import io.r2dbc.spi.Row;
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.data.convert.ReadingConverter;
+import org.springframework.data.convert.WritingConverter;
+import org.springframework.data.r2dbc.mapping.OutboundRow;
+import org.springframework.data.r2dbc.mapping.SettableValue;
+
+import java.math.BigDecimal;
+
+//Account rows with the balance kept as DECIMAL(19,2) in major units and carried as minor units, what MoneyConverter does for
+//the JPA application. R2DBC has no per-column converters, so the whole row is mapped here.
+public final class AccountRows {
+
+    private AccountRows() {
+    }
+
+    public static Account toAccount(Row row) {
+        String accountType = row.get("account_type", String.class);
+        Account account = new Account(row.get("account_id", Integer.class), accountType == null ? null : AccountType.valueOf(accountType),
+                Money.fromDecimal(row.get("balance", BigDecimal.class)), null);
+        account.setVersion(row.get("version", Long.class));
+        return account;
+    }
+
+    @ReadingConverter
+    public static class Reader implements Converter<Row, Account> {
+
+        @Override
+        public Account convert(Row row) {
+            return toAccount(row);
+        }
+    }
+
+    //a null id is left out so the identity column assigns one
+    @WritingConverter
+    public static class Writer implements Converter<Account, OutboundRow> {
+
+        @Override
+        public OutboundRow convert(Account account) {
+            OutboundRow row = new OutboundRow();
+            if (account.getAccountId() != null)
+                row.put("account_id", SettableValue.from(account.getAccountId()));
+            row.put("account_type", SettableValue.fromOrEmpty(account.getAccountType() == null ? null : account.getAccountType().name(), String.class));
+            row.put("balance", SettableValue.from(Money.toDecimal(account.getBalance())));
+            row.put("version", SettableValue.fromOrEmpty(account.getVersion(), Long.class));
+            return row;
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.casestudy.bank.reactive.repository;
+
+import com.casestudy.bank.reactive.model.Account;
+import com.casestudy.bank.reactive.model.Customer;
+import io.r2dbc.spi.Row;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+//Customers with their account joined in one select, the fetch plan the JPA application gets from its eager account
+@Repository
+public class CustomerReads {
+
+    private static final String SELECT = "select c.customer_id, c.first_name, c.last_name, c.email, "
+            + "a.account_id, a.account_type, a.balance, a.version from customer c join account a on a.account_id = c.account_id";
+
+    @Autowired
+    DatabaseClient databaseClient;
+
+    public Flux<Customer> findAll() {
+        return databaseClient.execute(SELECT + " order by c.customer_id")
+                .map((row, metadata) -> toCustomer(row)).all();
+    }
+
+    public Mono<Customer> findById(Integer customerId) {
+        return databaseClient.execute(SELECT + " where c.customer_id = :customerId")
+                .bind("customerId", customerId)
+                .map((row, metadata) -> toCustomer(row)).one();
+    }
+
+    //emails are compared lower cased, as the JPA application's email index does
+    public Mono<Customer> findByEmail(String email) {
+        return databaseClient.execute(SELECT + " where lower(c.email) = :email")
+                .bind("email", email.toLowerCase())
+                .map((row, metadata) -> toCustomer(row)).one();
+    }
+
+    public Flux<Customer> findPage(int afterCustomerId, int size) {
+        return databaseClient.execute(SELECT + " where c.customer_id > :after order by c.customer_id limit :size")
+                .bind("after", afterCustomerId)
+                .bind("size", size)
+                .map((row, metadata) -> toCustomer(row)).all();
+    }
+
+    private static Customer toCustomer(Row row) {
+        Account account = AccountRows.toAccount(row);
+        Customer customer = new Customer(row.get("first_name", String.class), row.get("last_name", String.class),
+                row.get("email", String.class), account);
+        customer.setCustomerId(row.get("customer_id", Integer.class));
+        customer.setAccountId(account.getAccountId());
+        return customer;
+    }
+}
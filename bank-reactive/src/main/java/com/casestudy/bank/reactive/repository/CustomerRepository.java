@@ -0,0 +1,9 @@
+package com.casestudy.bank.reactive.repository;
+
+import com.casestudy.bank.reactive.model.Customer;
+import org.springframework.data.r2dbc.repository.R2dbcRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface CustomerRepository extends R2dbcRepository<Customer, Integer> {
+}
@@ -0,0 +1,141 @@
+package com.casestudy.bank.reactive.service;
+
+import com.casestudy.bank.reactive.dto.AccountBalance;
+import com.casestudy.bank.reactive.model.Account;
+import com.casestudy.bank.reactive.model.AccountType;
+import com.casestudy.bank.reactive.model.Customer;
+import com.casestudy.bank.reactive.repository.AccountRepository;
+import com.casestudy.bank.reactive.repository.CustomerReads;
+import com.casestudy.bank.reactive.repository.CustomerRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+//The BankService of the JPA application on R2DBC: nothing blocks, every result is a Mono or Flux the caller subscribes to
+@Service
+public class BankService {
+
+    @Autowired
+    AccountRepository accountRepository;
+
+    @Autowired
+    CustomerRepository customerRepository;
+
+    @Autowired
+    CustomerReads customerReads;
+
+    @Autowired
+    TransactionalOperator transactionalOperator;
+
+    @Value("${bank.transfer.retry.max-attempts:5}")
+    private int maxAttempts;
+
+    @Value("${bank.transfer.retry.base-backoff-ms:2}")
+    private long baseBackoffMs;
+
+    @Value("${bank.transfer.retry.max-backoff-ms:50}")
+    private long maxBackoffMs;
+
+    //create new account with its customers in one transaction, empty when the customer count does not fit the type
+    public Mono<Account> addAccount(Account request) {
+        if (!hasValidCustomerCount(request))
+            return Mono.empty();
+        Account account = new Account(null, request.getAccountType(), request.getBalance(), null);
+        Mono<Account> saved = accountRepository.save(account).flatMap(inserted -> {
+            List<Customer> customers = new ArrayList<>();
+            for (Customer customer : request.getCustomers())
+                customers.add(new Customer(null, customer.getFirstName(), customer.getLastName(), customer.getEmail().toLowerCase(),
+                        inserted.getAccountId(), null));
+            return customerRepository.saveAll(customers).collectList().map(insertedCustomers -> {
+                inserted.setCustomers(insertedCustomers);
+                return inserted;
+            });
+        });
+        return transactionalOperator.transactional(saved);
+    }
+
+    //SAVING and CURRENT accounts have at most one customer, JOINT accounts at least two
+    public boolean hasValidCustomerCount(Account request) {
+        if (request.getAccountType() == AccountType.SAVING || request.getAccountType() == AccountType.CURRENT)
+            return request.getCustomers().size() <= 1;
+        else
+            return request.getCustomers().size() >= 2;
+    }
+
+    //update customer details, empty when there is no such customer
+    public Mono<Customer> upDateCustomer(Integer customerId, Customer request) {
+        return customerRepository.findById(customerId)
+                .flatMap(customer -> {
+                    customer.setFirstName(request.getFirstName());
+                    customer.setLastName(request.getLastName());
+                    customer.setEmail(request.getEmail());
+                    return customerRepository.save(customer);
+                })
+                .flatMap(customer -> customerReads.findById(customer.getCustomerId()));
+    }
+
+    //get all customer details, rows are emitted as the subscriber requests them
+    public Flux<Customer> getAllCustomers() {
+        return customerReads.findAll();
+    }
+
+    //get one page of customers with id greater than the cursor
+    public Flux<Customer> getCustomersPage(Integer afterCustomerId, int size) {
+        return customerReads.findPage(afterCustomerId == null ? 0 : afterCustomerId, size);
+    }
+
+    // get one customer details
+    public Mono<Customer> getCustomerById(Integer customerId) {
+        return customerReads.findById(customerId);
+    }
+
+    public Mono<Customer> getCustomerByEmail(String email) {
+        return customerReads.findByEmail(email);
+    }
+
+    //Transfer fund, retried with backoff when a concurrent transfer updated either account first
+    public Mono<String> transferFunds(Integer from, Integer to, long amount) {
+        if (from == null || to == null)
+            return Mono.just("ID MISMATCH");
+        return Mono.defer(() -> transactionalOperator.transactional(transferOnce(from, to, amount)))
+                .retryWhen(Retry.backoff(maxAttempts - 1, Duration.ofMillis(baseBackoffMs))
+                        .maxBackoff(Duration.ofMillis(maxBackoffMs))
+                        .filter(OptimisticLockingFailureException.class::isInstance)
+                        .onRetryExhaustedThrow((retry, signal) -> signal.failure()))
+                .onErrorResume(OptimisticLockingFailureException.class, exception -> Mono.just("CONFLICT"));
+    }
+
+    //both rows are saved with their version, a concurrent update of either one fails the transaction
+    private Mono<String> transferOnce(Integer from, Integer to, long amount) {
+        //one statement after the other, a transaction has a single connection
+        return accountRepository.findById(from)
+                .flatMap(fromAccount -> accountRepository.findById(to).flatMap(toAccount -> {
+                    if (amount > fromAccount.getBalance())
+                        return Mono.just("INSUFFICIENT FUNDS");
+                    //one row read twice, the balance would not change
+                    if (from.equals(to))
+                        return Mono.just("SUCCESS");
+                    fromAccount.setBalance(fromAccount.getBalance() - amount);
+                    toAccount.setBalance(toAccount.getBalance() + amount);
+                    return accountRepository.save(fromAccount)
+                            .then(accountRepository.save(toAccount))
+                            .thenReturn("SUCCESS");
+                }))
+                .defaultIfEmpty("ID MISMATCH");
+    }
+
+    //Get Balance Details
+    public Mono<AccountBalance> getBalanceOf(Integer accountId) {
+        return accountRepository.findById(accountId)
+                .map(account -> new AccountBalance(account.getAccountId(), account.getAccountType(), account.getBalance()));
+    }
+}
@@ -0,0 +1,11 @@
+insert into account(account_id,account_type,balance,version) values(1,'SAVING',20000,0);
+insert into account(account_id,account_type,balance,version) values(2,'JOINT',28000,0);
+insert into account(account_id,account_type,balance,version) values(3,'CURRENT',200000,0);
+
+insert into customer(customer_id, first_name,last_name,email,account_id) values(1,'Sagar','Nath','sagarnath@example.com',1);
+insert into customer(customer_id, first_name,last_name,email,account_id) values(2,'Deepak','Nath','depaknath@example.com',2);
+insert into customer(customer_id, first_name,last_name,email,account_id) values(3,'Bhavana','Nath','bahavananath@example.com',2);
+insert into customer(customer_id, first_name,last_name,email,account_id) values(4,'Pankaj','Nath','pankajnath@example.com',3);
+
+alter table account alter column account_id restart with 4;
+alter table customer alter column customer_id restart with 5;
@@ -0,0 +1,3 @@
+create table account(account_id int auto_increment primary key, account_type varchar(255), balance decimal(19,2) not null, version bigint not null);
+create table customer(customer_id int auto_increment primary key, first_name varchar(65) not null, last_name varchar(65) not null,
+    email varchar(100) not null unique, account_id int not null references account(account_id));
@@ -0,0 +1,40 @@
+package com.casestudy.bank.reactive.controller;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+//Own database, the customer it adds would change what BankControllerIT counts
+@SpringBootTest(properties = "spring.r2dbc.url=r2dbc:h2:mem:///addaccountdb")
+@AutoConfigureWebTestClient
+public class AddAccountIT {
+
+    @Autowired
+    WebTestClient webTestClient;
+
+    @Test
+    @DisplayName("POST /bank/account")
+    void testAddAccount() {
+        //Execute the POST request
+        webTestClient.post().uri("/bank/account")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue("{\"accountType\":\"SAVING\",\"balance\":10.50,\"customers\":[{\"firstName\":\"Ann\",\"lastName\":\"Flux\",\"email\":\"ann.flux@example.com\"}]}")
+                .exchange()
+                //Validate the response code and content
+                .expectStatus().isCreated()
+                .expectBody()
+                .jsonPath("$.accountId").isEqualTo(4)
+                .jsonPath("$.balance").isEqualTo(10.5)
+                .jsonPath("$.customers[0].email").isEqualTo("ann.flux@example.com");
+
+        //Validate the balance was stored in major units
+        webTestClient.get().uri("/bank/balance/{accountId}", 4).exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.balance").isEqualTo(10.5);
+    }
+}
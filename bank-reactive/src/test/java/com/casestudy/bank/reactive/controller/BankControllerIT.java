@@ -0,0 +1,209 @@
+package com.casestudy.bank.reactive.controller;
+
+import com.casestudy.bank.reactive.dto.FundTransfer;
+import com.casestudy.bank.reactive.model.AccountType;
+import com.casestudy.bank.reactive.model.Customer;
+import com.casestudy.bank.reactive.money.Money;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.nio.charset.Charset;
+
+//The expectations of the JPA application's BankControllerIT, against the reactive endpoints
+@SpringBootTest
+@AutoConfigureWebTestClient
+public class BankControllerIT {
+
+    @Autowired
+    WebTestClient webTestClient;
+
+    public static final MediaType APPLICATION_TEXT_UTF8 = new MediaType(MediaType.TEXT_PLAIN.getType(),
+            MediaType.TEXT_PLAIN.getSubtype(),
+            Charset.forName("utf8")
+    );
+
+    @Test
+    @DisplayName("GET /customers")
+    void testGetALLCustomer() {
+        webTestClient.get().uri("/bank/customers").exchange()
+                //Validate the response code and content type
+                .expectStatus().isOk()
+                .expectHeader().contentType(MediaType.APPLICATION_JSON)
+                //validate the returned fields
+                .expectBody()
+                .jsonPath("$.length()").isEqualTo(4)
+                .jsonPath("$[0].customerId").isEqualTo(1)
+                .jsonPath("$[0].firstName").isEqualTo("Sagar")
+                .jsonPath("$[0].lastName").isEqualTo("Nath")
+                .jsonPath("$[0].email").isEqualTo("sagarnath@example.com")
+                .jsonPath("$[0].account.accountId").isEqualTo(1)
+                .jsonPath("$[0].account.accountType").isEqualTo(AccountType.SAVING.toString())
+                .jsonPath("$[0].account.balance").isEqualTo(20000.0);
+    }
+
+    @Test
+    @DisplayName("GET /customers/page")
+    void testGetCustomersPage() {
+        //Execute the GET request for the first page
+        webTestClient.get().uri("/bank/customers/page?size=3").exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentType(MediaType.APPLICATION_JSON)
+                .expectBody()
+                .jsonPath("$.customers.length()").isEqualTo(3)
+                .jsonPath("$.customers[0].customerId").isEqualTo(1)
+                .jsonPath("$.customers[2].customerId").isEqualTo(3)
+                .jsonPath("$.nextCursor").isEqualTo(3);
+
+        //Execute the GET request for the last page
+        webTestClient.get().uri("/bank/customers/page?after=3&size=3").exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.customers.length()").isEqualTo(1)
+                .jsonPath("$.customers[0].customerId").isEqualTo(4)
+                .jsonPath("$.customers[0].account.accountId").isEqualTo(3)
+                .jsonPath("$.nextCursor").doesNotExist();
+    }
+
+    @Test
+    @DisplayName("GET /customers/page - Bad Request")
+    void testGetCustomersPageBadSize() {
+        webTestClient.get().uri("/bank/customers/page?size=0").exchange()
+                .expectStatus().isBadRequest();
+    }
+
+    @Test
+    @DisplayName("GET /customers/stream")
+    void testStreamAllCustomers() {
+        //Execute the GET request, reading one customer per line
+        Flux<Customer> customers = webTestClient.get().uri("/bank/customers/stream").exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentType(MediaType.APPLICATION_STREAM_JSON)
+                .returnResult(Customer.class).getResponseBody();
+
+        //validate them in id order, asking for one at a time
+        StepVerifier.create(customers.map(Customer::getCustomerId), 1)
+                .expectNext(1)
+                .thenRequest(3)
+                .expectNext(2, 3, 4)
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("GET /customer/1 ")
+    void testGetOneCustomer() {
+        webTestClient.get().uri("/bank/customer/{customerId}", 1).exchange()
+                //validate the response code and content type
+                .expectStatus().isOk()
+                .expectHeader().contentType(MediaType.APPLICATION_JSON)
+                //validate returned fields
+                .expectBody()
+                .jsonPath("$.customerId").isEqualTo(1)
+                .jsonPath("$.firstName").isEqualTo("Sagar")
+                .jsonPath("$.lastName").isEqualTo("Nath")
+                .jsonPath("$.email").isEqualTo("sagarnath@example.com")
+                .jsonPath("$.account.accountId").isEqualTo(1)
+                .jsonPath("$.account.accountType").isEqualTo(AccountType.SAVING.toString())
+                .jsonPath("$.account.balance").isEqualTo(20000.0);
+    }
+
+    @Test
+    @DisplayName("GET /customer/99 - Not Found")
+    void testGetOneCustomerNotFound() {
+        webTestClient.get().uri("/bank/customer/{customerId}", 99).exchange()
+                .expectStatus().isNotFound();
+    }
+
+    @Test
+    @DisplayName("PUT /bank/customer/3")
+    void testUpdateCustomer() {
+        // Setup PUT data
+        Customer customerToPut = new Customer("Pooja", "Nath", "bahavananath@example.com", null);
+
+        // Execute the PUT request
+        webTestClient.put().uri("/bank/customer/{customerId}", 3)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(customerToPut)
+                .exchange()
+                // Validate the response code and content type
+                .expectStatus().isOk()
+                .expectHeader().contentType(MediaType.APPLICATION_JSON)
+                // Validate the returned fields
+                .expectBody()
+                .jsonPath("$.customerId").isEqualTo(3)
+                .jsonPath("$.firstName").isEqualTo("Pooja")
+                .jsonPath("$.lastName").isEqualTo("Nath")
+                .jsonPath("$.email").isEqualTo("bahavananath@example.com");
+    }
+
+    @Test
+    @DisplayName("GET /bank/balance/1 ")
+    void testGetBalanceOf() {
+        webTestClient.get().uri("/bank/balance/{accountId}", 1).exchange()
+                //validate the response code and content type
+                .expectStatus().isOk()
+                .expectHeader().contentType(MediaType.APPLICATION_JSON)
+                //validate returned fields
+                .expectBody()
+                .jsonPath("$.accountId").isEqualTo(1)
+                .jsonPath("$.accountType").isEqualTo(AccountType.SAVING.toString())
+                .jsonPath("$.balance").isEqualTo(20000.0);
+    }
+
+    @Test
+    @DisplayName("POST /bank/transfer - SUCCESS")
+    void testTransferFundSuccess() {
+        //Setup POST data
+        FundTransfer fundTransfer = new FundTransfer(3, 2, Money.of(200));
+
+        //Execute the POST request
+        webTestClient.post().uri("/bank/transfer")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(fundTransfer)
+                .exchange()
+                //Validate the response code and content
+                .expectStatus().isOk()
+                .expectHeader().contentType(APPLICATION_TEXT_UTF8)
+                //validate the result
+                .expectBody(String.class).isEqualTo("SUCCESS");
+
+        //validate the credit was written back in major units
+        webTestClient.get().uri("/bank/balance/{accountId}", 2).exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.balance").isEqualTo(28200.0);
+    }
+
+    @Test
+    @DisplayName("POST /bank/transfer - ID MISMATCH and INSUFFICIENT FUNDS")
+    void testTransferFundFailures() {
+        webTestClient.post().uri("/bank/transfer")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(new FundTransfer(1, 99, Money.of(1)))
+                .exchange()
+                .expectStatus().isNotFound()
+                .expectBody(String.class).isEqualTo("ID MISMATCH");
+        webTestClient.post().uri("/bank/transfer")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(new FundTransfer(1, 2, Money.of(1000000)))
+                .exchange()
+                .expectStatus().isEqualTo(409)
+                .expectBody(String.class).isEqualTo("INSUFFICIENT FUNDS");
+    }
+
+    @Test
+    @DisplayName("POST /bank/transfer - amount finer than a cent")
+    void testTransferFundFractionalCent() {
+        webTestClient.post().uri("/bank/transfer")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue("{\"fromAccount\":3,\"toAccount\":2,\"amount\":0.001}")
+                .exchange()
+                .expectStatus().isBadRequest();
+    }
+}
@@ -0,0 +1,168 @@
+package com.casestudy.bank.cache;
+
+import com.casestudy.bank.dto.AccountBalance;
+import com.casestudy.bank.dto.CacheStats;
+import com.casestudy.bank.model.Account;
+import com.casestudy.bank.model.AccountType;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+//Read-through cache of balance snapshots, evicting approximately least recently used entries beyond max-size and entries older than ttl
+@Component
+public class BalanceCache {
+
+    //writes to accounts in one stripe discard each other's in-flight loads, a power of two so the stripe is a mask away
+    private static final int GENERATION_STRIPES = 1024;
+
+    //eviction compares this many entries and drops the least recently read, exact LRU would need a lock around every read
+    private static final int EVICTION_SAMPLE = 8;
+
+    @Value("${bank.cache.balance.enabled:false}")
+    private boolean enabled;
+
+    @Value("${bank.cache.balance.max-size:10000}")
+    private int maxSize;
+
+    @Value("${bank.cache.balance.ttl-ms:5000}")
+    private long ttlMs;
+
+    private final ConcurrentHashMap<Integer, Entry> entries = new ConcurrentHashMap<>();
+
+    //bumped by every write to an account of the stripe, a load that raced with a write must not be cached
+    private final AtomicLongArray generations = new AtomicLongArray(GENERATION_STRIPES);
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public Optional<AccountBalance> get(Integer accountId, Supplier<Optional<AccountBalance>> loader) {
+        long now = System.nanoTime();
+        Entry entry = entries.get(accountId);
+        if (entry != null) {
+            if (entry.expiresAt - now > 0) {
+                entry.lastRead = now;
+                hits.increment();
+                return Optional.of(entry.snapshot(accountId));
+            }
+            if (entries.remove(accountId, entry))
+                evictions.increment();
+        }
+        misses.increment();
+
+        int stripe = stripe(accountId);
+        long generation = generations.get(stripe);
+        Optional<AccountBalance> loaded = loader.get();
+        loaded.ifPresent(balance -> {
+            //a write to this account bumps the generation inside compute on the same key, so the check cannot interleave with it
+            entries.compute(accountId, (id, current) -> generations.get(stripe) == generation && current == null
+                    ? new Entry(balance.getAccountType(), balance.getBalance(), null, expiry())
+                    : current);
+            evictBeyondMaxSize();
+        });
+        return loaded;
+    }
+
+    //Refresh the snapshot once the surrounding transaction commits, or right away outside a transaction
+    public void update(Account account) {
+        if (!enabled || account == null || account.getAccountId() == null)
+            return;
+        Integer accountId = account.getAccountId();
+        AccountType accountType = account.getAccountType();
+        long balance = account.getBalance();
+        Long version = account.getVersion();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    store(accountId, accountType, balance, version);
+                }
+            });
+        } else
+            store(accountId, accountType, balance, version);
+    }
+
+    public void invalidate(Integer accountId) {
+        entries.compute(accountId, (id, current) -> {
+            generations.incrementAndGet(stripe(id));
+            return null;
+        });
+    }
+
+    public CacheStats getStats() {
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        double hitRate = hitCount + missCount == 0 ? 0.0 : (double) hitCount / (hitCount + missCount);
+        return new CacheStats(hitCount, missCount, evictions.sum(), entries.size(), hitRate);
+    }
+
+    //commits can run their afterCommit out of order, an older version never replaces a newer one
+    private void store(Integer accountId, AccountType accountType, long balance, Long version) {
+        entries.compute(accountId, (id, current) -> {
+            generations.incrementAndGet(stripe(id));
+            if (current != null && current.version != null && version != null && current.version > version)
+                return current;
+            return new Entry(accountType, balance, version, expiry());
+        });
+        evictBeyondMaxSize();
+    }
+
+    private void evictBeyondMaxSize() {
+        while (entries.size() > maxSize) {
+            Map.Entry<Integer, Entry> eldest = null;
+            Iterator<Map.Entry<Integer, Entry>> sample = entries.entrySet().iterator();
+            for (int i = 0; i < EVICTION_SAMPLE && sample.hasNext(); i++) {
+                Map.Entry<Integer, Entry> candidate = sample.next();
+                if (eldest == null || candidate.getValue().lastRead - eldest.getValue().lastRead < 0)
+                    eldest = candidate;
+            }
+            if (eldest == null)
+                return;
+            if (entries.remove(eldest.getKey(), eldest.getValue()))
+                evictions.increment();
+        }
+    }
+
+    private long expiry() {
+        return System.nanoTime() + ttlMs * 1_000_000L;
+    }
+
+    private static int stripe(Integer accountId) {
+        return accountId.hashCode() & (GENERATION_STRIPES - 1);
+    }
+
+    private static class Entry {
+        private final AccountType accountType;
+        private final long balance;
+        //null for entries loaded by a read, the balance query does not select the version
+        private final Long version;
+        private final long expiresAt;
+        private volatile long lastRead;
+
+        private Entry(AccountType accountType, long balance, Long version, long expiresAt) {
+            this.accountType = accountType;
+            this.balance = balance;
+            this.version = version;
+            this.expiresAt = expiresAt;
+            this.lastRead = System.nanoTime();
+        }
+
+        //callers get their own copy, the cached entry is never handed out
+        private AccountBalance snapshot(Integer accountId) {
+            return new AccountBalance(accountId, accountType, balance);
+        }
+    }
+}
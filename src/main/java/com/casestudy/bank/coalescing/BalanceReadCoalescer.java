@@ -0,0 +1,131 @@
+package com.casestudy.bank.coalescing;
+
+import com.casestudy.bank.dto.AccountBalance;
+import com.casestudy.bank.dto.CoalescingStats;
+import com.casestudy.bank.replica.ReplicaRoutingDataSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+//Single-flight balance reads, concurrent reads of one account share the query the first of them started and its result.
+//A read waits at most max-wait-ms for the query in flight, then runs its own. A committed write detaches the query in flight
+//for its account, so a read that starts after the commit never gets a balance loaded before it.
+//Reads sent to a replica and reads that need the primary never share a query.
+@Component
+public class BalanceReadCoalescer {
+
+    @Value("${bank.balance.coalescing.enabled:false}")
+    private boolean enabled;
+
+    @Value("${bank.balance.coalescing.max-wait-ms:100}")
+    private long maxWaitMs;
+
+    //present when bank.datasource.replicas.enabled
+    @Autowired(required = false)
+    private ReplicaRoutingDataSource replicaRoutingDataSource;
+
+    private final Map<Integer, CompletableFuture<Optional<AccountBalance>>> primaryFlights = new ConcurrentHashMap<>();
+
+    private final Map<Integer, CompletableFuture<Optional<AccountBalance>>> replicaFlights = new ConcurrentHashMap<>();
+
+    private final LongAdder queries = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+
+    public Optional<AccountBalance> load(Integer accountId, Supplier<Optional<AccountBalance>> loader) {
+        if (!enabled) {
+            queries.increment();
+            return loader.get();
+        }
+        Map<Integer, CompletableFuture<Optional<AccountBalance>>> flights =
+                replicaRoutingDataSource != null && replicaRoutingDataSource.readsFromReplica() ? replicaFlights : primaryFlights;
+        CompletableFuture<Optional<AccountBalance>> flight = new CompletableFuture<>();
+        CompletableFuture<Optional<AccountBalance>> inFlight = flights.putIfAbsent(accountId, flight);
+        if (inFlight == null)
+            return lead(accountId, flights, flight, loader);
+        return follow(inFlight, loader);
+    }
+
+    //Reads starting once the surrounding transaction commits, or right away outside a transaction, run a query of their own
+    public void written(Integer accountId) {
+        if (!enabled || accountId == null)
+            return;
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    detach(accountId);
+                }
+            });
+        } else
+            detach(accountId);
+    }
+
+    public CoalescingStats getStats() {
+        long queryCount = queries.sum();
+        long coalescedCount = coalesced.sum();
+        long reads = queryCount + coalescedCount;
+        double ratio = reads == 0 ? 0.0 : (double) coalescedCount / reads;
+        return new CoalescingStats(queryCount, coalescedCount, timeouts.sum(), primaryFlights.size() + replicaFlights.size(), ratio);
+    }
+
+    private Optional<AccountBalance> lead(Integer accountId, Map<Integer, CompletableFuture<Optional<AccountBalance>>> flights,
+                                          CompletableFuture<Optional<AccountBalance>> flight, Supplier<Optional<AccountBalance>> loader) {
+        queries.increment();
+        try {
+            Optional<AccountBalance> loaded = loader.get();
+            //the waiting reads copy from a copy of their own, the leader is free to change what it returns
+            flight.complete(copy(loaded));
+            return loaded;
+        } catch (RuntimeException | Error exception) {
+            //the reads waiting on this query fail with it rather than all hitting the database again
+            flight.completeExceptionally(exception);
+            throw exception;
+        } finally {
+            //a write may already have detached it and a newer query taken its place
+            flights.remove(accountId, flight);
+        }
+    }
+
+    private Optional<AccountBalance> follow(CompletableFuture<Optional<AccountBalance>> inFlight, Supplier<Optional<AccountBalance>> loader) {
+        try {
+            Optional<AccountBalance> loaded = inFlight.get(maxWaitMs, TimeUnit.MILLISECONDS);
+            coalesced.increment();
+            return copy(loaded);
+        } catch (TimeoutException exception) {
+            timeouts.increment();
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException exception) {
+            if (exception.getCause() instanceof RuntimeException)
+                throw (RuntimeException) exception.getCause();
+            if (exception.getCause() instanceof Error)
+                throw (Error) exception.getCause();
+            throw new IllegalStateException(exception.getCause());
+        }
+        queries.increment();
+        return loader.get();
+    }
+
+    private void detach(Integer accountId) {
+        primaryFlights.remove(accountId);
+        replicaFlights.remove(accountId);
+    }
+
+    //callers overlay the ledger balance on what they get, so no two of them share an instance
+    private static Optional<AccountBalance> copy(Optional<AccountBalance> loaded) {
+        return loaded.map(balance -> new AccountBalance(balance.getAccountId(), balance.getAccountType(), balance.getBalance()));
+    }
+}
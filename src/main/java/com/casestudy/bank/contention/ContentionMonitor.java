@@ -0,0 +1,58 @@
+package com.casestudy.bank.contention;
+
+import com.casestudy.bank.dto.AccountContention;
+import org.springframework.stereotype.Component;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+//Per account counters of optimistic lock conflicts, retries and give-ups, to find the hot accounts
+@Component
+public class ContentionMonitor {
+
+    private final ConcurrentHashMap<Integer, Counters> counters = new ConcurrentHashMap<>();
+
+    public void recordConflict(Integer accountId) {
+        counters(accountId).conflicts.increment();
+    }
+
+    public void recordRetry(Integer accountId) {
+        counters(accountId).retries.increment();
+    }
+
+    public void recordGiveUp(Integer accountId) {
+        counters(accountId).giveUps.increment();
+    }
+
+    public AccountContention get(Integer accountId) {
+        Counters accountCounters = counters.get(accountId);
+        return accountCounters == null ? new AccountContention(accountId, 0, 0, 0) : accountCounters.snapshot(accountId);
+    }
+
+    //Most contended accounts first
+    public List<AccountContention> getTop(int limit) {
+        return counters.entrySet().stream()
+                .map(entry -> entry.getValue().snapshot(entry.getKey()))
+                .sorted(Comparator.comparingLong(AccountContention::getConflicts).thenComparingLong(AccountContention::getGiveUps).reversed())
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+
+    private Counters counters(Integer accountId) {
+        return counters.computeIfAbsent(accountId, id -> new Counters());
+    }
+
+    private static class Counters {
+
+        private final LongAdder conflicts = new LongAdder();
+        private final LongAdder retries = new LongAdder();
+        private final LongAdder giveUps = new LongAdder();
+
+        private AccountContention snapshot(Integer accountId) {
+            return new AccountContention(accountId, conflicts.sum(), retries.sum(), giveUps.sum());
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.casestudy.bank.contention;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+//Bounded retries with exponential backoff and full jitter, so transfers that collided do not collide again in lockstep
+@Component
+public class RetryPolicy {
+
+    @Value("${bank.transfer.retry.max-attempts:5}")
+    private int maxAttempts;
+
+    @Value("${bank.transfer.retry.base-backoff-ms:2}")
+    private long baseBackoffMs;
+
+    @Value("${bank.transfer.retry.max-backoff-ms:50}")
+    private long maxBackoffMs;
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    //random delay in [0, min(max, base * 2^(attempt - 1))]
+    public long backoffMs(int attempt) {
+        long ceiling = Math.min(maxBackoffMs, baseBackoffMs << Math.min(attempt - 1, 20));
+        return ceiling <= 0 ? 0 : ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+
+    //Sleep before the next attempt, false when interrupted and the caller should stop retrying
+    public boolean backoff(int attempt) {
+        long delay = backoffMs(attempt);
+        if (delay == 0)
+            return true;
+        try {
+            Thread.sleep(delay);
+            return true;
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
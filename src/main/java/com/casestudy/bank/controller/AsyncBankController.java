@@ -0,0 +1,288 @@
+package com.casestudy.bank.controller;
+
+import com.casestudy.bank.dto.AccountBalance;
+import com.casestudy.bank.dto.BulkImportResult;
+import com.casestudy.bank.dto.CustomerPage;
+import com.casestudy.bank.dto.FundTransfer;
+import com.casestudy.bank.dto.TransactionPage;
+import com.casestudy.bank.dto.TransferResult;
+import com.casestudy.bank.model.Account;
+import com.casestudy.bank.model.Customer;
+import com.casestudy.bank.service.BankService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import javax.annotation.PostConstruct;
+import javax.validation.Valid;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.function.Supplier;
+
+//Same endpoints as BankController under /bank/async, run on the bank request executor so Tomcat workers are released while JPA blocks.
+//Binary frames are read on the Tomcat worker, they are bounded by the batch size, only the transfers are handed over.
+@RestController
+@RequestMapping("/bank/async")
+@ConditionalOnProperty(name = "bank.async.enabled", havingValue = "true")
+public class AsyncBankController {
+
+    @Autowired
+    private BankController bankController;
+
+    @Autowired
+    private BankService bankService;
+
+    @Autowired
+    @Qualifier("bankRequestExecutor")
+    private ExecutorService bankRequestExecutor;
+
+    //per endpoint in-flight limits, a request over the limit is answered 503 straight away
+    @Value("${bank.async.limit.account:${bank.async.limit.default:200}}")
+    private int accountLimit;
+
+    @Value("${bank.async.limit.customer:${bank.async.limit.default:200}}")
+    private int customerLimit;
+
+    @Value("${bank.async.limit.customers:${bank.async.limit.default:200}}")
+    private int customersLimit;
+
+    @Value("${bank.async.limit.transfer:${bank.async.limit.default:200}}")
+    private int transferLimit;
+
+    @Value("${bank.async.limit.batch:${bank.async.limit.default:200}}")
+    private int batchLimit;
+
+    @Value("${bank.async.limit.balance:${bank.async.limit.default:200}}")
+    private int balanceLimit;
+
+    @Value("${bank.async.limit.bulk:${bank.async.limit.default:200}}")
+    private int bulkLimit;
+
+    @Value("${bank.async.limit.stream:${bank.async.limit.default:200}}")
+    private int streamLimit;
+
+    @Value("${bank.async.limit.history:${bank.async.limit.default:200}}")
+    private int historyLimit;
+
+    @Value("${bank.transfer.batch.max-size:10000}")
+    private int maxBatchSize;
+
+    private Semaphore accountPermits;
+    private Semaphore customerPermits;
+    private Semaphore customersPermits;
+    private Semaphore transferPermits;
+    private Semaphore batchPermits;
+    private Semaphore balancePermits;
+    private Semaphore bulkPermits;
+    private Semaphore streamPermits;
+    private Semaphore historyPermits;
+
+    @PostConstruct
+    public void init() {
+        accountPermits = new Semaphore(accountLimit);
+        customerPermits = new Semaphore(customerLimit);
+        customersPermits = new Semaphore(customersLimit);
+        transferPermits = new Semaphore(transferLimit);
+        batchPermits = new Semaphore(batchLimit);
+        balancePermits = new Semaphore(balanceLimit);
+        bulkPermits = new Semaphore(bulkLimit);
+        streamPermits = new Semaphore(streamLimit);
+        historyPermits = new Semaphore(historyLimit);
+    }
+
+    @PostMapping("/account")
+    public CompletableFuture<ResponseEntity<Account>> addAccount(@Valid @RequestBody Account accountRequest) {
+        return submit(accountPermits, () -> bankController.addAccount(accountRequest));
+    }
+
+    @PostMapping(value = "/accounts/bulk", consumes = BankController.APPLICATION_NDJSON_VALUE)
+    public CompletableFuture<ResponseEntity<BulkImportResult>> addAccountsFromNdjson(InputStream body) {
+        return submit(bulkPermits, () -> {
+            try {
+                return bankController.addAccountsFromNdjson(body);
+            } catch (IOException exception) {
+                throw new UncheckedIOException(exception);
+            }
+        });
+    }
+
+    @PostMapping(value = "/accounts/bulk", consumes = BankController.TEXT_CSV_VALUE)
+    public CompletableFuture<ResponseEntity<BulkImportResult>> addAccountsFromCsv(InputStream body) {
+        return submit(bulkPermits, () -> {
+            try {
+                return bankController.addAccountsFromCsv(body);
+            } catch (IOException exception) {
+                throw new UncheckedIOException(exception);
+            }
+        });
+    }
+
+    @PutMapping("/customer/{customerId}")
+    public CompletableFuture<ResponseEntity<Customer>> updateCustomer(@PathVariable(value = "customerId") Integer customerId, @Valid @RequestBody Customer customerRequest) {
+        return submit(customerPermits, () -> bankController.updateCustomer(customerId, customerRequest));
+    }
+
+    @GetMapping("/customer/{customerId}")
+    public CompletableFuture<ResponseEntity<Customer>> getOneCustomer(@PathVariable(value = "customerId") Integer customerId) {
+        return submit(customerPermits, () -> bankController.getOneCustomer(customerId));
+    }
+
+    @GetMapping("/customer")
+    public CompletableFuture<ResponseEntity<Customer>> getCustomerByEmail(@RequestParam("email") String email) {
+        return submit(customerPermits, () -> bankController.getCustomerByEmail(email));
+    }
+
+    @GetMapping("/customers")
+    public CompletableFuture<ResponseEntity<List<Customer>>> getALLCustomers() {
+        return submit(customersPermits, () -> bankController.getALLCustomers());
+    }
+
+    @GetMapping("/customers/page")
+    public CompletableFuture<ResponseEntity<CustomerPage>> getCustomersPage(@RequestParam(value = "after", required = false) Integer after,
+                                                                            @RequestParam(value = "size", defaultValue = "100") int size) {
+        return submit(customersPermits, () -> bankController.getCustomersPage(after, size));
+    }
+
+    @GetMapping(value = "/customers/stream", produces = BankController.APPLICATION_NDJSON_VALUE)
+    public CompletableFuture<ResponseEntity<StreamingResponseBody>> streamAllCustomers() {
+        return submitStream(() -> bankController.streamAllCustomers());
+    }
+
+    //with the ledger sequencer the response completes when a writer applied the transfer, no thread waits for it meanwhile
+    @PostMapping("/transfer")
+    public CompletableFuture<ResponseEntity<String>> transferFund(@Valid @RequestBody FundTransfer fundTransfer) {
+        if (!bankService.isTransferSequenced() || fundTransfer.getIdempotencyKey() != null)
+            return submit(transferPermits, () -> bankController.transferFund(fundTransfer));
+        if (!transferPermits.tryAcquire())
+            return CompletableFuture.completedFuture(new ResponseEntity<>(HttpStatus.SERVICE_UNAVAILABLE));
+        try {
+            return bankService.transferFundsAsync(fundTransfer.getFromAccount(), fundTransfer.getToAccount(), fundTransfer.getAmount(), this::completeTransfer)
+                    .thenApply(bankController::toTransferResponse)
+                    .whenComplete((response, exception) -> transferPermits.release());
+        } catch (RuntimeException exception) {
+            transferPermits.release();
+            throw exception;
+        }
+    }
+
+    @PostMapping(value = "/transfer", consumes = TransferFrames.APPLICATION_TRANSFER_FRAME_VALUE)
+    public CompletableFuture<ResponseEntity<String>> transferFundFrame(InputStream body,
+                                                                       @RequestHeader(value = HttpHeaders.CONTENT_LENGTH, defaultValue = "-1") int contentLength) throws IOException {
+        ByteBuffer frame;
+        try {
+            frame = TransferFrames.read(body, contentLength, 1);
+        } catch (IllegalArgumentException exception) {
+            return CompletableFuture.completedFuture(new ResponseEntity<>(HttpStatus.BAD_REQUEST));
+        }
+        return submit(transferPermits, () -> bankController.transferFrame(frame));
+    }
+
+    @PostMapping("/transfers/batch")
+    public CompletableFuture<ResponseEntity<List<TransferResult>>> transferFundsBatch(@Valid @RequestBody List<FundTransfer> fundTransfers) {
+        return submit(batchPermits, () -> bankController.transferFundsBatch(fundTransfers));
+    }
+
+    @PostMapping(value = "/transfers/batch", consumes = TransferFrames.APPLICATION_TRANSFER_FRAME_VALUE,
+            produces = TransferFrames.APPLICATION_TRANSFER_STATUS_VALUE)
+    public CompletableFuture<ResponseEntity<byte[]>> transferFundsBatchFrames(InputStream body,
+                                                                              @RequestHeader(value = HttpHeaders.CONTENT_LENGTH, defaultValue = "-1") int contentLength) throws IOException {
+        ByteBuffer frames;
+        try {
+            frames = TransferFrames.read(body, contentLength, maxBatchSize);
+        } catch (IllegalArgumentException exception) {
+            return CompletableFuture.completedFuture(new ResponseEntity<>(HttpStatus.BAD_REQUEST));
+        }
+        return submit(batchPermits, () -> bankController.transferFrames(frames));
+    }
+
+    @GetMapping("/balance/{accountId}")
+    public CompletableFuture<ResponseEntity<AccountBalance>> getBalanceOf(@PathVariable(value = "accountId") Integer accountId) {
+        return submit(balancePermits, () -> bankController.getBalanceOf(accountId));
+    }
+
+    @GetMapping("/account/{accountId}/transactions")
+    public CompletableFuture<ResponseEntity<TransactionPage>> getTransactions(@PathVariable(value = "accountId") Integer accountId,
+                                                                              @RequestParam(value = "before", required = false) Long before,
+                                                                              @RequestParam(value = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+                                                                              @RequestParam(value = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to,
+                                                                              @RequestParam(value = "size", defaultValue = "100") int size) {
+        return submit(historyPermits, () -> bankController.getTransactions(accountId, before, from, to, size));
+    }
+
+    @GetMapping(value = "/account/{accountId}/transactions", produces = BankController.APPLICATION_NDJSON_VALUE)
+    public CompletableFuture<ResponseEntity<StreamingResponseBody>> streamTransactions(@PathVariable(value = "accountId") Integer accountId,
+                                                                                       @RequestParam(value = "before", required = false) Long before,
+                                                                                       @RequestParam(value = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+                                                                                       @RequestParam(value = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to) {
+        return submitStream(() -> bankController.streamTransactions(accountId, before, from, to));
+    }
+
+    //the transfer already happened when its history is due, so a full executor hands the rest to the common pool instead of dropping it
+    private void completeTransfer(Runnable task) {
+        try {
+            bankRequestExecutor.execute(task);
+        } catch (RejectedExecutionException exception) {
+            ForkJoinPool.commonPool().execute(task);
+        }
+    }
+
+    //a stream holds its permit until the body is written, Spring MVC writes it on its own async executor after the response starts
+    private CompletableFuture<ResponseEntity<StreamingResponseBody>> submitStream(Supplier<ResponseEntity<StreamingResponseBody>> call) {
+        if (!streamPermits.tryAcquire())
+            return CompletableFuture.completedFuture(new ResponseEntity<>(HttpStatus.SERVICE_UNAVAILABLE));
+        Supplier<ResponseEntity<StreamingResponseBody>> holding = () -> {
+            ResponseEntity<StreamingResponseBody> response;
+            try {
+                response = call.get();
+            } catch (RuntimeException exception) {
+                streamPermits.release();
+                throw exception;
+            }
+            StreamingResponseBody body = response.getBody();
+            if (body == null) {
+                streamPermits.release();
+                return response;
+            }
+            return ResponseEntity.status(response.getStatusCode()).headers(response.getHeaders()).body(outputStream -> {
+                try {
+                    body.writeTo(outputStream);
+                } finally {
+                    streamPermits.release();
+                }
+            });
+        };
+        try {
+            return CompletableFuture.supplyAsync(holding, bankRequestExecutor);
+        } catch (RejectedExecutionException exception) {
+            streamPermits.release();
+            return CompletableFuture.completedFuture(new ResponseEntity<>(HttpStatus.SERVICE_UNAVAILABLE));
+        }
+    }
+
+    private <T> CompletableFuture<ResponseEntity<T>> submit(Semaphore permits, Supplier<ResponseEntity<T>> call) {
+        if (!permits.tryAcquire())
+            return CompletableFuture.completedFuture(new ResponseEntity<>(HttpStatus.SERVICE_UNAVAILABLE));
+        try {
+            return CompletableFuture.supplyAsync(call, bankRequestExecutor).whenComplete((response, exception) -> permits.release());
+        } catch (RejectedExecutionException exception) {
+            permits.release();
+            return CompletableFuture.completedFuture(new ResponseEntity<>(HttpStatus.SERVICE_UNAVAILABLE));
+        }
+    }
+}
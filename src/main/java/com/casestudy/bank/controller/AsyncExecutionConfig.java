@@ -0,0 +1,43 @@
+package com.casestudy.bank.controller;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Configuration
+@ConditionalOnProperty(name = "bank.async.enabled", havingValue = "true")
+public class AsyncExecutionConfig {
+
+    //Virtual thread per task on JDKs that have them, otherwise a fixed pool that rejects once its queue is full
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService bankRequestExecutor(@Value("${bank.async.virtual-threads:true}") boolean virtualThreads,
+                                               @Value("${bank.async.pool-size:64}") int poolSize,
+                                               @Value("${bank.async.queue-capacity:1000}") int queueCapacity) {
+        if (virtualThreads) {
+            ExecutorService executor = newVirtualThreadPerTaskExecutor();
+            if (executor != null)
+                return executor;
+        }
+        AtomicInteger threadNumber = new AtomicInteger();
+        return new ThreadPoolExecutor(poolSize, poolSize, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> new Thread(runnable, "bank-request-" + threadNumber.incrementAndGet()),
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    //looked up reflectively so the application still builds and runs on Java 11
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException exception) {
+            return null;
+        }
+    }
+}
@@ -1,15 +1,36 @@
 package com.casestudy.bank.controller;
 
+import com.casestudy.bank.dto.AccountBalance;
+import com.casestudy.bank.dto.BulkImportResult;
+import com.casestudy.bank.dto.CustomerPage;
 import com.casestudy.bank.dto.FundTransfer;
+import com.casestudy.bank.dto.TransactionPage;
+import com.casestudy.bank.dto.TransferResult;
 import com.casestudy.bank.model.Account;
+import com.casestudy.bank.model.AccountTransaction;
 import com.casestudy.bank.model.Customer;
+import com.casestudy.bank.service.AccountImportService;
 import com.casestudy.bank.service.BankService;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import javax.validation.Valid;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.time.Instant;
 import java.util.List;
 import java.util.Optional;
 
@@ -17,9 +38,28 @@ import java.util.Optional;
 @RequestMapping("/bank")
 public class BankController {
 
+    public static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+
+    public static final String TEXT_CSV_VALUE = "text/csv";
+
     @Autowired
     private BankService bankService;
 
+    @Autowired
+    private AccountImportService accountImportService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${bank.customers.page.max-size:1000}")
+    private int maxPageSize;
+
+    @Value("${bank.transactions.page.max-size:1000}")
+    private int maxTransactionPageSize;
+
+    @Value("${bank.transfer.batch.max-size:10000}")
+    private int maxBatchSize;
+
     @PostMapping("/account")
     public ResponseEntity<Account> addAccount(@Valid @RequestBody Account accountRequest) {
         try {
@@ -33,6 +73,20 @@ public class BankController {
         }
     }
 
+    @PostMapping(value = "/accounts/bulk", consumes = APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<BulkImportResult> addAccountsFromNdjson(InputStream body) throws IOException {
+        return ResponseEntity.ok(accountImportService.importNdjson(body));
+    }
+
+    @PostMapping(value = "/accounts/bulk", consumes = TEXT_CSV_VALUE)
+    public ResponseEntity<BulkImportResult> addAccountsFromCsv(InputStream body) throws IOException {
+        try {
+            return ResponseEntity.ok(accountImportService.importCsv(body));
+        } catch (IllegalArgumentException exception) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+    }
+
     @PutMapping("/customer/{customerId}")
     public ResponseEntity<Customer> updateCustomer(@PathVariable(value = "customerId") Integer customerId, @Valid @RequestBody Customer customerRequest) {
         Optional<Customer> customer = bankService.getCustomerById(customerId);
@@ -57,29 +111,174 @@ public class BankController {
         }
     }
 
+    @GetMapping("/customer")
+    public ResponseEntity<Customer> getCustomerByEmail(@RequestParam("email") String email) {
+        Optional<Customer> customer = bankService.getCustomerByEmail(email);
+        if (customer.isEmpty())
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        return ResponseEntity.ok(customer.get());
+    }
+
     @GetMapping("/customers")
     public ResponseEntity<List<Customer>> getALLCustomers() {
         return new ResponseEntity<>(bankService.getAllCustomers(), HttpStatus.OK);
     }
 
+    @GetMapping("/customers/page")
+    public ResponseEntity<CustomerPage> getCustomersPage(@RequestParam(value = "after", required = false) Integer after,
+                                                         @RequestParam(value = "size", defaultValue = "100") int size) {
+        if (size < 1 || size > maxPageSize)
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        List<Customer> customers = bankService.getCustomersPage(after, size);
+        Integer nextCursor = customers.size() < size ? null : customers.get(customers.size() - 1).getCustomerId();
+        return ResponseEntity.ok(new CustomerPage(customers, nextCursor));
+    }
+
+    @GetMapping(value = "/customers/stream", produces = APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAllCustomers() {
+        ObjectWriter writer = objectMapper.writerFor(Customer.class).without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        StreamingResponseBody body = outputStream -> {
+            JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)
+                    .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.setRootValueSeparator(null);
+            bankService.streamAllCustomers(customer -> {
+                try {
+                    writer.writeValue(generator, customer);
+                    generator.writeRaw('\n');
+                } catch (IOException exception) {
+                    throw new UncheckedIOException(exception);
+                }
+            });
+            generator.close();
+        };
+        return ResponseEntity.ok().contentType(MediaType.parseMediaType(APPLICATION_NDJSON_VALUE)).body(body);
+    }
+
     @PostMapping("/transfer")
     public ResponseEntity<String> transferFund(@Valid @RequestBody FundTransfer fundTransfer) {
-        String result = bankService.transferFunds(fundTransfer.getFromAccount(), fundTransfer.getToAccount(), fundTransfer.getAmount());
+        String result = fundTransfer.getIdempotencyKey() == null
+                ? bankService.transferFunds(fundTransfer.getFromAccount(), fundTransfer.getToAccount(), fundTransfer.getAmount())
+                : bankService.transferFunds(fundTransfer.getFromAccount(), fundTransfer.getToAccount(), fundTransfer.getAmount(), fundTransfer.getIdempotencyKey());
+        return toTransferResponse(result);
+    }
+
+    //one binary frame, read straight from the request bytes without Jackson or a FundTransfer
+    @PostMapping(value = "/transfer", consumes = TransferFrames.APPLICATION_TRANSFER_FRAME_VALUE)
+    public ResponseEntity<String> transferFundFrame(InputStream body,
+                                                    @RequestHeader(value = HttpHeaders.CONTENT_LENGTH, defaultValue = "-1") int contentLength) throws IOException {
+        ByteBuffer frame;
+        try {
+            frame = TransferFrames.read(body, contentLength, 1);
+        } catch (IllegalArgumentException exception) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        return transferFrame(frame);
+    }
+
+    ResponseEntity<String> transferFrame(ByteBuffer frame) {
+        return toTransferResponse(bankService.transferFunds(TransferFrames.fromAccount(frame, 0), TransferFrames.toAccount(frame, 0),
+                TransferFrames.amount(frame, 0)));
+    }
+
+    ResponseEntity<String> toTransferResponse(String result) {
         if (result.equals("SUCCESS")) {
             return new ResponseEntity<>(result, HttpStatus.OK);
-        } else if (result.equals("INSUFFICIENT FUNDS")) {
+        } else if (result.equals("INSUFFICIENT FUNDS") || result.equals("CONFLICT")) {
             return new ResponseEntity<>(result, HttpStatus.CONFLICT);
+        } else if (result.equals("KEY REUSED")) {
+            return new ResponseEntity<>(result, HttpStatus.UNPROCESSABLE_ENTITY);
         } else {
             return new ResponseEntity<>(result, HttpStatus.NOT_FOUND);
         }
     }
 
+    @PostMapping("/transfers/batch")
+    public ResponseEntity<List<TransferResult>> transferFundsBatch(@Valid @RequestBody List<FundTransfer> fundTransfers) {
+        if (fundTransfers.isEmpty() || fundTransfers.size() > maxBatchSize || fundTransfers.contains(null))
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        return ResponseEntity.ok(bankService.transferFundsBatch(fundTransfers));
+    }
+
+    //binary frames in, one status byte per transfer out, in request order
+    @PostMapping(value = "/transfers/batch", consumes = TransferFrames.APPLICATION_TRANSFER_FRAME_VALUE,
+            produces = TransferFrames.APPLICATION_TRANSFER_STATUS_VALUE)
+    public ResponseEntity<byte[]> transferFundsBatchFrames(InputStream body,
+                                                           @RequestHeader(value = HttpHeaders.CONTENT_LENGTH, defaultValue = "-1") int contentLength) throws IOException {
+        ByteBuffer frames;
+        try {
+            frames = TransferFrames.read(body, contentLength, maxBatchSize);
+        } catch (IllegalArgumentException exception) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        return transferFrames(frames);
+    }
+
+    ResponseEntity<byte[]> transferFrames(ByteBuffer frames) {
+        List<TransferResult> results = bankService.transferFundsBatch(TransferFrames.toTransfers(frames));
+        return ResponseEntity.ok().contentType(MediaType.parseMediaType(TransferFrames.APPLICATION_TRANSFER_STATUS_VALUE))
+                .body(TransferFrames.encodeStatuses(results));
+    }
+
     @GetMapping("/balance/{accountId}")
-    public ResponseEntity<Account> getBalanceOf(@PathVariable(value = "accountId") Integer accountId) {
-        Optional<Account> account = bankService.getBalanceOf(accountId);
+    public ResponseEntity<AccountBalance> getBalanceOf(@PathVariable(value = "accountId") Integer accountId) {
+        Optional<AccountBalance> account = bankService.getBalanceOf(accountId);
         if (account.isEmpty())
             return new ResponseEntity<>(HttpStatus.NOT_FOUND);
         else
             return ResponseEntity.ok().body(account.get());
     }
+
+    @GetMapping("/account/{accountId}/transactions")
+    public ResponseEntity<TransactionPage> getTransactions(@PathVariable(value = "accountId") Integer accountId,
+                                                           @RequestParam(value = "before", required = false) Long before,
+                                                           @RequestParam(value = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+                                                           @RequestParam(value = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to,
+                                                           @RequestParam(value = "size", defaultValue = "100") int size) {
+        if (size < 1 || size > maxTransactionPageSize)
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        List<AccountTransaction> transactions;
+        try {
+            transactions = bankService.getTransactionsPage(accountId, before, fromMillis(from), toMillis(to), size);
+        } catch (IllegalArgumentException exception) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        if (transactions.isEmpty() && !bankService.hasAccount(accountId))
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        Long nextCursor = transactions.size() < size ? null : transactions.get(transactions.size() - 1).getTransactionId();
+        return ResponseEntity.ok(new TransactionPage(transactions, nextCursor));
+    }
+
+    @GetMapping(value = "/account/{accountId}/transactions", produces = APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamTransactions(@PathVariable(value = "accountId") Integer accountId,
+                                                                    @RequestParam(value = "before", required = false) Long before,
+                                                                    @RequestParam(value = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+                                                                    @RequestParam(value = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to) {
+        if (!bankService.hasAccount(accountId))
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        ObjectWriter writer = objectMapper.writerFor(AccountTransaction.class).without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        StreamingResponseBody body = outputStream -> {
+            JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)
+                    .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.setRootValueSeparator(null);
+            bankService.streamTransactions(accountId, before, fromMillis(from), toMillis(to), transaction -> {
+                try {
+                    writer.writeValue(generator, transaction);
+                    generator.writeRaw('\n');
+                } catch (IOException exception) {
+                    throw new UncheckedIOException(exception);
+                }
+            });
+            generator.close();
+        };
+        return ResponseEntity.ok().contentType(MediaType.parseMediaType(APPLICATION_NDJSON_VALUE)).body(body);
+    }
+
+    //date range of the statement, from inclusive and to exclusive, open ended when left out
+    private static long fromMillis(Instant from) {
+        return from == null ? 0 : from.toEpochMilli();
+    }
+
+    private static long toMillis(Instant to) {
+        return to == null ? Long.MAX_VALUE : to.toEpochMilli();
+    }
 }
@@ -0,0 +1,121 @@
+package com.casestudy.bank.controller;
+
+import com.casestudy.bank.cache.BalanceCache;
+import com.casestudy.bank.coalescing.BalanceReadCoalescer;
+import com.casestudy.bank.contention.ContentionMonitor;
+import com.casestudy.bank.dto.AccountContention;
+import com.casestudy.bank.dto.CacheStats;
+import com.casestudy.bank.dto.CoalescingStats;
+import com.casestudy.bank.dto.EventSourcingStats;
+import com.casestudy.bank.dto.LatencyStats;
+import com.casestudy.bank.dto.ReplicaStats;
+import com.casestudy.bank.dto.SequencerStats;
+import com.casestudy.bank.dto.ShardingStats;
+import com.casestudy.bank.dto.WriteBehindStats;
+import com.casestudy.bank.eventsourcing.EventSourcing;
+import com.casestudy.bank.ledger.BalanceWriteBehind;
+import com.casestudy.bank.ledger.TransferSequencer;
+import com.casestudy.bank.metrics.LatencyRecorder;
+import com.casestudy.bank.replica.ReplicaRoutingDataSource;
+import com.casestudy.bank.sharding.CrossShardTransfers;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/bank/metrics")
+public class MetricsController {
+
+    @Autowired
+    private BalanceCache balanceCache;
+
+    @Autowired
+    private BalanceReadCoalescer balanceReadCoalescer;
+
+    @Autowired
+    private BalanceWriteBehind balanceWriteBehind;
+
+    @Autowired
+    private ContentionMonitor contentionMonitor;
+
+    @Autowired
+    private LatencyRecorder latencyRecorder;
+
+    @Autowired(required = false)
+    private EventSourcing eventSourcing;
+
+    @Autowired(required = false)
+    private ReplicaRoutingDataSource replicaRoutingDataSource;
+
+    @Autowired(required = false)
+    private CrossShardTransfers crossShardTransfers;
+
+    @Autowired(required = false)
+    private TransferSequencer transferSequencer;
+
+    @GetMapping("/cache")
+    public ResponseEntity<CacheStats> getCacheStats() {
+        return ResponseEntity.ok(balanceCache.getStats());
+    }
+
+    @GetMapping("/coalescing")
+    public ResponseEntity<CoalescingStats> getCoalescingStats() {
+        return ResponseEntity.ok(balanceReadCoalescer.getStats());
+    }
+
+    @GetMapping("/write-behind")
+    public ResponseEntity<WriteBehindStats> getWriteBehindStats() {
+        return ResponseEntity.ok(balanceWriteBehind.getStats());
+    }
+
+    @GetMapping("/contention")
+    public ResponseEntity<List<AccountContention>> getContention(@RequestParam(value = "limit", defaultValue = "10") int limit) {
+        return ResponseEntity.ok(contentionMonitor.getTop(Math.max(limit, 0)));
+    }
+
+    @GetMapping("/latency")
+    public ResponseEntity<List<LatencyStats>> getLatency() {
+        return ResponseEntity.ok(latencyRecorder.getStats());
+    }
+
+    @DeleteMapping("/latency")
+    public ResponseEntity<Void> resetLatency() {
+        latencyRecorder.reset();
+        return new ResponseEntity<>(HttpStatus.NO_CONTENT);
+    }
+
+    @GetMapping("/event-sourcing")
+    public ResponseEntity<EventSourcingStats> getEventSourcingStats() {
+        if (eventSourcing == null)
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        return ResponseEntity.ok(eventSourcing.getStats());
+    }
+
+    @GetMapping("/replicas")
+    public ResponseEntity<List<ReplicaStats>> getReplicaStats() {
+        if (replicaRoutingDataSource == null)
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        return ResponseEntity.ok(replicaRoutingDataSource.getStats());
+    }
+
+    @GetMapping("/sharding")
+    public ResponseEntity<ShardingStats> getShardingStats() {
+        if (crossShardTransfers == null)
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        return ResponseEntity.ok(crossShardTransfers.getStats());
+    }
+
+    @GetMapping("/sequencer")
+    public ResponseEntity<List<SequencerStats>> getSequencerStats() {
+        if (transferSequencer == null)
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        return ResponseEntity.ok(transferSequencer.getStats());
+    }
+}
@@ -0,0 +1,91 @@
+package com.casestudy.bank.controller;
+
+import com.casestudy.bank.dto.FundTransfer;
+import com.casestudy.bank.dto.TransferResult;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+//Fixed-layout binary transfers for high-volume callers: one 16 byte big-endian frame per transfer,
+//int fromAccount, int toAccount, long amount in minor units. Batch responses carry one status byte per frame.
+public final class TransferFrames {
+
+    public static final String APPLICATION_TRANSFER_FRAME_VALUE = "application/x-bank-transfer";
+
+    public static final String APPLICATION_TRANSFER_STATUS_VALUE = "application/x-bank-transfer-status";
+
+    public static final int FRAME_SIZE = 16;
+
+    //status byte of a batch response is the index in this array
+    static final String[] STATUSES = {"SUCCESS", "INSUFFICIENT FUNDS", "ID MISMATCH", "CONFLICT", "KEY REUSED"};
+
+    private TransferFrames() {
+    }
+
+    //Read the whole body into one buffer sized from Content-Length, frames are then read in place
+    static ByteBuffer read(InputStream body, int contentLength, int maxFrames) throws IOException {
+        int maxLength = maxFrames * FRAME_SIZE;
+        if (contentLength > maxLength)
+            throw invalidLength(maxFrames);
+        //without a Content-Length one byte more than allowed is enough to tell the body is too large
+        byte[] bytes = body.readNBytes(contentLength >= 0 ? contentLength : maxLength + 1);
+        if (bytes.length == 0 || bytes.length % FRAME_SIZE != 0 || bytes.length > maxLength)
+            throw invalidLength(maxFrames);
+        return ByteBuffer.wrap(bytes);
+    }
+
+    private static IllegalArgumentException invalidLength(int maxFrames) {
+        return new IllegalArgumentException("Expected between 1 and " + maxFrames + " frames of " + FRAME_SIZE + " bytes");
+    }
+
+    static int count(ByteBuffer frames) {
+        return frames.limit() / FRAME_SIZE;
+    }
+
+    static int fromAccount(ByteBuffer frames, int index) {
+        return frames.getInt(index * FRAME_SIZE);
+    }
+
+    static int toAccount(ByteBuffer frames, int index) {
+        return frames.getInt(index * FRAME_SIZE + 4);
+    }
+
+    static long amount(ByteBuffer frames, int index) {
+        return frames.getLong(index * FRAME_SIZE + 8);
+    }
+
+    //the batch service works on transfers, so batch frames become FundTransfer without any parsing in between
+    public static List<FundTransfer> toTransfers(ByteBuffer frames) {
+        int count = count(frames);
+        List<FundTransfer> transfers = new ArrayList<>(count);
+        for (int i = 0; i < count; i++)
+            transfers.add(new FundTransfer(fromAccount(frames, i), toAccount(frames, i), amount(frames, i)));
+        return transfers;
+    }
+
+    static byte[] encodeStatuses(List<TransferResult> results) {
+        byte[] statuses = new byte[results.size()];
+        for (int i = 0; i < statuses.length; i++)
+            statuses[i] = statusCode(results.get(i).getStatus());
+        return statuses;
+    }
+
+    static byte statusCode(String status) {
+        for (int i = 0; i < STATUSES.length; i++) {
+            if (STATUSES[i].equals(status))
+                return (byte) i;
+        }
+        throw new IllegalArgumentException("Unknown transfer status " + status);
+    }
+
+    //client side of the protocol, used by callers and tests
+    public static byte[] encode(List<FundTransfer> transfers) {
+        ByteBuffer frames = ByteBuffer.allocate(transfers.size() * FRAME_SIZE);
+        for (FundTransfer transfer : transfers)
+            frames.putInt(transfer.getFromAccount()).putInt(transfer.getToAccount()).putLong(transfer.getAmount());
+        return frames.array();
+    }
+}
@@ -0,0 +1,79 @@
+package com.casestudy.bank.customer;
+
+import com.casestudy.bank.sharding.AccountShards;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.Locale;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+//Customer ids by lower cased email, loaded on startup and kept in step by every insert and update, so a taken email is
+//refused and a lookup by email is answered without a query. The unique email column stays the last word: an email is
+//reserved here before its insert or update and released again when the database refuses it.
+//With several shards the index is the only check that spans them, the column is only unique per shard.
+@Component
+public class EmailIndex implements SmartInitializingSingleton {
+
+    //held for an insert or update that has not committed yet
+    private static final int RESERVED = 0;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    AccountShards accountShards;
+
+    private final ConcurrentHashMap<String, Integer> customerIds = new ConcurrentHashMap<>();
+
+    //runs once schema and data.sql are in place and before the web server takes requests
+    @Override
+    public void afterSingletonsInstantiated() {
+        load();
+    }
+
+    //also called after customers are restored behind hibernate's back, e.g. by EventSourcing
+    public void load() {
+        customerIds.clear();
+        accountShards.runOnEveryShard(() -> jdbcTemplate.query("select customer_id, email from customer", row -> {
+            customerIds.put(normalize(row.getString(2)), row.getInt(1));
+        }));
+    }
+
+    //the one lower casing of every stored and looked up email, locale independent so an "I" never turns into a dotless "ı"
+    public static String normalize(String email) {
+        return email.toLowerCase(Locale.ROOT);
+    }
+
+    //Id of the customer registered with the email, empty when there is none or its insert has not committed yet
+    public Optional<Integer> find(String email) {
+        Integer customerId = email == null ? null : customerIds.get(normalize(email));
+        return customerId == null || customerId == RESERVED ? Optional.empty() : Optional.of(customerId);
+    }
+
+    //Claim an email for an insert or update, false when a customer holds it or another request claimed it first
+    public boolean reserve(String email) {
+        return customerIds.putIfAbsent(normalize(email), RESERVED) == null;
+    }
+
+    //Give back a claim whose insert or update did not go through
+    public void release(String email) {
+        customerIds.remove(normalize(email), RESERVED);
+    }
+
+    //The claimed email now belongs to the committed customer
+    public void register(String email, Integer customerId) {
+        customerIds.put(normalize(email), customerId);
+    }
+
+    //The customer moved to another email
+    public void unregister(String email, Integer customerId) {
+        customerIds.remove(normalize(email), customerId);
+    }
+
+    public int size() {
+        return customerIds.size();
+    }
+}
@@ -0,0 +1,38 @@
+package com.casestudy.bank.dto;
+
+import com.casestudy.bank.model.AccountType;
+import com.casestudy.bank.money.MoneyDeserializer;
+import com.casestudy.bank.money.MoneySerializer;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+//Balance-only read view of an Account, selected without touching the customer rows
+@Data
+@NoArgsConstructor
+public class AccountBalance implements Serializable {
+
+    private Integer accountId;
+
+    private AccountType accountType;
+
+    //minor units
+    @JsonSerialize(using = MoneySerializer.class)
+    @JsonDeserialize(using = MoneyDeserializer.class)
+    private long balance;
+
+    //the JPQL constructor expression hands the converted balance over boxed
+    public AccountBalance(Integer accountId, AccountType accountType, Long balance) {
+        this.accountId = accountId;
+        this.accountType = accountType;
+        this.balance = balance;
+    }
+
+    //hot accounts, the account row plus the sum of its slots read in one statement
+    public AccountBalance(Integer accountId, AccountType accountType, Long balance, Long slotBalance) {
+        this(accountId, accountType, balance + slotBalance);
+    }
+}
@@ -0,0 +1,25 @@
+package com.casestudy.bank.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class AccountContention implements Serializable {
+
+    private Integer accountId;
+
+    //optimistic lock failures caused by this account
+    private long conflicts;
+
+    //transfers touching this account that were retried
+    private long retries;
+
+    //transfers touching this account that ran out of attempts
+    private long giveUps;
+
+}
@@ -0,0 +1,19 @@
+package com.casestudy.bank.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class BulkImportError implements Serializable {
+
+    //line of the upload the rejected account starts on
+    private long line;
+
+    private String reason;
+
+}
@@ -0,0 +1,24 @@
+package com.casestudy.bank.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class BulkImportResult implements Serializable {
+
+    private long accounts;
+
+    private long customers;
+
+    private long rejected;
+
+    //first max-errors rejections only, rejected counts all of them
+    private List<BulkImportError> errors;
+
+}
@@ -0,0 +1,24 @@
+package com.casestudy.bank.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class CacheStats implements Serializable {
+
+    private long hits;
+
+    private long misses;
+
+    private long evictions;
+
+    private int size;
+
+    private double hitRate;
+
+}
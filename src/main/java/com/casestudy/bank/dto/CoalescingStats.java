@@ -0,0 +1,27 @@
+package com.casestudy.bank.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class CoalescingStats implements Serializable {
+
+    //reads that ran their own query
+    private long queries;
+
+    //reads served by a query another read had in flight
+    private long coalesced;
+
+    //reads that gave up waiting after max-wait-ms and queried on their own, also counted in queries
+    private long timeouts;
+
+    private int inFlight;
+
+    private double coalescingRatio;
+
+}
@@ -0,0 +1,21 @@
+package com.casestudy.bank.dto;
+
+import com.casestudy.bank.model.Customer;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class CustomerPage implements Serializable {
+
+    private List<Customer> customers;
+
+    //pass as "after" to fetch the next page, null on the last page
+    private Integer nextCursor;
+
+}
@@ -0,0 +1,28 @@
+package com.casestudy.bank.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class EventSourcingStats implements Serializable {
+
+    private long lastSequence;
+
+    //every event up to it is in the newest snapshot
+    private long snapshotSequence;
+
+    private long snapshots;
+
+    private int accounts;
+
+    //events replayed on top of the snapshot at startup
+    private long recoveredEvents;
+
+    private long recoveryMillis;
+
+}
@@ -1,9 +1,15 @@
 package com.casestudy.bank.dto;
 
+import com.casestudy.bank.money.MoneyDeserializer;
+import com.casestudy.bank.money.MoneySerializer;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import javax.validation.constraints.Size;
 import java.io.Serializable;
 
 @Data
@@ -15,6 +21,19 @@ public class FundTransfer implements Serializable {
 
     private Integer toAccount;
 
-    private Double amount;
+    //minor units
+    @JsonSerialize(using = MoneySerializer.class)
+    @JsonDeserialize(using = MoneyDeserializer.class)
+    private long amount;
 
+    //optional, a transfer sent again with the same key gets the first status back instead of being applied twice
+    @Size(max = 64)
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String idempotencyKey;
+
+    public FundTransfer(Integer fromAccount, Integer toAccount, long amount) {
+        this.fromAccount = fromAccount;
+        this.toAccount = toAccount;
+        this.amount = amount;
+    }
 }
@@ -0,0 +1,34 @@
+package com.casestudy.bank.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class LatencyStats implements Serializable {
+
+    //layer.Type.method, e.g. service.BankService.transferFunds
+    private String name;
+
+    private long count;
+
+    //calls per second since the recorder started or was reset
+    private double throughput;
+
+    //latencies in microseconds
+    private double p50;
+
+    private double p99;
+
+    private double p999;
+
+    private double max;
+
+    //SQL statements prepared on the calling thread per call
+    private double statementsPerCall;
+
+}
@@ -0,0 +1,24 @@
+package com.casestudy.bank.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ReplicaStats implements Serializable {
+
+    private String url;
+
+    //lag within max-lag-ms at the last check, reads skip the replica otherwise
+    private boolean healthy;
+
+    //how far its heartbeat was behind the primary at the last check, -1 when it could not be read
+    private long lagMs;
+
+    private long reads;
+
+}
@@ -0,0 +1,28 @@
+package com.casestudy.bank.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class SequencerStats implements Serializable {
+
+    private int partition;
+
+    //transfers taken from the ring
+    private long transfers;
+
+    //credits of transfers debited by another partition
+    private long handOffs;
+
+    //transfers published to the ring and not applied yet
+    private long backlog;
+
+    //times a producer found the ring full and had to wait for the writer
+    private long fullRingWaits;
+
+}
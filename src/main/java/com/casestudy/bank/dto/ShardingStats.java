@@ -0,0 +1,25 @@
+package com.casestudy.bank.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ShardingStats implements Serializable {
+
+    private int shards;
+
+    //transfers whose accounts live on different shards, debited since startup
+    private long crossShardTransfers;
+
+    //debited on the source shard, credit not committed yet or not known to be
+    private long pendingReservations;
+
+    //completed by the recovery task instead of the request that debited them
+    private long recoveredTransfers;
+
+}
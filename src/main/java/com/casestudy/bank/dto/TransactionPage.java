@@ -0,0 +1,22 @@
+package com.casestudy.bank.dto;
+
+import com.casestudy.bank.model.AccountTransaction;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class TransactionPage implements Serializable {
+
+    //newest first
+    private List<AccountTransaction> transactions;
+
+    //pass as "before" to fetch the next older page, null on the last page
+    private Long nextCursor;
+
+}
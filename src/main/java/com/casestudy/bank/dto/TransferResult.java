@@ -0,0 +1,29 @@
+package com.casestudy.bank.dto;
+
+import com.casestudy.bank.money.MoneyDeserializer;
+import com.casestudy.bank.money.MoneySerializer;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class TransferResult implements Serializable {
+
+    private Integer fromAccount;
+
+    private Integer toAccount;
+
+    //minor units
+    @JsonSerialize(using = MoneySerializer.class)
+    @JsonDeserialize(using = MoneyDeserializer.class)
+    private long amount;
+
+    private String status;
+
+}
@@ -0,0 +1,25 @@
+package com.casestudy.bank.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class WriteBehindStats implements Serializable {
+
+    private long submitted;
+
+    //submissions superseded by a later balance of the same account before it was written
+    private long coalesced;
+
+    private long batches;
+
+    private long rows;
+
+    private int pending;
+
+}
@@ -0,0 +1,58 @@
+package com.casestudy.bank.eventsourcing;
+
+import com.casestudy.bank.model.AccountType;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.List;
+
+//One fact of the event log, fields a type does not use stay empty
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class AccountEvent implements Serializable {
+
+    public enum Type {
+        ACCOUNT_OPENED,
+        CUSTOMER_UPDATED,
+        TRANSFER
+    }
+
+    //assigned by the log on append
+    private long sequence;
+
+    private long timestamp;
+
+    private Type type;
+
+    //ACCOUNT_OPENED
+    private int accountId;
+
+    private AccountType accountType;
+
+    //minor units, opening balance or transferred amount
+    private long amount;
+
+    //TRANSFER
+    private int fromAccount;
+
+    private int toAccount;
+
+    //every customer of an opened account, or the one updated
+    private List<CustomerState> customers;
+
+    public static AccountEvent accountOpened(int accountId, AccountType accountType, long balance, List<CustomerState> customers) {
+        return new AccountEvent(0, 0, Type.ACCOUNT_OPENED, accountId, accountType, balance, 0, 0, customers);
+    }
+
+    public static AccountEvent customerUpdated(CustomerState customer) {
+        return new AccountEvent(0, 0, Type.CUSTOMER_UPDATED, customer.getAccountId(), null, 0, 0, 0, Collections.singletonList(customer));
+    }
+
+    public static AccountEvent transfer(int fromAccount, int toAccount, long amount) {
+        return new AccountEvent(0, 0, Type.TRANSFER, 0, null, amount, fromAccount, toAccount, Collections.emptyList());
+    }
+}
@@ -0,0 +1,63 @@
+package com.casestudy.bank.eventsourcing;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+//Account and customer state folded from events in log order, not thread-safe, EventSourcing serializes access
+public class AccountProjection {
+
+    private final Map<Integer, AccountState> accounts = new HashMap<>();
+
+    private final Map<Integer, CustomerState> customers = new HashMap<>();
+
+    public void apply(AccountEvent event) {
+        switch (event.getType()) {
+            case ACCOUNT_OPENED:
+                accounts.put(event.getAccountId(), new AccountState(event.getAccountId(), event.getAccountType(), event.getAmount()));
+                event.getCustomers().forEach(this::putCustomer);
+                break;
+            case CUSTOMER_UPDATED:
+                putCustomer(event.getCustomers().get(0));
+                break;
+            case TRANSFER:
+                //a transfer event is a fact that already passed its funds check, replay only moves the amount
+                AccountState from = accounts.get(event.getFromAccount());
+                AccountState to = accounts.get(event.getToAccount());
+                if (from != null)
+                    from.setBalance(from.getBalance() - event.getAmount());
+                if (to != null)
+                    to.setBalance(to.getBalance() + event.getAmount());
+                break;
+        }
+    }
+
+    public AccountState getAccount(int accountId) {
+        return accounts.get(accountId);
+    }
+
+    public Collection<AccountState> getAccounts() {
+        return accounts.values();
+    }
+
+    public Collection<CustomerState> getCustomers() {
+        return customers.values();
+    }
+
+    public boolean isEmpty() {
+        return accounts.isEmpty();
+    }
+
+    void putAccount(AccountState account) {
+        accounts.put(account.getAccountId(), account);
+    }
+
+    void putCustomer(CustomerState customer) {
+        customers.put(customer.getCustomerId(), customer);
+    }
+
+    void clear() {
+        accounts.clear();
+        customers.clear();
+    }
+}
@@ -0,0 +1,22 @@
+package com.casestudy.bank.eventsourcing;
+
+import com.casestudy.bank.model.AccountType;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class AccountState implements Serializable {
+
+    private int accountId;
+
+    private AccountType accountType;
+
+    //minor units
+    private long balance;
+
+}
@@ -0,0 +1,24 @@
+package com.casestudy.bank.eventsourcing;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class CustomerState implements Serializable {
+
+    private int customerId;
+
+    private int accountId;
+
+    private String firstName;
+
+    private String lastName;
+
+    private String email;
+
+}
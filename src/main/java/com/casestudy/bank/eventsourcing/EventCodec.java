@@ -0,0 +1,101 @@
+package com.casestudy.bank.eventsourcing;
+
+import com.casestudy.bank.model.AccountType;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+
+//Compact binary form of events and state shared by the event log and snapshots, enums are written as ordinals
+final class EventCodec {
+
+    private static final AccountEvent.Type[] TYPES = AccountEvent.Type.values();
+
+    private static final AccountType[] ACCOUNT_TYPES = AccountType.values();
+
+    private EventCodec() {
+    }
+
+    static byte[] encode(AccountEvent event) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeLong(event.getSequence());
+            out.writeLong(event.getTimestamp());
+            out.writeByte(event.getType().ordinal());
+            switch (event.getType()) {
+                case ACCOUNT_OPENED:
+                    writeAccount(out, new AccountState(event.getAccountId(), event.getAccountType(), event.getAmount()));
+                    out.writeInt(event.getCustomers().size());
+                    for (CustomerState customer : event.getCustomers())
+                        writeCustomer(out, customer);
+                    break;
+                case CUSTOMER_UPDATED:
+                    writeCustomer(out, event.getCustomers().get(0));
+                    break;
+                case TRANSFER:
+                    out.writeInt(event.getFromAccount());
+                    out.writeInt(event.getToAccount());
+                    out.writeLong(event.getAmount());
+                    break;
+            }
+        } catch (IOException exception) {
+            throw new UncheckedIOException(exception);
+        }
+        return bytes.toByteArray();
+    }
+
+    static AccountEvent decode(byte[] body) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(body));
+        long sequence = in.readLong();
+        long timestamp = in.readLong();
+        AccountEvent.Type type = TYPES[in.readUnsignedByte()];
+        AccountEvent event;
+        switch (type) {
+            case ACCOUNT_OPENED:
+                AccountState account = readAccount(in);
+                int count = in.readInt();
+                List<CustomerState> customers = new ArrayList<>(count);
+                for (int i = 0; i < count; i++)
+                    customers.add(readCustomer(in));
+                event = AccountEvent.accountOpened(account.getAccountId(), account.getAccountType(), account.getBalance(), customers);
+                break;
+            case CUSTOMER_UPDATED:
+                event = AccountEvent.customerUpdated(readCustomer(in));
+                break;
+            default:
+                event = AccountEvent.transfer(in.readInt(), in.readInt(), in.readLong());
+        }
+        event.setSequence(sequence);
+        event.setTimestamp(timestamp);
+        return event;
+    }
+
+    static void writeAccount(DataOutput out, AccountState account) throws IOException {
+        out.writeInt(account.getAccountId());
+        out.writeByte(account.getAccountType().ordinal());
+        out.writeLong(account.getBalance());
+    }
+
+    static AccountState readAccount(DataInput in) throws IOException {
+        return new AccountState(in.readInt(), ACCOUNT_TYPES[in.readUnsignedByte()], in.readLong());
+    }
+
+    static void writeCustomer(DataOutput out, CustomerState customer) throws IOException {
+        out.writeInt(customer.getCustomerId());
+        out.writeInt(customer.getAccountId());
+        out.writeUTF(customer.getFirstName());
+        out.writeUTF(customer.getLastName());
+        out.writeUTF(customer.getEmail());
+    }
+
+    static CustomerState readCustomer(DataInput in) throws IOException {
+        return new CustomerState(in.readInt(), in.readInt(), in.readUTF(), in.readUTF(), in.readUTF());
+    }
+}
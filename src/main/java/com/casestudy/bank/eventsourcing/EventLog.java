@@ -0,0 +1,269 @@
+package com.casestudy.bank.eventsourcing;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+//Append-only log of account events as length and CRC prefixed records in segment files, one segment per snapshot
+//interval, made durable by a group-committing flusher thread like TransferJournal
+public class EventLog {
+
+    private static final String SEGMENT_PREFIX = "events-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    //length and checksum in front of every event
+    private static final int HEADER_SIZE = 8;
+
+    //anything longer is a torn or corrupt length field
+    private static final int MAX_EVENT_SIZE = 1 << 20;
+
+    private final Path directory;
+
+    private final Object appendLock = new Object();
+
+    private final Object durableLock = new Object();
+
+    //guarded by appendLock
+    private FileChannel segment;
+    private long lastSequence;
+    private final CRC32 crc = new CRC32();
+
+    //guarded by durableLock
+    private long requestedSequence;
+    private long durableSequence;
+    private UncheckedIOException flushFailure;
+
+    private volatile boolean running;
+
+    private Thread flusher;
+
+    public EventLog(Path directory) {
+        this.directory = directory;
+    }
+
+    public void open() throws IOException {
+        Files.createDirectories(directory);
+        List<Path> segments = segments();
+        synchronized (appendLock) {
+            if (segments.isEmpty()) {
+                segment = openSegment(segmentPath(1));
+            } else {
+                long validLength = 0;
+                for (Path path : segments)
+                    validLength = replay(path, 0, event -> lastSequence = event.getSequence());
+                //a segment just rolled to is empty, its name still tells where the sequence stood
+                Path newest = segments.get(segments.size() - 1);
+                lastSequence = Math.max(lastSequence, firstSequence(newest) - 1);
+                //a torn tail of the newest segment is cut off, later appends overwrite it
+                segment = openSegment(newest);
+                segment.truncate(validLength);
+                segment.position(validLength);
+            }
+        }
+        synchronized (durableLock) {
+            requestedSequence = lastSequence;
+            durableSequence = lastSequence;
+        }
+        running = true;
+        flusher = new Thread(this::flushLoop, "event-log-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    public void close() throws IOException, InterruptedException {
+        running = false;
+        synchronized (durableLock) {
+            durableLock.notifyAll();
+        }
+        if (flusher != null)
+            flusher.join();
+        synchronized (appendLock) {
+            if (segment != null) {
+                segment.force(false);
+                segment.close();
+            }
+        }
+    }
+
+    //Assign the next sequence, write the event to the page cache and return the sequence, call awaitDurable before acknowledging it
+    public long append(AccountEvent event) {
+        synchronized (appendLock) {
+            event.setSequence(lastSequence + 1);
+            event.setTimestamp(System.currentTimeMillis());
+            byte[] body = EventCodec.encode(event);
+            crc.reset();
+            crc.update(body);
+            ByteBuffer record = ByteBuffer.allocate(HEADER_SIZE + body.length);
+            record.putInt(body.length).putInt((int) crc.getValue()).put(body).flip();
+            try {
+                while (record.hasRemaining())
+                    segment.write(record);
+            } catch (IOException exception) {
+                UncheckedIOException failure = new UncheckedIOException(exception);
+                fail(failure);
+                throw failure;
+            }
+            lastSequence = event.getSequence();
+            return lastSequence;
+        }
+    }
+
+    //Block until the event is on disk, one fsync covers every event appended while the previous one ran
+    public void awaitDurable(long sequence) {
+        synchronized (durableLock) {
+            if (sequence > requestedSequence) {
+                requestedSequence = sequence;
+                durableLock.notifyAll();
+            }
+            while (durableSequence < sequence) {
+                if (flushFailure != null)
+                    throw flushFailure;
+                if (!running)
+                    throw new IllegalStateException("Event log is closed");
+                try {
+                    durableLock.wait();
+                } catch (InterruptedException exception) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while waiting for the event log", exception);
+                }
+            }
+        }
+    }
+
+    //Every intact event after the given sequence, in sequence order
+    public void replay(long afterSequence, Consumer<AccountEvent> consumer) throws IOException {
+        for (Path path : segments())
+            replay(path, afterSequence, consumer);
+    }
+
+    //Start a new segment with the next event, so the ones before it can be deleted once a snapshot covers them
+    public void roll() throws IOException {
+        synchronized (appendLock) {
+            segment.force(false);
+            segment.close();
+            segment = openSegment(segmentPath(lastSequence + 1));
+        }
+    }
+
+    //Delete the segments holding only events up to the given sequence
+    public void deleteSegmentsUpTo(long sequence) throws IOException {
+        List<Path> segments = segments();
+        for (int i = 0; i + 1 < segments.size(); i++) {
+            if (firstSequence(segments.get(i + 1)) <= sequence + 1)
+                Files.delete(segments.get(i));
+        }
+    }
+
+    public long getLastSequence() {
+        synchronized (appendLock) {
+            return lastSequence;
+        }
+    }
+
+    List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> {
+                String name = path.getFileName().toString();
+                return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+            }).sorted().collect(Collectors.toList());
+        }
+    }
+
+    private void flushLoop() {
+        while (running) {
+            synchronized (durableLock) {
+                while (running && requestedSequence <= durableSequence) {
+                    try {
+                        durableLock.wait();
+                    } catch (InterruptedException exception) {
+                        return;
+                    }
+                }
+            }
+            long target;
+            FileChannel channel;
+            synchronized (appendLock) {
+                target = lastSequence;
+                channel = segment;
+            }
+            try {
+                channel.force(false);
+            } catch (IOException exception) {
+                //a segment closed by roll() was forced before it was closed
+                if (channel.isOpen()) {
+                    fail(new UncheckedIOException(exception));
+                    return;
+                }
+            }
+            synchronized (durableLock) {
+                durableSequence = Math.max(durableSequence, target);
+                durableLock.notifyAll();
+            }
+        }
+    }
+
+    private void fail(UncheckedIOException exception) {
+        synchronized (durableLock) {
+            flushFailure = exception;
+            durableLock.notifyAll();
+        }
+    }
+
+    //returns the length of the intact prefix of the segment
+    private long replay(Path path, long afterSequence, Consumer<AccountEvent> consumer) throws IOException {
+        long validLength = 0;
+        CRC32 checksum = new CRC32();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 1 << 16))) {
+            while (true) {
+                byte[] body;
+                int expected;
+                try {
+                    int length = in.readInt();
+                    expected = in.readInt();
+                    if (length <= 0 || length > MAX_EVENT_SIZE)
+                        break;
+                    body = new byte[length];
+                    in.readFully(body);
+                } catch (EOFException exception) {
+                    break;
+                }
+                checksum.reset();
+                checksum.update(body);
+                if ((int) checksum.getValue() != expected)
+                    break;
+                AccountEvent event = EventCodec.decode(body);
+                if (event.getSequence() > afterSequence)
+                    consumer.accept(event);
+                validLength += HEADER_SIZE + body.length;
+            }
+        }
+        return validLength;
+    }
+
+    private long firstSequence(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    private Path segmentPath(long firstSequence) {
+        return directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, firstSequence, SEGMENT_SUFFIX));
+    }
+
+    private static FileChannel openSegment(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        channel.position(channel.size());
+        return channel;
+    }
+}
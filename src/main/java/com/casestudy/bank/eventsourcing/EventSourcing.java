@@ -0,0 +1,261 @@
+package com.casestudy.bank.eventsourcing;
+
+import com.casestudy.bank.customer.EmailIndex;
+import com.casestudy.bank.dto.AccountBalance;
+import com.casestudy.bank.dto.EventSourcingStats;
+import com.casestudy.bank.dto.TransferResult;
+import com.casestudy.bank.id.IdSequences;
+import com.casestudy.bank.model.Account;
+import com.casestudy.bank.model.AccountType;
+import com.casestudy.bank.model.Customer;
+import com.casestudy.bank.money.Money;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+//Account openings, customer updates and successful transfers are appended to the event log once committed, and folded
+//into an in-memory projection that serves balances. Every snapshot-every events the projection is written to a snapshot,
+//so a restart loads the newest snapshot, replays only the events after it and writes the state back to the database.
+@Component
+@ConditionalOnProperty(name = "bank.event-sourcing.enabled", havingValue = "true")
+public class EventSourcing implements SmartInitializingSingleton, DisposableBean {
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+    @Autowired
+    IdSequences idSequences;
+
+    @Autowired
+    EmailIndex emailIndex;
+
+    @Value("${bank.event-sourcing.directory:events}")
+    private String directory;
+
+    @Value("${bank.event-sourcing.snapshot-every:100000}")
+    private long snapshotEvery;
+
+    private EventLog eventLog;
+
+    private SnapshotStore snapshotStore;
+
+    //guards the projection and keeps it in log order, events are appended and applied together
+    private final Object lock = new Object();
+
+    private final AccountProjection projection = new AccountProjection();
+
+    private final AtomicBoolean snapshotting = new AtomicBoolean();
+
+    private final ExecutorService snapshotExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "event-snapshot");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private volatile long snapshotSequence;
+    private volatile long snapshots;
+    private long recoveredEvents;
+    private long recoveryMillis;
+
+    //runs once schema and data.sql are in place and before the web server takes requests
+    @Override
+    public void afterSingletonsInstantiated() {
+        long started = System.currentTimeMillis();
+        Path path = Paths.get(directory);
+        eventLog = new EventLog(path);
+        snapshotStore = new SnapshotStore(path);
+        try {
+            synchronized (lock) {
+                snapshotSequence = snapshotStore.restore(projection);
+                eventLog.open();
+                eventLog.replay(snapshotSequence, event -> {
+                    projection.apply(event);
+                    recoveredEvents++;
+                });
+            }
+        } catch (IOException exception) {
+            throw new UncheckedIOException(exception);
+        }
+        if (projection.isEmpty() && eventLog.getLastSequence() == 0)
+            recordExistingAccounts();
+        else
+            restoreDatabase();
+        recoveryMillis = System.currentTimeMillis() - started;
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        snapshotExecutor.shutdown();
+        snapshotExecutor.awaitTermination(1, TimeUnit.MINUTES);
+        if (eventLog.getLastSequence() > snapshotSequence)
+            snapshot();
+        eventLog.close();
+    }
+
+    public void accountOpened(Account account) {
+        accountsOpened(List.of(account));
+    }
+
+    //one durable wait for a whole chunk of imported accounts
+    public void accountsOpened(List<Account> accounts) {
+        if (accounts.isEmpty())
+            return;
+        long sequence = 0;
+        synchronized (lock) {
+            for (Account account : accounts)
+                sequence = append(AccountEvent.accountOpened(account.getAccountId(), account.getAccountType(), account.getBalance(),
+                        account.getCustomers().stream().map(customer -> toState(customer, account.getAccountId())).collect(Collectors.toList())));
+        }
+        eventLog.awaitDurable(sequence);
+    }
+
+    public void customerUpdated(Customer customer) {
+        long sequence;
+        synchronized (lock) {
+            sequence = append(AccountEvent.customerUpdated(toState(customer, customer.getAccount().getAccountId())));
+        }
+        eventLog.awaitDurable(sequence);
+    }
+
+    public void transferred(Integer from, Integer to, long amount) {
+        long sequence;
+        synchronized (lock) {
+            sequence = append(AccountEvent.transfer(from, to, amount));
+        }
+        eventLog.awaitDurable(sequence);
+    }
+
+    //the successful transfers of a committed batch
+    public void transferred(List<TransferResult> results) {
+        long sequence = 0;
+        synchronized (lock) {
+            for (TransferResult result : results) {
+                if (result.getStatus().equals("SUCCESS"))
+                    sequence = append(AccountEvent.transfer(result.getFromAccount(), result.getToAccount(), result.getAmount()));
+            }
+        }
+        if (sequence > 0)
+            eventLog.awaitDurable(sequence);
+    }
+
+    public Optional<AccountBalance> getBalance(Integer accountId) {
+        synchronized (lock) {
+            AccountState account = accountId == null ? null : projection.getAccount(accountId);
+            return account == null ? Optional.empty()
+                    : Optional.of(new AccountBalance(account.getAccountId(), account.getAccountType(), account.getBalance()));
+        }
+    }
+
+    public EventSourcingStats getStats() {
+        synchronized (lock) {
+            return new EventSourcingStats(eventLog.getLastSequence(), snapshotSequence, snapshots, projection.getAccounts().size(),
+                    recoveredEvents, recoveryMillis);
+        }
+    }
+
+    //Roll the log and copy the projection under the lock, then write the copy while appends go on
+    public void snapshot() throws IOException {
+        long sequence;
+        List<AccountState> accounts;
+        List<CustomerState> customers;
+        synchronized (lock) {
+            sequence = eventLog.getLastSequence();
+            if (sequence <= snapshotSequence)
+                return;
+            eventLog.roll();
+            accounts = new ArrayList<>(projection.getAccounts().size());
+            for (AccountState account : projection.getAccounts())
+                accounts.add(new AccountState(account.getAccountId(), account.getAccountType(), account.getBalance()));
+            //customer states are replaced on update, never changed in place
+            customers = new ArrayList<>(projection.getCustomers());
+        }
+        snapshotStore.write(sequence, accounts, customers);
+        snapshotSequence = sequence;
+        snapshots++;
+        eventLog.deleteSegmentsUpTo(sequence);
+        snapshotStore.deleteOlderThan(sequence);
+    }
+
+    //guarded by lock
+    private long append(AccountEvent event) {
+        long sequence = eventLog.append(event);
+        projection.apply(event);
+        if (sequence - snapshotSequence >= snapshotEvery && snapshotting.compareAndSet(false, true)) {
+            snapshotExecutor.execute(() -> {
+                try {
+                    snapshot();
+                } catch (IOException exception) {
+                    //the log still holds every event, the next append tries again
+                } finally {
+                    snapshotting.set(false);
+                }
+            });
+        }
+        return sequence;
+    }
+
+    //First start in event-sourced mode, the rows already in the database become the opening events
+    private void recordExistingAccounts() {
+        Map<Integer, List<CustomerState>> customers = new HashMap<>();
+        jdbcTemplate.query("select customer_id, account_id, first_name, last_name, email from customer order by customer_id", row -> {
+            CustomerState customer = new CustomerState(row.getInt(1), row.getInt(2), row.getString(3), row.getString(4), row.getString(5));
+            customers.computeIfAbsent(customer.getAccountId(), accountId -> new ArrayList<>()).add(customer);
+        });
+        long sequence = 0;
+        synchronized (lock) {
+            List<AccountEvent> events = jdbcTemplate.query("select account_id, account_type, balance from account order by account_id",
+                    (row, rowNumber) -> AccountEvent.accountOpened(row.getInt(1), AccountType.valueOf(row.getString(2)),
+                            Money.fromDecimal(row.getBigDecimal(3)), customers.getOrDefault(row.getInt(1), List.of())));
+            for (AccountEvent event : events)
+                sequence = append(event);
+        }
+        if (sequence > 0)
+            eventLog.awaitDurable(sequence);
+    }
+
+    //The projection is the source of truth, accounts and customers are written back with their original ids
+    private void restoreDatabase() {
+        Collection<AccountState> accounts = projection.getAccounts();
+        Collection<CustomerState> customers = projection.getCustomers();
+        transactionTemplate.executeWithoutResult(transaction -> {
+            jdbcTemplate.batchUpdate("merge into account(account_id,account_type,balance,version) key(account_id) values(?,?,?,0)",
+                    accounts.stream().map(account -> new Object[]{account.getAccountId(), account.getAccountType().name(),
+                            Money.toDecimal(account.getBalance())}).collect(Collectors.toList()));
+            jdbcTemplate.batchUpdate("merge into customer(customer_id,first_name,last_name,email,account_id) key(customer_id) values(?,?,?,?,?)",
+                    customers.stream().map(customer -> new Object[]{customer.getCustomerId(), customer.getFirstName(),
+                            customer.getLastName(), customer.getEmail(), customer.getAccountId()}).collect(Collectors.toList()));
+            //the projection holds the whole balance of a hot account, slots start over empty
+            jdbcTemplate.update("update account_slot set balance = 0");
+        });
+        idSequences.moveSequencesPastIds();
+        emailIndex.load();
+    }
+
+    private static CustomerState toState(Customer customer, Integer accountId) {
+        return new CustomerState(customer.getCustomerId(), accountId, customer.getFirstName(), customer.getLastName(), customer.getEmail());
+    }
+}
@@ -0,0 +1,118 @@
+package com.casestudy.bank.eventsourcing;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+//Binary snapshots of the projection, each covering every event up to its sequence, written to a temp file and moved into place
+public class SnapshotStore {
+
+    private static final int MAGIC = 0x42534E50;
+    private static final int VERSION = 1;
+
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final String SNAPSHOT_SUFFIX = ".bin";
+
+    private final Path directory;
+
+    public SnapshotStore(Path directory) {
+        this.directory = directory;
+    }
+
+    //magic, version, sequence, accounts, customers, then the CRC32 of everything before it
+    public void write(long sequence, Collection<AccountState> accounts, Collection<CustomerState> customers) throws IOException {
+        Files.createDirectories(directory);
+        Path target = snapshotPath(sequence);
+        Path temp = directory.resolve(target.getFileName() + ".tmp");
+        try (FileOutputStream file = new FileOutputStream(temp.toFile())) {
+            CheckedOutputStream checked = new CheckedOutputStream(new BufferedOutputStream(file, 1 << 16), new CRC32());
+            DataOutputStream out = new DataOutputStream(checked);
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(sequence);
+            out.writeInt(accounts.size());
+            for (AccountState account : accounts)
+                EventCodec.writeAccount(out, account);
+            out.writeInt(customers.size());
+            for (CustomerState customer : customers)
+                EventCodec.writeCustomer(out, customer);
+            out.flush();
+            new DataOutputStream(file).writeInt((int) checked.getChecksum().getValue());
+            file.getFD().sync();
+        }
+        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    //Load the newest intact snapshot into the projection and return its sequence, 0 when there is none
+    public long restore(AccountProjection projection) throws IOException {
+        for (Path snapshot : snapshotsNewestFirst()) {
+            projection.clear();
+            if (read(snapshot, projection))
+                return sequence(snapshot);
+        }
+        projection.clear();
+        return 0;
+    }
+
+    //Delete the snapshots older than the one at the given sequence
+    public void deleteOlderThan(long sequence) throws IOException {
+        for (Path snapshot : snapshotsNewestFirst()) {
+            if (sequence(snapshot) < sequence)
+                Files.delete(snapshot);
+        }
+    }
+
+    private boolean read(Path snapshot, AccountProjection projection) throws IOException {
+        try (DataInputStream raw = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshot), 1 << 16))) {
+            CheckedInputStream checked = new CheckedInputStream(raw, new CRC32());
+            DataInputStream in = new DataInputStream(checked);
+            if (in.readInt() != MAGIC || in.readInt() != VERSION || in.readLong() != sequence(snapshot))
+                return false;
+            int accounts = in.readInt();
+            for (int i = 0; i < accounts; i++)
+                projection.putAccount(EventCodec.readAccount(in));
+            int customers = in.readInt();
+            for (int i = 0; i < customers; i++)
+                projection.putCustomer(EventCodec.readCustomer(in));
+            int expected = (int) checked.getChecksum().getValue();
+            return raw.readInt() == expected;
+        } catch (IOException | RuntimeException exception) {
+            //truncated or garbled, the caller falls back to an older snapshot
+            return false;
+        }
+    }
+
+    private List<Path> snapshotsNewestFirst() throws IOException {
+        if (!Files.isDirectory(directory))
+            return List.of();
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> {
+                String name = path.getFileName().toString();
+                return name.startsWith(SNAPSHOT_PREFIX) && name.endsWith(SNAPSHOT_SUFFIX);
+            }).sorted(Comparator.reverseOrder()).collect(Collectors.toList());
+        }
+    }
+
+    private long sequence(Path snapshot) {
+        String name = snapshot.getFileName().toString();
+        return Long.parseLong(name.substring(SNAPSHOT_PREFIX.length(), name.length() - SNAPSHOT_SUFFIX.length()));
+    }
+
+    private Path snapshotPath(long sequence) {
+        return directory.resolve(String.format("%s%020d%s", SNAPSHOT_PREFIX, sequence, SNAPSHOT_SUFFIX));
+    }
+}
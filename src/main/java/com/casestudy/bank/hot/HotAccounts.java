@@ -0,0 +1,59 @@
+package com.casestudy.bank.hot;
+
+import com.casestudy.bank.model.AccountSlot;
+import com.casestudy.bank.repository.AccountSlotRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.annotation.PostConstruct;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+//Accounts listed in bank.hot-accounts.ids are split into slots sub-balances so credits to them stop serializing on one row
+@Component
+public class HotAccounts {
+
+    @Autowired
+    AccountSlotRepository accountSlotRepository;
+
+    @Value("${bank.hot-accounts.ids:}")
+    private Set<Integer> hotAccountIds;
+
+    @Value("${bank.hot-accounts.slots:8}")
+    private int slots;
+
+    @Value("${bank.ledger.enabled:false}")
+    private boolean ledgerEnabled;
+
+    //the ledger loads only the account row and never sees money credited to slots
+    @PostConstruct
+    public void checkMode() {
+        if (ledgerEnabled && !hotAccountIds.isEmpty())
+            throw new IllegalStateException("bank.hot-accounts.ids cannot be combined with bank.ledger.enabled");
+    }
+
+    public boolean isHot(Integer accountId) {
+        return accountId != null && hotAccountIds.contains(accountId);
+    }
+
+    //random slot, so concurrent writers spread over the slots without coordinating
+    public int pickSlot() {
+        return ThreadLocalRandom.current().nextInt(slots);
+    }
+
+    //Create the missing slots of every hot account, a credit to a missing slot falls back to the account row
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void createSlots() {
+        for (Integer accountId : hotAccountIds) {
+            for (int slot = 0; slot < slots; slot++) {
+                if (!accountSlotRepository.existsByAccountIdAndSlot(accountId, slot))
+                    accountSlotRepository.save(new AccountSlot(accountId, slot, 0));
+            }
+        }
+    }
+}
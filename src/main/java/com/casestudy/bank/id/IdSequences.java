@@ -0,0 +1,79 @@
+package com.casestudy.bank.id;
+
+import com.casestudy.bank.sharding.AccountShards;
+import org.hibernate.dialect.Dialect;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.persistence.EntityManagerFactory;
+
+//Entity ids come from database sequences in blocks of BLOCK_SIZE that Hibernate hands out from memory (pooled-lo).
+//On startup every sequence is moved past the ids already in its table, so rows written with explicit ids by data.sql,
+//an IDENTITY era schema or an external loader are never allocated again.
+//With several shards, shard k's sequences step over the blocks of the other shards and only hand out blocks b with b % shards == k,
+//see AccountShards.
+@Component
+public class IdSequences implements SmartInitializingSingleton {
+
+    //ids reserved per sequence call, one round trip covers this many inserts
+    public static final int BLOCK_SIZE = 500;
+
+    //sequence, table, id column
+    private static final String[][] SEQUENCES = {
+            {"account_seq", "account", "account_id"},
+            {"customer_seq", "customer", "customer_id"},
+            {"account_slot_seq", "account_slot", "slot_id"},
+            {"account_transaction_seq", "account_transaction", "transaction_id"}
+    };
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    AccountShards accountShards;
+
+    //runs once schema and data.sql are in place and before the web server takes requests
+    @Override
+    public void afterSingletonsInstantiated() {
+        moveSequencesPastIds();
+    }
+
+    //also called after rows are restored with their original ids, e.g. by EventSourcing
+    public void moveSequencesPastIds() {
+        Dialect dialect = entityManagerFactory.unwrap(SessionFactoryImplementor.class).getJdbcServices().getDialect();
+        for (String[] sequence : SEQUENCES) {
+            if (!accountShards.isSharded())
+                moveSequencePastIds(dialect, sequence[0], sequence[1], sequence[2]);
+            else
+                for (int shard = 0; shard < accountShards.count(); shard++) {
+                    int owner = shard;
+                    accountShards.run(shard, () -> alignSequence(dialect, owner, sequence[0], sequence[1], sequence[2]));
+                }
+        }
+    }
+
+    //the block drawn to read the sequence is simply skipped, restarting never moves a sequence backwards
+    private void moveSequencePastIds(Dialect dialect, String sequence, String table, String column) {
+        Long next = jdbcTemplate.queryForObject(dialect.getSequenceNextValString(sequence), Long.class);
+        Long maxId = jdbcTemplate.queryForObject("select max(" + column + ") from " + table, Long.class);
+        if (next != null && maxId != null && next <= maxId)
+            jdbcTemplate.execute("alter sequence " + sequence + " restart with " + (maxId + 1));
+    }
+
+    //restarts at the first block of the shard past its ids, hibernate still takes BLOCK_SIZE ids per call
+    private void alignSequence(Dialect dialect, int shard, String sequence, String table, String column) {
+        long stride = (long) accountShards.count() * BLOCK_SIZE;
+        long first = (long) shard * BLOCK_SIZE + 1;
+        Long next = jdbcTemplate.queryForObject(dialect.getSequenceNextValString(sequence), Long.class);
+        Long maxId = jdbcTemplate.queryForObject("select max(" + column + ") from " + table, Long.class);
+        long floor = Math.max(next == null ? 1 : next, maxId == null ? 1 : maxId + 1);
+        long start = floor <= first ? first : first + (floor - first + stride - 1) / stride * stride;
+        jdbcTemplate.execute("alter sequence " + sequence + " restart with " + start + " increment by " + stride);
+    }
+}
@@ -0,0 +1,143 @@
+package com.casestudy.bank.idempotency;
+
+import java.util.Arrays;
+import java.util.List;
+
+//Recent idempotency keys and the status of their transfer, kept in two open-addressing tables of primitive arrays.
+//Inserts go to the current table, which becomes the previous one every half window or once it holds capacity keys,
+//so a key is remembered for at least half a window and memory never grows past two tables.
+public class IdempotencyIndex {
+
+    public static final String KEY_REUSED = "KEY REUSED";
+
+    //a stored status is its position in this list plus one, zero marks an empty slot
+    private static final List<String> STATUSES = List.of("SUCCESS", "INSUFFICIENT FUNDS", "ID MISMATCH");
+
+    private final int capacity;
+
+    private final long rotateAfterMs;
+
+    private Table current;
+
+    private Table previous;
+
+    public IdempotencyIndex(int capacity, long windowMs) {
+        if (capacity < 1)
+            throw new IllegalArgumentException("Capacity must be positive");
+        this.capacity = capacity;
+        this.rotateAfterMs = Math.max(windowMs / 2, 1);
+        current = new Table(capacity);
+        previous = new Table(capacity);
+        current.startedAt = System.currentTimeMillis();
+    }
+
+    //only final outcomes are remembered, a transfer that gave up on a conflict may be retried with the same key
+    public static boolean isRecordable(String status) {
+        return STATUSES.contains(status);
+    }
+
+    //Status recorded for the key, KEY_REUSED when it was recorded for another request, null when the key is unknown
+    public synchronized String find(String key, int requestHash) {
+        long fingerprint = fingerprint(key);
+        Table table = current;
+        int slot = table.find(fingerprint);
+        if (slot < 0) {
+            table = previous;
+            slot = table.find(fingerprint);
+        }
+        if (slot < 0)
+            return null;
+        return table.requestHashes[slot] == requestHash ? STATUSES.get(table.statuses[slot] - 1) : KEY_REUSED;
+    }
+
+    //The first status recorded for a key is kept
+    public synchronized void put(String key, int requestHash, String status) {
+        int code = STATUSES.indexOf(status) + 1;
+        if (code == 0)
+            return;
+        long fingerprint = fingerprint(key);
+        if (current.find(fingerprint) >= 0 || previous.find(fingerprint) >= 0)
+            return;
+        if (current.size >= capacity)
+            rotate(System.currentTimeMillis());
+        current.insert(fingerprint, requestHash, (byte) code);
+    }
+
+    //Drop the previous table once the current one is half a window old, true when that happened
+    public synchronized boolean rotateIfDue(long now) {
+        if (now - current.startedAt < rotateAfterMs)
+            return false;
+        rotate(now);
+        return true;
+    }
+
+    public synchronized int size() {
+        return current.size + previous.size;
+    }
+
+    //caller holds the index lock
+    private void rotate(long now) {
+        Table emptied = previous;
+        emptied.clear();
+        previous = current;
+        current = emptied;
+        current.startedAt = now;
+    }
+
+    //64 bit FNV-1a, the chance of two live keys sharing a fingerprint is negligible next to the table sizes used
+    private static long fingerprint(String key) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            hash ^= key.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash == 0 ? 1 : hash;
+    }
+
+    //linear probing over power of two arrays sized to stay at most half full
+    private static class Table {
+        private final long[] fingerprints;
+        private final int[] requestHashes;
+        private final byte[] statuses;
+        private final int mask;
+        private int size;
+        private long startedAt;
+
+        private Table(int capacity) {
+            int length = Integer.highestOneBit(Math.max(capacity * 2 - 1, 1)) << 1;
+            fingerprints = new long[length];
+            requestHashes = new int[length];
+            statuses = new byte[length];
+            mask = length - 1;
+        }
+
+        private int find(long fingerprint) {
+            for (int slot = slot(fingerprint); fingerprints[slot] != 0; slot = (slot + 1) & mask) {
+                if (fingerprints[slot] == fingerprint)
+                    return slot;
+            }
+            return -1;
+        }
+
+        private void insert(long fingerprint, int requestHash, byte status) {
+            int slot = slot(fingerprint);
+            while (fingerprints[slot] != 0)
+                slot = (slot + 1) & mask;
+            fingerprints[slot] = fingerprint;
+            requestHashes[slot] = requestHash;
+            statuses[slot] = status;
+            size++;
+        }
+
+        private int slot(long fingerprint) {
+            return (int) (fingerprint ^ (fingerprint >>> 32)) & mask;
+        }
+
+        private void clear() {
+            Arrays.fill(fingerprints, 0);
+            Arrays.fill(requestHashes, 0);
+            Arrays.fill(statuses, (byte) 0);
+            size = 0;
+        }
+    }
+}
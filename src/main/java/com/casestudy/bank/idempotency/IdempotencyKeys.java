@@ -0,0 +1,162 @@
+package com.casestudy.bank.idempotency;
+
+import com.casestudy.bank.model.IdempotencyRecord;
+import com.casestudy.bank.repository.IdempotencyRecordRepository;
+import com.casestudy.bank.sharding.AccountShards;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.stream.Stream;
+
+//Transfer idempotency keys: replays within window-ms are answered from the in-memory index, the table is the source of truth
+@Component
+public class IdempotencyKeys {
+
+    //status of a key claimed by a ledger transfer still being applied
+    static final String PENDING = "PENDING";
+
+    @Autowired
+    IdempotencyRecordRepository idempotencyRecordRepository;
+
+    @Autowired
+    AccountShards accountShards;
+
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Value("${bank.idempotency.window-ms:86400000}")
+    private long windowMs;
+
+    @Value("${bank.idempotency.capacity:100000}")
+    private int capacity;
+
+    private volatile IdempotencyIndex index;
+
+    //claims commit on their own, whatever transaction the ledger caller is in
+    private TransactionTemplate claimTransactions;
+
+    //expired keys are deleted off the request path, a transfer never waits for the purge or rolls it back
+    private final ExecutorService purger = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "idempotency-purge");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @PostConstruct
+    public void init() {
+        index = new IdempotencyIndex(capacity, windowMs);
+        claimTransactions = new TransactionTemplate(transactionManager);
+        claimTransactions.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    @PreDestroy
+    public void close() {
+        purger.shutdownNow();
+    }
+
+    public static int requestHash(Integer from, Integer to, long amount) {
+        return Objects.hash(from, to, amount);
+    }
+
+    //Status of the transfer first sent with this key, KEY REUSED for a different transfer, null for a new key
+    public String find(String key, int requestHash) {
+        rotateIfDue(System.currentTimeMillis());
+        return index.find(key, requestHash);
+    }
+
+    //Insert the key in the caller's transaction and index it once that commits, a concurrent duplicate fails the insert
+    public void record(String key, int requestHash, String status) {
+        if (!IdempotencyIndex.isRecordable(status))
+            return;
+        long now = System.currentTimeMillis();
+        rotateIfDue(now);
+        idempotencyRecordRepository.save(new IdempotencyRecord(key, requestHash, status, now));
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    index.put(key, requestHash, status);
+                }
+            });
+        } else
+            index.put(key, requestHash, status);
+    }
+
+    //Ledger transfers have no transaction to roll back, so the key is inserted before the money moves: null once the caller
+    //owns the key, else the status of the request that inserted it first, CONFLICT while that one is still being applied.
+    //A key the index forgot is still found in the table, so sequential replays are caught as well as concurrent ones.
+    public String claim(String key, int requestHash) {
+        try {
+            claimTransactions.executeWithoutResult(transaction ->
+                    idempotencyRecordRepository.save(new IdempotencyRecord(key, requestHash, PENDING, System.currentTimeMillis())));
+            return null;
+        } catch (DataIntegrityViolationException exception) {
+            String recovered = recover(key, requestHash);
+            return recovered == null || recovered.equals(PENDING) ? "CONFLICT" : recovered;
+        }
+    }
+
+    //Store the outcome of a claimed transfer, a status that is not final gives the key back for a retry
+    public void complete(String key, int requestHash, String status) {
+        if (!IdempotencyIndex.isRecordable(status)) {
+            release(key);
+            return;
+        }
+        claimTransactions.executeWithoutResult(transaction -> idempotencyRecordRepository.updateStatus(key, status));
+        index.put(key, requestHash, status);
+    }
+
+    //the claimed transfer failed before moving money
+    public void release(String key) {
+        claimTransactions.executeWithoutResult(transaction -> idempotencyRecordRepository.deleteByIdempotencyKey(key));
+    }
+
+    //Status stored by the request that inserted the key first, null when there is none
+    public String recover(String key, int requestHash) {
+        Optional<IdempotencyRecord> record = idempotencyRecordRepository.findById(key);
+        record.ifPresent(value -> index.put(key, value.getRequestHash(), value.getStatus()));
+        return record.map(value -> value.getRequestHash() == requestHash ? value.getStatus() : IdempotencyIndex.KEY_REUSED).orElse(null);
+    }
+
+    //Drop expired keys and index the rest of every shard, so replays after a restart are still answered from memory
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        long since = System.currentTimeMillis() - windowMs;
+        accountShards.runOnEveryShard(() -> transactionTemplate.executeWithoutResult(transaction -> {
+            idempotencyRecordRepository.deleteCreatedBefore(since);
+            try (Stream<IdempotencyRecord> records = idempotencyRecordRepository.streamByCreatedAtGreaterThanEqualOrderByCreatedAt(since)) {
+                records.forEach(record -> index.put(record.getIdempotencyKey(), record.getRequestHash(), record.getStatus()));
+            }
+        }));
+    }
+
+    //keys the index forgets are deleted from the table of every shard one window later
+    private void rotateIfDue(long now) {
+        if (!index.rotateIfDue(now))
+            return;
+        try {
+            purger.execute(() -> accountShards.runOnEveryShard(() -> idempotencyRecordRepository.deleteCreatedBefore(now - windowMs)));
+        } catch (RejectedExecutionException exception) {
+            //shutting down, the next start purges them
+        }
+    }
+}
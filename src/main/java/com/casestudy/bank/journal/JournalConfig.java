@@ -0,0 +1,20 @@
+package com.casestudy.bank.journal;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.nio.file.Paths;
+
+@Configuration
+public class JournalConfig {
+
+    @Bean(initMethod = "open", destroyMethod = "close")
+    @ConditionalOnProperty(name = "bank.journal.enabled", havingValue = "true")
+    public TransferJournal transferJournal(@Value("${bank.journal.directory:journal}") String directory,
+                                           @Value("${bank.journal.segment-size:67108864}") int segmentSize,
+                                           @Value("${bank.journal.compact-on-roll:true}") boolean compactOnRoll) {
+        return new TransferJournal(Paths.get(directory), segmentSize, compactOnRoll);
+    }
+}
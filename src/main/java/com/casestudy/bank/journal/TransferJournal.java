@@ -0,0 +1,365 @@
+package com.casestudy.bank.journal;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+//Append-only journal of transfers in fixed-size memory-mapped segments, made durable by a group-committing flusher thread
+public class TransferJournal {
+
+    //seq, timestamp, from, to, amount, fromBalance, toBalance, crc, padding up to a cache line
+    static final int RECORD_SIZE = 64;
+    private static final int CHECKSUMMED_BYTES = 48;
+
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private final Path directory;
+
+    private final int segmentSize;
+
+    private final boolean compactOnRoll;
+
+    private final Object appendLock = new Object();
+
+    private final Object durableLock = new Object();
+
+    private final Object compactLock = new Object();
+
+    //guarded by appendLock
+    private MappedByteBuffer activeSegment;
+    private int position;
+    private long lastSequence;
+    private final ByteBuffer scratch = ByteBuffer.allocate(CHECKSUMMED_BYTES);
+    private final CRC32 crc = new CRC32();
+
+    //guarded by durableLock
+    private long requestedSequence;
+    private long durableSequence;
+    private UncheckedIOException flushFailure;
+
+    private volatile boolean running;
+
+    private Thread flusher;
+
+    private final ExecutorService compactor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "journal-compactor");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public TransferJournal(Path directory, int segmentSize) {
+        this(directory, segmentSize, false);
+    }
+
+    //with compactOnRoll every roll folds the sealed segments in the background, so disk use and the replay at startup
+    //stay bounded by the number of accounts instead of growing with the transfer history
+    public TransferJournal(Path directory, int segmentSize, boolean compactOnRoll) {
+        this.directory = directory;
+        this.segmentSize = segmentSize - segmentSize % RECORD_SIZE;
+        this.compactOnRoll = compactOnRoll;
+        if (this.segmentSize < RECORD_SIZE)
+            throw new IllegalArgumentException("Segment size must hold at least one record");
+    }
+
+    public void open() throws IOException {
+        Files.createDirectories(directory);
+        List<Path> segments = segments();
+        synchronized (appendLock) {
+            if (segments.isEmpty()) {
+                activeSegment = map(segmentPath(1), segmentSize);
+                position = 0;
+            } else {
+                for (Path segment : segments)
+                    replay(segment, record -> lastSequence = record.getSequence());
+                //resume after the last intact record of the newest segment, a torn tail gets overwritten
+                activeSegment = map(segments.get(segments.size() - 1), segmentSize);
+                position = validLength(activeSegment);
+            }
+        }
+        synchronized (durableLock) {
+            requestedSequence = lastSequence;
+            durableSequence = lastSequence;
+        }
+        running = true;
+        flusher = new Thread(this::flushLoop, "journal-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+        if (compactOnRoll && segments.size() > 2)
+            compactor.execute(this::compactQuietly);
+    }
+
+    public void close() throws InterruptedException {
+        running = false;
+        synchronized (durableLock) {
+            durableLock.notifyAll();
+        }
+        if (flusher != null)
+            flusher.join();
+        compactor.shutdown();
+        compactor.awaitTermination(1, TimeUnit.MINUTES);
+        synchronized (appendLock) {
+            if (activeSegment != null)
+                activeSegment.force();
+        }
+    }
+
+    //Write a record to the page cache and return its sequence, call awaitDurable before acknowledging it
+    public long append(int fromAccount, int toAccount, long amount, long fromBalance, long toBalance) {
+        synchronized (appendLock) {
+            if (position + RECORD_SIZE > segmentSize)
+                roll();
+            long sequence = lastSequence + 1;
+            scratch.clear();
+            scratch.putLong(sequence)
+                    .putLong(System.currentTimeMillis())
+                    .putInt(fromAccount)
+                    .putInt(toAccount)
+                    .putLong(amount)
+                    .putLong(fromBalance)
+                    .putLong(toBalance);
+            crc.reset();
+            crc.update(scratch.array(), 0, CHECKSUMMED_BYTES);
+            activeSegment.position(position);
+            activeSegment.put(scratch.array(), 0, CHECKSUMMED_BYTES).putInt((int) crc.getValue());
+            position += RECORD_SIZE;
+            lastSequence = sequence;
+            return sequence;
+        }
+    }
+
+    //Block until the record is on disk, one fsync covers every record appended while the previous one ran
+    public void awaitDurable(long sequence) {
+        synchronized (durableLock) {
+            if (sequence > requestedSequence) {
+                requestedSequence = sequence;
+                durableLock.notifyAll();
+            }
+            while (durableSequence < sequence) {
+                if (flushFailure != null)
+                    throw flushFailure;
+                if (!running)
+                    throw new IllegalStateException("Journal is closed");
+                try {
+                    durableLock.wait();
+                } catch (InterruptedException exception) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while waiting for the journal", exception);
+                }
+            }
+        }
+    }
+
+    //Read every intact record in sequence order, a running compaction finishes first so no segment vanishes mid-replay
+    public void replay(Consumer<TransferRecord> consumer) throws IOException {
+        synchronized (compactLock) {
+            for (Path segment : segments())
+                replay(segment, consumer);
+        }
+    }
+
+    //Latest balance of every account found in the journal
+    public Map<Integer, Long> rebuildBalances() throws IOException {
+        Map<Integer, Long> balances = new HashMap<>();
+        replay(record -> {
+            balances.put(record.getFromAccount(), record.getFromBalance());
+            balances.put(record.getToAccount(), record.getToBalance());
+        });
+        return balances;
+    }
+
+    //Fold every sealed segment into one that keeps only the latest record of each account
+    public void compact() throws IOException {
+        synchronized (compactLock) {
+            compactSealedSegments();
+        }
+    }
+
+    private void compactSealedSegments() throws IOException {
+        List<Path> sealed;
+        synchronized (appendLock) {
+            List<Path> segments = segments();
+            sealed = segments.subList(0, segments.size() - 1);
+        }
+        if (sealed.size() < 2)
+            return;
+
+        List<TransferRecord> records = new ArrayList<>();
+        Map<Integer, Long> latestSequence = new HashMap<>();
+        for (Path segment : sealed) {
+            replay(segment, record -> {
+                records.add(record);
+                latestSequence.put(record.getFromAccount(), record.getSequence());
+                latestSequence.put(record.getToAccount(), record.getSequence());
+            });
+        }
+        Set<Long> kept = new HashSet<>(latestSequence.values());
+        List<TransferRecord> compacted = records.stream().filter(record -> kept.contains(record.getSequence())).collect(Collectors.toList());
+
+        //write aside and rename over the oldest segment, a crash in between leaves records that replay to the same balances
+        Path target = sealed.get(0);
+        Path temporary = directory.resolve(target.getFileName() + ".compact");
+        Files.deleteIfExists(temporary);
+        MappedByteBuffer buffer = map(temporary, Math.max(compacted.size(), 1) * RECORD_SIZE);
+        int offset = 0;
+        for (TransferRecord record : compacted) {
+            write(buffer, offset, record);
+            offset += RECORD_SIZE;
+        }
+        buffer.force();
+        Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        for (Path segment : sealed.subList(1, sealed.size()))
+            Files.delete(segment);
+    }
+
+    public long getLastSequence() {
+        synchronized (appendLock) {
+            return lastSequence;
+        }
+    }
+
+    List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> {
+                String name = path.getFileName().toString();
+                return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+            }).sorted().collect(Collectors.toList());
+        }
+    }
+
+    private void flushLoop() {
+        while (running) {
+            synchronized (durableLock) {
+                while (running && requestedSequence <= durableSequence) {
+                    try {
+                        durableLock.wait();
+                    } catch (InterruptedException exception) {
+                        return;
+                    }
+                }
+            }
+            long target;
+            MappedByteBuffer segment;
+            synchronized (appendLock) {
+                target = lastSequence;
+                segment = activeSegment;
+            }
+            try {
+                segment.force();
+            } catch (UncheckedIOException exception) {
+                fail(exception);
+                return;
+            }
+            synchronized (durableLock) {
+                durableSequence = Math.max(durableSequence, target);
+                durableLock.notifyAll();
+            }
+        }
+    }
+
+    //waiting appenders give up instead of hanging on a journal that can no longer sync
+    private void fail(UncheckedIOException exception) {
+        synchronized (durableLock) {
+            flushFailure = exception;
+            durableLock.notifyAll();
+        }
+    }
+
+    //caller holds appendLock
+    private void roll() {
+        activeSegment.force();
+        try {
+            activeSegment = map(segmentPath(lastSequence + 1), segmentSize);
+        } catch (IOException exception) {
+            UncheckedIOException failure = new UncheckedIOException(exception);
+            fail(failure);
+            throw failure;
+        }
+        position = 0;
+        if (compactOnRoll)
+            compactor.execute(this::compactQuietly);
+    }
+
+    private void compactQuietly() {
+        try {
+            compact();
+        } catch (IOException exception) {
+            //the sealed segments are left as they were, the next roll tries again
+        }
+    }
+
+    private void replay(Path segment, Consumer<TransferRecord> consumer) throws IOException {
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            int limit = (int) channel.size() - (int) channel.size() % RECORD_SIZE;
+            for (int offset = 0; offset < limit && isIntact(buffer, offset); offset += RECORD_SIZE)
+                consumer.accept(read(buffer, offset));
+        }
+    }
+
+    private int validLength(MappedByteBuffer buffer) {
+        int offset = 0;
+        while (offset + RECORD_SIZE <= segmentSize && isIntact(buffer, offset))
+            offset += RECORD_SIZE;
+        return offset;
+    }
+
+    private boolean isIntact(ByteBuffer buffer, int offset) {
+        if (buffer.getLong(offset) == 0)
+            return false;
+        CRC32 checksum = new CRC32();
+        ByteBuffer record = buffer.duplicate();
+        record.position(offset).limit(offset + CHECKSUMMED_BYTES);
+        checksum.update(record);
+        return (int) checksum.getValue() == buffer.getInt(offset + CHECKSUMMED_BYTES);
+    }
+
+    private TransferRecord read(ByteBuffer buffer, int offset) {
+        return new TransferRecord(buffer.getLong(offset), buffer.getLong(offset + 8), buffer.getInt(offset + 16),
+                buffer.getInt(offset + 20), buffer.getLong(offset + 24), buffer.getLong(offset + 32), buffer.getLong(offset + 40));
+    }
+
+    private void write(ByteBuffer buffer, int offset, TransferRecord record) {
+        buffer.putLong(offset, record.getSequence())
+                .putLong(offset + 8, record.getTimestamp())
+                .putInt(offset + 16, record.getFromAccount())
+                .putInt(offset + 20, record.getToAccount())
+                .putLong(offset + 24, record.getAmount())
+                .putLong(offset + 32, record.getFromBalance())
+                .putLong(offset + 40, record.getToBalance());
+        CRC32 checksum = new CRC32();
+        ByteBuffer view = buffer.duplicate();
+        view.position(offset).limit(offset + CHECKSUMMED_BYTES);
+        checksum.update(view);
+        buffer.putInt(offset + CHECKSUMMED_BYTES, (int) checksum.getValue());
+    }
+
+    private Path segmentPath(long firstSequence) {
+        return directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, firstSequence, SEGMENT_SUFFIX));
+    }
+
+    private static MappedByteBuffer map(Path path, int size) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+    }
+}
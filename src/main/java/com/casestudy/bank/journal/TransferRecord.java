@@ -0,0 +1,30 @@
+package com.casestudy.bank.journal;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+//One journaled transfer, carrying the balances it left behind so replay never needs the database
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class TransferRecord implements Serializable {
+
+    private long sequence;
+
+    private long timestamp;
+
+    private int fromAccount;
+
+    private int toAccount;
+
+    //minor units
+    private long amount;
+
+    private long fromBalance;
+
+    private long toBalance;
+
+}
@@ -0,0 +1,163 @@
+package com.casestudy.bank.ledger;
+
+import com.casestudy.bank.dto.WriteBehindStats;
+import com.casestudy.bank.money.Money;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+//Coalesces balance updates per account and writes them as batched JDBC updates every window-ms or batch-size accounts
+@Component
+public class BalanceWriteBehind {
+
+    private static final String UPDATE_BALANCE = "update account set balance = ?, version = version + 1 where account_id = ?";
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Value("${bank.ledger.write-behind.window-ms:5}")
+    private long windowMs;
+
+    @Value("${bank.ledger.write-behind.batch-size:500}")
+    private int batchSize;
+
+    @Value("${bank.ledger.write-behind.capacity:10000}")
+    private int capacity;
+
+    //latest unwritten balance of each account
+    private final ConcurrentHashMap<Integer, Long> pending = new ConcurrentHashMap<>();
+
+    private final Object signal = new Object();
+
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder rows = new LongAdder();
+
+    private volatile boolean running;
+
+    private Thread flusher;
+
+    public synchronized void start() {
+        if (flusher != null)
+            return;
+        running = true;
+        flusher = new Thread(this::flushLoop, "balance-write-behind");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    //Stop the flusher and write whatever is still pending
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        Thread thread;
+        synchronized (this) {
+            thread = flusher;
+            flusher = null;
+        }
+        running = false;
+        synchronized (signal) {
+            signal.notifyAll();
+        }
+        if (thread != null)
+            thread.join();
+        flush();
+    }
+
+    //Record the latest balance of an account, replacing one not written yet, callers serialize submits per account
+    public void submit(Integer accountId, long balance) {
+        submitted.increment();
+        if (pending.put(accountId, balance) != null)
+            coalesced.increment();
+        else if (pending.size() >= batchSize)
+            wakeFlusher();
+    }
+
+    //Block while more accounts are pending than capacity allows, so writers slow down to the pace of the database
+    public void awaitCapacity() {
+        if (pending.size() < capacity)
+            return;
+        synchronized (signal) {
+            signal.notifyAll();
+            while (running && pending.size() >= capacity) {
+                try {
+                    signal.wait(windowMs);
+                } catch (InterruptedException exception) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    //Write every balance pending at the time of the call, batch-size rows per JDBC batch
+    public synchronized void flush() {
+        List<Object[]> batch = new ArrayList<>(Math.min(batchSize, pending.size()));
+        for (Integer accountId : pending.keySet()) {
+            Long balance = pending.remove(accountId);
+            if (balance == null)
+                continue;
+            batch.add(new Object[]{Money.toDecimal(balance), accountId});
+            if (batch.size() == batchSize) {
+                write(batch);
+                batch = new ArrayList<>(batchSize);
+            }
+        }
+        if (!batch.isEmpty())
+            write(batch);
+    }
+
+    public WriteBehindStats getStats() {
+        return new WriteBehindStats(submitted.sum(), coalesced.sum(), batches.sum(), rows.sum(), pending.size());
+    }
+
+    private void write(List<Object[]> batch) {
+        try {
+            jdbcTemplate.batchUpdate(UPDATE_BALANCE, batch);
+        } catch (DataAccessException exception) {
+            //put the balances back unless a newer one arrived meanwhile, the next round retries them
+            for (Object[] row : batch)
+                pending.putIfAbsent((Integer) row[1], Money.fromDecimal((BigDecimal) row[0]));
+            throw exception;
+        }
+        batches.increment();
+        rows.add(batch.size());
+    }
+
+    private void wakeFlusher() {
+        synchronized (signal) {
+            signal.notifyAll();
+        }
+    }
+
+    private void flushLoop() {
+        while (running) {
+            synchronized (signal) {
+                if (running && pending.size() < batchSize) {
+                    try {
+                        signal.wait(windowMs);
+                    } catch (InterruptedException exception) {
+                        return;
+                    }
+                }
+            }
+            try {
+                flush();
+            } catch (DataAccessException exception) {
+                //retried after the next window
+            }
+            synchronized (signal) {
+                signal.notifyAll();
+            }
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.casestudy.bank.ledger;
+
+//In-memory balance of one account, guarded by its own monitor, or owned by one TransferSequencer writer
+class LedgerAccount {
+
+    //volatile so reads outside the monitor see what a sequencer writer left
+    private volatile long balance;
+
+    LedgerAccount(long balance) {
+        this.balance = balance;
+    }
+
+    long getBalance() {
+        return balance;
+    }
+
+    void setBalance(long balance) {
+        this.balance = balance;
+    }
+}
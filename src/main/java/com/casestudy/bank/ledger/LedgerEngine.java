@@ -0,0 +1,130 @@
+package com.casestudy.bank.ledger;
+
+import com.casestudy.bank.journal.TransferJournal;
+import com.casestudy.bank.model.Account;
+import com.casestudy.bank.repository.AccountRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+@Component
+public class LedgerEngine {
+
+    @Autowired
+    AccountRepository accountRepository;
+
+    //present when bank.journal.enabled, a transfer is then acknowledged once its journal record is durable
+    @Autowired(required = false)
+    TransferJournal transferJournal;
+
+    //present when bank.ledger.sequencer.enabled, transfers are then applied by its single writers instead of under account locks
+    @Autowired(required = false)
+    TransferSequencer transferSequencer;
+
+    @Value("${bank.ledger.enabled:false}")
+    private boolean enabled;
+
+    @Autowired
+    BalanceWriteBehind balanceWriteBehind;
+
+    private final ConcurrentHashMap<Integer, LedgerAccount> accounts = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void start() throws IOException {
+        if (!enabled)
+            return;
+        if (transferJournal != null) {
+            //balances journaled before a restart may not have reached the database yet
+            transferJournal.rebuildBalances().forEach((accountId, balance) -> {
+                accounts.put(accountId, new LedgerAccount(balance));
+                balanceWriteBehind.submit(accountId, balance);
+            });
+        }
+        balanceWriteBehind.start();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public boolean isSequenced() {
+        return transferSequencer != null;
+    }
+
+    //Transfer fund in memory, locking both accounts in ascending id order so opposite transfers cannot deadlock
+    public String transfer(Integer from, Integer to, long amount) {
+        if (transferSequencer != null) {
+            String status = submitTransfer(from, to, amount).join();
+            balanceWriteBehind.awaitCapacity();
+            return status;
+        }
+        LedgerAccount fromAccount = load(from);
+        LedgerAccount toAccount = load(to);
+        if (fromAccount == null || toAccount == null)
+            return "ID MISMATCH";
+
+        LedgerAccount first = from <= to ? fromAccount : toAccount;
+        LedgerAccount second = from <= to ? toAccount : fromAccount;
+        long sequence = 0;
+        synchronized (first) {
+            synchronized (second) {
+                if (amount > fromAccount.getBalance())
+                    return "INSUFFICIENT FUNDS";
+                fromAccount.setBalance(fromAccount.getBalance() - amount);
+                toAccount.setBalance(toAccount.getBalance() + amount);
+                //appended and submitted under the account locks so both see balances in the order they changed
+                if (transferJournal != null)
+                    sequence = transferJournal.append(from, to, amount, fromAccount.getBalance(), toAccount.getBalance());
+                balanceWriteBehind.submit(from, fromAccount.getBalance());
+                balanceWriteBehind.submit(to, toAccount.getBalance());
+            }
+        }
+        if (transferJournal != null)
+            transferJournal.awaitDurable(sequence);
+        balanceWriteBehind.awaitCapacity();
+        return "SUCCESS";
+    }
+
+    //Hand a transfer to the sequencer, the future completes on the writer thread that applied it, callers pace themselves
+    //with awaitCapacity off that thread. Accounts are loaded here so a writer never waits for the database.
+    public CompletableFuture<String> submitTransfer(Integer from, Integer to, long amount) {
+        if (transferSequencer == null)
+            return CompletableFuture.completedFuture(transfer(from, to, amount));
+        LedgerAccount fromAccount = load(from);
+        LedgerAccount toAccount = load(to);
+        if (fromAccount == null || toAccount == null)
+            return CompletableFuture.completedFuture("ID MISMATCH");
+        return transferSequencer.submit(from, fromAccount, to, toAccount, amount);
+    }
+
+    //Block while write-behind is at capacity
+    public void awaitCapacity() {
+        balanceWriteBehind.awaitCapacity();
+    }
+
+    //true once the account was touched by a transfer, from then on the ledger balance is authoritative
+    public boolean contains(Integer accountId) {
+        return accounts.containsKey(accountId);
+    }
+
+    public long getBalance(Integer accountId) {
+        LedgerAccount account = accounts.get(accountId);
+        synchronized (account) {
+            return account.getBalance();
+        }
+    }
+
+    private LedgerAccount load(Integer accountId) {
+        if (accountId == null)
+            return null;
+        return accounts.computeIfAbsent(accountId, id -> {
+            Account account = accountRepository.findByAccountId(id);
+            return account == null ? null : new LedgerAccount(account.getBalance());
+        });
+    }
+}
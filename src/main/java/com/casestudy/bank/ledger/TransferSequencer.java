@@ -0,0 +1,276 @@
+package com.casestudy.bank.ledger;
+
+import com.casestudy.bank.dto.SequencerStats;
+import com.casestudy.bank.journal.TransferJournal;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+//Single-writer execution of ledger transfers. Accounts are spread over partitions by id and each partition applies the
+//transfers of its accounts one at a time on its own thread, so balances change without locks. Producers claim a slot of the
+//partition's pre-allocated ring, fill it in place and publish it, a full ring makes them wait for the writer.
+//A transfer between two partitions is debited by the writer of the source account, which hands the credit to the writer of
+//the target account through a queue drained ahead of its ring, so credits from one partition land in the order they were debited.
+@Component
+@ConditionalOnProperty(name = "bank.ledger.sequencer.enabled", havingValue = "true")
+public class TransferSequencer {
+
+    //an idle writer spins this often before it parks
+    private static final int IDLE_SPINS = 100;
+
+    //upper bound of a park, a wake-up lost to a race costs at most this
+    private static final long PARK_NANOS = 1_000_000L;
+
+    @Autowired
+    BalanceWriteBehind balanceWriteBehind;
+
+    //present when bank.journal.enabled
+    @Autowired(required = false)
+    TransferJournal transferJournal;
+
+    @Value("${bank.ledger.enabled:false}")
+    private boolean ledgerEnabled;
+
+    @Value("${bank.ledger.sequencer.partitions:4}")
+    private int partitionCount;
+
+    @Value("${bank.ledger.sequencer.ring-size:1024}")
+    private int ringSize;
+
+    private Partition[] partitions;
+
+    private volatile boolean running;
+
+    @PostConstruct
+    public void start() {
+        if (!ledgerEnabled)
+            throw new IllegalStateException("bank.ledger.sequencer.enabled needs bank.ledger.enabled");
+        //a transfer between partitions changes its two balances at different times, so no single journal record holds both
+        if (transferJournal != null)
+            throw new IllegalStateException("bank.ledger.sequencer.enabled cannot be combined with bank.journal.enabled");
+        if (partitionCount < 1 || ringSize < 1 || Integer.bitCount(ringSize) != 1)
+            throw new IllegalStateException("bank.ledger.sequencer needs at least one partition and a power of two ring-size");
+        running = true;
+        partitions = new Partition[partitionCount];
+        for (int i = 0; i < partitionCount; i++)
+            partitions[i] = new Partition(i, ringSize);
+        for (Partition partition : partitions)
+            partition.thread.start();
+    }
+
+    //Apply what was published, then stop the writers
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        for (Partition partition : partitions)
+            LockSupport.unpark(partition.thread);
+        for (Partition partition : partitions)
+            partition.thread.join();
+    }
+
+    //Publish a transfer to the writer of the debited account, the future completes on the writer that applies the credit.
+    //Callers stop submitting before the sequencer stops, a transfer claimed after the writers drained would never complete.
+    public CompletableFuture<String> submit(Integer from, LedgerAccount fromAccount, Integer to, LedgerAccount toAccount, long amount) {
+        if (!running)
+            throw new IllegalStateException("Transfer sequencer is stopped");
+        CompletableFuture<String> result = new CompletableFuture<>();
+        partitionOf(from).publish(from, fromAccount, to, toAccount, amount, result);
+        return result;
+    }
+
+    public List<SequencerStats> getStats() {
+        List<SequencerStats> stats = new ArrayList<>(partitions.length);
+        for (Partition partition : partitions) {
+            stats.add(new SequencerStats(partition.index, partition.transfers.sum(), partition.handOffs.sum(),
+                    Math.max(partition.claimed.get() - partition.consumed, 0), partition.fullRingWaits.sum()));
+        }
+        return stats;
+    }
+
+    //every claimed slot applied and every credit taken, the hand-offs happen while a slot is applied
+    private boolean drained() {
+        for (Partition partition : partitions) {
+            if (partition.claimed.get() > partition.consumed || !partition.credits.isEmpty())
+                return false;
+        }
+        return true;
+    }
+
+    private Partition partitionOf(Integer accountId) {
+        return partitions[Math.floorMod(accountId, partitions.length)];
+    }
+
+    private class Partition {
+
+        private final int index;
+
+        private final Slot[] slots;
+
+        private final int mask;
+
+        //last sequence handed to a producer
+        private final AtomicLong claimed = new AtomicLong(-1);
+
+        //last sequence applied, written by the writer only
+        private volatile long consumed = -1;
+
+        //credits handed over by the writers of other partitions
+        private final Queue<Credit> credits = new ConcurrentLinkedQueue<>();
+
+        private volatile boolean sleeping;
+
+        private final Thread thread;
+
+        private final LongAdder transfers = new LongAdder();
+        private final LongAdder handOffs = new LongAdder();
+        private final LongAdder fullRingWaits = new LongAdder();
+
+        private Partition(int index, int size) {
+            this.index = index;
+            this.slots = new Slot[size];
+            for (int i = 0; i < size; i++)
+                slots[i] = new Slot();
+            this.mask = size - 1;
+            this.thread = new Thread(this::writeLoop, "transfer-sequencer-" + index);
+            this.thread.setDaemon(true);
+        }
+
+        private void publish(Integer from, LedgerAccount fromAccount, Integer to, LedgerAccount toAccount, long amount,
+                             CompletableFuture<String> result) {
+            long sequence = claimed.incrementAndGet();
+            //the slot is free once the writer applied the transfer a full ring earlier
+            if (sequence - slots.length > consumed) {
+                fullRingWaits.increment();
+                while (sequence - slots.length > consumed) {
+                    wake();
+                    LockSupport.parkNanos(this, PARK_NANOS);
+                }
+            }
+            Slot slot = slots[(int) sequence & mask];
+            slot.from = from;
+            slot.fromAccount = fromAccount;
+            slot.to = to;
+            slot.toAccount = toAccount;
+            slot.amount = amount;
+            slot.result = result;
+            slot.sequence = sequence;
+            wake();
+        }
+
+        private void handOff(Credit credit) {
+            handOffs.increment();
+            credits.offer(credit);
+            wake();
+        }
+
+        //the writer flags itself before its last look for work, so a producer either sees the flag or the writer sees the work
+        private void wake() {
+            if (sleeping)
+                LockSupport.unpark(thread);
+        }
+
+        private void writeLoop() {
+            long next = 0;
+            int idle = 0;
+            while (true) {
+                Credit credit;
+                while ((credit = credits.poll()) != null)
+                    credit(credit);
+                Slot slot = slots[(int) next & mask];
+                if (slot.sequence == next) {
+                    apply(slot);
+                    slot.clear();
+                    consumed = next++;
+                    idle = 0;
+                    continue;
+                }
+                //a stopped writer keeps taking credits until no partition can hand over another one
+                if (!running && drained())
+                    return;
+                if (++idle < IDLE_SPINS) {
+                    Thread.onSpinWait();
+                    continue;
+                }
+                sleeping = true;
+                if (slot.sequence != next && credits.isEmpty() && running)
+                    LockSupport.parkNanos(this, PARK_NANOS);
+                sleeping = false;
+            }
+        }
+
+        private void apply(Slot slot) {
+            transfers.increment();
+            try {
+                LedgerAccount fromAccount = slot.fromAccount;
+                if (slot.amount > fromAccount.getBalance()) {
+                    slot.result.complete("INSUFFICIENT FUNDS");
+                    return;
+                }
+                fromAccount.setBalance(fromAccount.getBalance() - slot.amount);
+                balanceWriteBehind.submit(slot.from, fromAccount.getBalance());
+                Partition target = partitionOf(slot.to);
+                Credit credit = new Credit(slot.to, slot.toAccount, slot.amount, slot.result);
+                if (target == this)
+                    credit(credit);
+                else
+                    target.handOff(credit);
+            } catch (RuntimeException exception) {
+                slot.result.completeExceptionally(exception);
+            }
+        }
+
+        private void credit(Credit credit) {
+            try {
+                credit.toAccount.setBalance(credit.toAccount.getBalance() + credit.amount);
+                balanceWriteBehind.submit(credit.to, credit.toAccount.getBalance());
+                credit.result.complete("SUCCESS");
+            } catch (RuntimeException exception) {
+                credit.result.completeExceptionally(exception);
+            }
+        }
+    }
+
+    //filled in place by a producer, published by the volatile write of its sequence
+    private static class Slot {
+        private volatile long sequence = -1;
+        private Integer from;
+        private LedgerAccount fromAccount;
+        private Integer to;
+        private LedgerAccount toAccount;
+        private long amount;
+        private CompletableFuture<String> result;
+
+        //drop the references so a slot does not keep a completed transfer alive for a whole ring
+        private void clear() {
+            fromAccount = null;
+            toAccount = null;
+            result = null;
+        }
+    }
+
+    private static class Credit {
+        private final Integer to;
+        private final LedgerAccount toAccount;
+        private final long amount;
+        private final CompletableFuture<String> result;
+
+        private Credit(Integer to, LedgerAccount toAccount, long amount, CompletableFuture<String> result) {
+            this.to = to;
+            this.toAccount = toAccount;
+            this.amount = amount;
+            this.result = result;
+        }
+    }
+}
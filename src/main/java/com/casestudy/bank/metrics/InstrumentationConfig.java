@@ -0,0 +1,74 @@
+package com.casestudy.bank.metrics;
+
+import org.springframework.aop.Advisor;
+import org.springframework.aop.framework.Advised;
+import org.springframework.aop.support.DefaultPointcutAdvisor;
+import org.springframework.aop.support.StaticMethodMatcherPointcut;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Role;
+import org.springframework.core.Ordered;
+import org.springframework.data.repository.Repository;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.lang.reflect.Method;
+
+//Times every bank endpoint, service method and repository call, see TimingInterceptor
+@Configuration
+@ConditionalOnProperty(name = "bank.metrics.enabled", havingValue = "true")
+public class InstrumentationConfig {
+
+    private static final String CONTROLLER_PACKAGE = "com.casestudy.bank.controller";
+    private static final String SERVICE_PACKAGE = "com.casestudy.bank.service";
+    private static final String REPOSITORY_PACKAGE = "com.casestudy.bank.repository";
+
+    //joins the proxy chain the transaction advice already builds, so services do not get a second proxy
+    @Bean
+    @Role(BeanDefinition.ROLE_INFRASTRUCTURE)
+    public static Advisor bankTimingAdvisor(ObjectProvider<LatencyRecorder> latencyRecorder) {
+        StaticMethodMatcherPointcut pointcut = new StaticMethodMatcherPointcut() {
+            @Override
+            public boolean matches(Method method, Class<?> targetClass) {
+                String packageName = targetClass.getPackageName();
+                if (packageName.equals(SERVICE_PACKAGE))
+                    return true;
+                return packageName.equals(CONTROLLER_PACKAGE) && targetClass.isAnnotationPresent(RestController.class)
+                        && !targetClass.getSimpleName().equals("MetricsController");
+            }
+        };
+        DefaultPointcutAdvisor advisor = new DefaultPointcutAdvisor(pointcut, new TimingInterceptor(latencyRecorder::getObject,
+                method -> method.getDeclaringClass().getPackageName().substring("com.casestudy.bank.".length())
+                        + "." + method.getDeclaringClass().getSimpleName() + "." + method.getName()));
+        advisor.setOrder(Ordered.HIGHEST_PRECEDENCE);
+        return advisor;
+    }
+
+    //adds the timing advice to the proxy Spring Data already built instead of wrapping it in another one
+    @Bean
+    public static BeanPostProcessor repositoryTimingPostProcessor(ObjectProvider<LatencyRecorder> latencyRecorder) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (!(bean instanceof Repository) || !(bean instanceof Advised) || ((Advised) bean).isFrozen())
+                    return bean;
+                String repositoryName = repositoryName((Advised) bean);
+                if (repositoryName != null)
+                    ((Advised) bean).addAdvice(0, new TimingInterceptor(latencyRecorder::getObject,
+                            method -> "repository." + repositoryName + "." + method.getName()));
+                return bean;
+            }
+        };
+    }
+
+    private static String repositoryName(Advised repository) {
+        for (Class<?> type : repository.getProxiedInterfaces()) {
+            if (type.getName().startsWith(REPOSITORY_PACKAGE))
+                return type.getSimpleName();
+        }
+        return null;
+    }
+}
@@ -0,0 +1,63 @@
+package com.casestudy.bank.metrics;
+
+import com.casestudy.bank.dto.LatencyStats;
+import org.HdrHistogram.Histogram;
+import org.springframework.stereotype.Component;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+//Named latency timers, fed by TimingInterceptor or directly by callers that want to time their own code
+@Component
+public class LatencyRecorder {
+
+    private final ConcurrentHashMap<String, LatencyTimer> timers = new ConcurrentHashMap<>();
+
+    private volatile long startedAt = System.nanoTime();
+
+    //look the timer up once and keep it, recording through it skips the map
+    public LatencyTimer timer(String name) {
+        return timers.computeIfAbsent(name, key -> new LatencyTimer());
+    }
+
+    public void record(String name, long nanos) {
+        timer(name).record(nanos, 0);
+    }
+
+    public Optional<LatencyStats> getStats(String name) {
+        LatencyTimer timer = timers.get(name);
+        return timer == null ? Optional.empty() : Optional.of(snapshot(name, timer));
+    }
+
+    //Every timer, slowest p99 first
+    public List<LatencyStats> getStats() {
+        return timers.entrySet().stream()
+                .map(entry -> snapshot(entry.getKey(), entry.getValue()))
+                .sorted(Comparator.comparingDouble(LatencyStats::getP99).reversed())
+                .collect(Collectors.toList());
+    }
+
+    public void reset() {
+        timers.values().forEach(LatencyTimer::reset);
+        startedAt = System.nanoTime();
+    }
+
+    private LatencyStats snapshot(String name, LatencyTimer timer) {
+        Histogram histogram = timer.getHistogram().copy();
+        long count = histogram.getTotalCount();
+        double seconds = Math.max(System.nanoTime() - startedAt, 1) / 1e9;
+        return new LatencyStats(name, count, count / seconds,
+                micros(histogram.getValueAtPercentile(50)),
+                micros(histogram.getValueAtPercentile(99)),
+                micros(histogram.getValueAtPercentile(99.9)),
+                micros(histogram.getMaxValue()),
+                count == 0 ? 0 : (double) timer.getStatements() / count);
+    }
+
+    private static double micros(long nanos) {
+        return nanos / 1000.0;
+    }
+}
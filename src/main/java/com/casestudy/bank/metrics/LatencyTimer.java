@@ -0,0 +1,33 @@
+package com.casestudy.bank.metrics;
+
+import org.HdrHistogram.ConcurrentHistogram;
+
+import java.util.concurrent.atomic.LongAdder;
+
+//Latency histogram of one instrumented method, recording is wait-free so callers never queue behind each other
+public class LatencyTimer {
+
+    //two significant digits keep a timer at a few kilobytes with 1% value precision
+    private final ConcurrentHistogram histogram = new ConcurrentHistogram(2);
+
+    private final LongAdder statements = new LongAdder();
+
+    public void record(long nanos, long statementCount) {
+        histogram.recordValue(nanos);
+        if (statementCount > 0)
+            statements.add(statementCount);
+    }
+
+    ConcurrentHistogram getHistogram() {
+        return histogram;
+    }
+
+    long getStatements() {
+        return statements.sum();
+    }
+
+    void reset() {
+        histogram.reset();
+        statements.reset();
+    }
+}
@@ -0,0 +1,20 @@
+package com.casestudy.bank.metrics;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+//Counts the SQL statements Hibernate prepares on each thread, registered through hibernate.session_factory.statement_inspector
+public class StatementCounter implements StatementInspector {
+
+    private static final ThreadLocal<long[]> STATEMENTS = ThreadLocal.withInitial(() -> new long[1]);
+
+    @Override
+    public String inspect(String sql) {
+        STATEMENTS.get()[0]++;
+        return sql;
+    }
+
+    //running count of the calling thread, callers take the difference around the code they measure
+    public static long current() {
+        return STATEMENTS.get()[0];
+    }
+}
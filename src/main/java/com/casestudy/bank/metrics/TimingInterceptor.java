@@ -0,0 +1,44 @@
+package com.casestudy.bank.metrics;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+//Records the latency and SQL statement count of each intercepted call, timers are resolved once per method
+public class TimingInterceptor implements MethodInterceptor {
+
+    //resolved when the first timer is created, interceptors are built before ordinary beans exist
+    private final Supplier<LatencyRecorder> latencyRecorder;
+
+    private final Function<Method, String> naming;
+
+    private final ConcurrentHashMap<Method, LatencyTimer> timers = new ConcurrentHashMap<>();
+
+    public TimingInterceptor(Supplier<LatencyRecorder> latencyRecorder, Function<Method, String> naming) {
+        this.latencyRecorder = latencyRecorder;
+        this.naming = naming;
+    }
+
+    @Override
+    public Object invoke(MethodInvocation invocation) throws Throwable {
+        LatencyTimer timer = timer(invocation.getMethod());
+        long statements = StatementCounter.current();
+        long start = System.nanoTime();
+        try {
+            return invocation.proceed();
+        } finally {
+            timer.record(System.nanoTime() - start, StatementCounter.current() - statements);
+        }
+    }
+
+    private LatencyTimer timer(Method method) {
+        LatencyTimer timer = timers.get(method);
+        if (timer == null)
+            timer = timers.computeIfAbsent(method, key -> latencyRecorder.get().timer(naming.apply(key)));
+        return timer;
+    }
+}
@@ -1,7 +1,13 @@
 package com.casestudy.bank.model;
 
+import com.casestudy.bank.id.IdSequences;
+import com.casestudy.bank.money.MoneyConverter;
+import com.casestudy.bank.money.MoneyDeserializer;
+import com.casestudy.bank.money.MoneySerializer;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
-import lombok.AllArgsConstructor;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
@@ -11,28 +17,47 @@ import java.io.Serializable;
 import java.util.List;
 
 @Data
-@AllArgsConstructor
 @NoArgsConstructor
 @Entity
 public class Account implements Serializable {
 
+    //pooled sequence, ids come from memory in blocks so inserts can be batched, see IdSequences
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "account_seq")
+    @SequenceGenerator(name = "account_seq", allocationSize = IdSequences.BLOCK_SIZE)
     private Integer accountId;
 
     @NotNull(message = "AccountType cannot be null")
     @Enumerated(EnumType.STRING)
     private AccountType accountType;
 
-    @NotNull(message = "Account Balance cannot be null")
-    private Double balance;
+    //minor units, stored as DECIMAL(19,2) in major units
+    @Convert(converter = MoneyConverter.class)
+    @Column(precision = 19, scale = 2)
+    @JsonSerialize(using = MoneySerializer.class)
+    @JsonDeserialize(using = MoneyDeserializer.class)
+    private long balance;
 
-    @OneToMany(mappedBy = "account", cascade = CascadeType.ALL, fetch = FetchType.EAGER, orphanRemoval = true)
+    //bumped on every update, a transfer that read a stale version fails on commit instead of losing an update
+    @Version
+    @Column(nullable = false)
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private Long version;
+
+    //loaded on demand, read paths that need customers ask for them explicitly
+    @OneToMany(mappedBy = "account", cascade = CascadeType.ALL, fetch = FetchType.LAZY, orphanRemoval = true)
     @JsonIgnoreProperties("account")
     @NotNull(message = "Customer cannot be null")
     private List<Customer> customers;
 
-    public Account(AccountType accountType, double balance, List<Customer> customers) {
+    public Account(Integer accountId, AccountType accountType, long balance, List<Customer> customers) {
+        this.accountId = accountId;
+        this.accountType = accountType;
+        this.balance = balance;
+        this.customers = customers;
+    }
+
+    public Account(AccountType accountType, long balance, List<Customer> customers) {
         this.accountType = accountType;
         this.balance = balance;
         this.customers = customers;
@@ -0,0 +1,37 @@
+package com.casestudy.bank.model;
+
+import com.casestudy.bank.id.IdSequences;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+import java.io.Serializable;
+
+//One sub-balance of a hot account, the account balance is its own row plus all of its slots
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Entity
+@Table(uniqueConstraints = @UniqueConstraint(columnNames = {"accountId", "slot"}))
+public class AccountSlot implements Serializable {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "account_slot_seq")
+    @SequenceGenerator(name = "account_slot_seq", allocationSize = IdSequences.BLOCK_SIZE)
+    private Integer slotId;
+
+    @Column(nullable = false)
+    private Integer accountId;
+
+    private int slot;
+
+    //minor units, never exposed so kept as a plain BIGINT that bulk updates can add to
+    private long balance;
+
+    public AccountSlot(Integer accountId, int slot, long balance) {
+        this.accountId = accountId;
+        this.slot = slot;
+        this.balance = balance;
+    }
+}
@@ -0,0 +1,47 @@
+package com.casestudy.bank.model;
+
+import com.casestudy.bank.id.IdSequences;
+import com.casestudy.bank.money.MoneyDeserializer;
+import com.casestudy.bank.money.MoneySerializer;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+import java.io.Serializable;
+
+//One side of a transfer in the history of an account, inserted in the same transaction as the transfer.
+//The index matches the statement order, so the newest page of any account is a short index range scan.
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Entity
+@Table(indexes = @Index(columnList = "accountId, createdAt desc, transactionId desc"))
+public class AccountTransaction implements Serializable {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "account_transaction_seq")
+    @SequenceGenerator(name = "account_transaction_seq", allocationSize = IdSequences.BLOCK_SIZE)
+    private Long transactionId;
+
+    private int accountId;
+
+    private int counterpartyAccountId;
+
+    //minor units, negative for a debit
+    @JsonSerialize(using = MoneySerializer.class)
+    @JsonDeserialize(using = MoneyDeserializer.class)
+    private long amount;
+
+    //epoch millis
+    private long createdAt;
+
+    public AccountTransaction(int accountId, int counterpartyAccountId, long amount, long createdAt) {
+        this.accountId = accountId;
+        this.counterpartyAccountId = counterpartyAccountId;
+        this.amount = amount;
+        this.createdAt = createdAt;
+    }
+}
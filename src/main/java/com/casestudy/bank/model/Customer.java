@@ -1,5 +1,6 @@
 package com.casestudy.bank.model;
 
+import com.casestudy.bank.id.IdSequences;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import lombok.AllArgsConstructor;
 import lombok.Data;
@@ -18,8 +19,10 @@ import java.io.Serializable;
 @Entity
 public class Customer implements Serializable {
 
+    //pooled sequence like Account, so an account and its customers go out in the same insert batches
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "customer_seq")
+    @SequenceGenerator(name = "customer_seq", allocationSize = IdSequences.BLOCK_SIZE)
     private Integer customerId;
 
     @NotNull(message = "First Name cannot be null")
@@ -36,7 +39,8 @@ public class Customer implements Serializable {
     @Column(unique = true)
     private String email;
 
-    @ManyToOne(fetch = FetchType.EAGER, cascade = CascadeType.ALL, optional = false)
+    //no cascade: saving a customer must never write back a stale account balance
+    @ManyToOne(fetch = FetchType.EAGER, optional = false)
     @JoinColumn(name = "account_id", referencedColumnName = "accountId")
     @JsonIgnoreProperties("customers")
     private Account account;
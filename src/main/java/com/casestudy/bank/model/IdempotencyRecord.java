@@ -0,0 +1,42 @@
+package com.casestudy.bank.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.domain.Persistable;
+
+import javax.persistence.*;
+import java.io.Serializable;
+
+//Status of a transfer sent with an idempotency key, inserted in the same transaction as the transfer
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Entity
+@Table(indexes = @Index(columnList = "createdAt"))
+public class IdempotencyRecord implements Persistable<String>, Serializable {
+
+    @Id
+    @Column(length = 64)
+    private String idempotencyKey;
+
+    //from, to and amount hashed, the same key sent with another transfer is refused
+    private int requestHash;
+
+    @Column(nullable = false, length = 20)
+    private String status;
+
+    //epoch millis
+    private long createdAt;
+
+    @Override
+    public String getId() {
+        return idempotencyKey;
+    }
+
+    //always inserted, so save() persists without a merge select and a duplicate key fails the transaction
+    @Override
+    public boolean isNew() {
+        return true;
+    }
+}
@@ -0,0 +1,40 @@
+package com.casestudy.bank.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.domain.Persistable;
+
+import javax.persistence.*;
+import java.io.Serializable;
+
+//A cross-shard transfer credited on the target shard, inserted with the credit so a second attempt fails on the key
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Entity
+public class TransferCredit implements Persistable<String>, Serializable {
+
+    @Id
+    @Column(length = 36)
+    private String transferId;
+
+    private int toAccount;
+
+    //minor units
+    private long amount;
+
+    //epoch millis
+    private long createdAt;
+
+    @Override
+    public String getId() {
+        return transferId;
+    }
+
+    //always inserted, so save() persists without a merge select and a duplicate key fails the transaction
+    @Override
+    public boolean isNew() {
+        return true;
+    }
+}
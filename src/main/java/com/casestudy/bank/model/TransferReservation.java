@@ -0,0 +1,44 @@
+package com.casestudy.bank.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.domain.Persistable;
+
+import javax.persistence.*;
+import java.io.Serializable;
+
+//Amount of a cross-shard transfer debited on the source shard and not yet known to be credited on the target shard,
+//inserted with the debit and deleted once the credit committed
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Entity
+@Table(indexes = @Index(columnList = "createdAt"))
+public class TransferReservation implements Persistable<String>, Serializable {
+
+    @Id
+    @Column(length = 36)
+    private String transferId;
+
+    private int fromAccount;
+
+    private int toAccount;
+
+    //minor units
+    private long amount;
+
+    //epoch millis
+    private long createdAt;
+
+    @Override
+    public String getId() {
+        return transferId;
+    }
+
+    //always inserted, so save() persists without a merge select
+    @Override
+    public boolean isNew() {
+        return true;
+    }
+}
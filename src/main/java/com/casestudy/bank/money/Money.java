@@ -0,0 +1,29 @@
+package com.casestudy.bank.money;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+//Amounts are carried as a primitive long of minor units (cents) so transfers never box or round
+public final class Money {
+
+    public static final int SCALE = 2;
+
+    private static final long MINOR_UNITS = 100L;
+
+    private Money() {
+    }
+
+    //amount in minor units for a whole number of major units
+    public static long of(long majorUnits) {
+        return Math.multiplyExact(majorUnits, MINOR_UNITS);
+    }
+
+    //amount in minor units, rejecting values finer than the currency scale
+    public static long fromDecimal(BigDecimal value) {
+        return value.setScale(SCALE, RoundingMode.UNNECESSARY).unscaledValue().longValueExact();
+    }
+
+    public static BigDecimal toDecimal(long minorUnits) {
+        return BigDecimal.valueOf(minorUnits, SCALE);
+    }
+}
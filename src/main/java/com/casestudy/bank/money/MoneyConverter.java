@@ -0,0 +1,20 @@
+package com.casestudy.bank.money;
+
+import javax.persistence.AttributeConverter;
+import javax.persistence.Converter;
+import java.math.BigDecimal;
+
+//Stores minor units as a DECIMAL column in major units so existing data stays readable
+@Converter
+public class MoneyConverter implements AttributeConverter<Long, BigDecimal> {
+
+    @Override
+    public BigDecimal convertToDatabaseColumn(Long attribute) {
+        return attribute == null ? null : Money.toDecimal(attribute);
+    }
+
+    @Override
+    public Long convertToEntityAttribute(BigDecimal dbData) {
+        return dbData == null ? null : Money.fromDecimal(dbData);
+    }
+}
@@ -0,0 +1,13 @@
+package com.casestudy.bank.replica;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+//Reads of the annotated method may be served by a read replica when bank.datasource.replicas.enabled, see ReplicaRoutingDataSource.
+//Only for methods that read, a read-write transaction they join still goes to the primary.
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface ReadFromReplica {
+}
@@ -0,0 +1,27 @@
+package com.casestudy.bank.replica;
+
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+//Tells ReplicaRoutingDataSource who is asking, so reads after a client's own write stay on the primary.
+//Clients name themselves with X-Client-Id, anyone else is told apart by address.
+public class ReplicaClientFilter extends OncePerRequestFilter {
+
+    public static final String CLIENT_ID_HEADER = "X-Client-Id";
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain) throws ServletException, IOException {
+        String client = request.getHeader(CLIENT_ID_HEADER);
+        ReplicaRoutingDataSource.setClient(client != null ? client : request.getRemoteAddr());
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            ReplicaRoutingDataSource.setClient(null);
+        }
+    }
+}
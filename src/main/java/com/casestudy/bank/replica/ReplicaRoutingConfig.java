@@ -0,0 +1,74 @@
+package com.casestudy.bank.replica;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.springframework.aop.Advisor;
+import org.springframework.aop.support.DefaultPointcutAdvisor;
+import org.springframework.aop.support.annotation.AnnotationMatchingPointcut;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Role;
+import org.springframework.core.env.Environment;
+
+import javax.sql.DataSource;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+//Replaces the single spring.datasource pool with the primary plus the read replicas listed in bank.datasource.replicas.urls
+@Configuration
+@ConditionalOnProperty(name = "bank.datasource.replicas.enabled", havingValue = "true")
+public class ReplicaRoutingConfig {
+
+    @Bean(initMethod = "start", destroyMethod = "close")
+    public ReplicaRoutingDataSource replicaRoutingDataSource(DataSourceProperties properties, Environment environment,
+                                                             @Value("${bank.datasource.replicas.urls:}") List<String> urls,
+                                                             @Value("${bank.datasource.replicas.username:${spring.datasource.username:}}") String username,
+                                                             @Value("${bank.datasource.replicas.password:${spring.datasource.password:}}") String password,
+                                                             @Value("${bank.datasource.replicas.max-lag-ms:1000}") long maxLagMs,
+                                                             @Value("${bank.datasource.replicas.sticky-ms:5000}") long stickyMs,
+                                                             @Value("${bank.datasource.replicas.check-interval-ms:250}") long checkIntervalMs) {
+        //an entity manager held for the whole request would keep the replica connection of its first read for later writes
+        if (environment.getProperty("spring.jpa.open-in-view", Boolean.class, true))
+            throw new IllegalStateException("bank.datasource.replicas.enabled needs spring.jpa.open-in-view=false");
+
+        HikariDataSource primary = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        primary.setPoolName("primary");
+        Map<String, DataSource> replicas = new LinkedHashMap<>();
+        for (String url : urls) {
+            if (url.isBlank())
+                continue;
+            HikariDataSource replica = DataSourceBuilder.create().type(HikariDataSource.class).driverClassName(properties.getDriverClassName())
+                    .url(url.trim()).username(username).password(password).build();
+            replica.setPoolName("replica-" + (replicas.size() + 1));
+            replica.setReadOnly(true);
+            replicas.put(url.trim(), replica);
+        }
+        return new ReplicaRoutingDataSource(primary, replicas, maxLagMs, stickyMs, checkIntervalMs);
+    }
+
+    @Bean
+    public ReplicaClientFilter replicaClientFilter() {
+        return new ReplicaClientFilter();
+    }
+
+    //joins the proxy chain the transaction advice already builds, like the timing advice of InstrumentationConfig
+    @Bean
+    @Role(BeanDefinition.ROLE_INFRASTRUCTURE)
+    public static Advisor replicaReadAdvisor() {
+        MethodInterceptor interceptor = invocation -> {
+            Boolean previous = ReplicaRoutingDataSource.enterReplicaReads();
+            try {
+                return invocation.proceed();
+            } finally {
+                ReplicaRoutingDataSource.restoreReplicaReads(previous);
+            }
+        };
+        return new DefaultPointcutAdvisor(AnnotationMatchingPointcut.forMethodAnnotation(ReadFromReplica.class), interceptor);
+    }
+}
@@ -0,0 +1,233 @@
+package com.casestudy.bank.replica;
+
+import com.casestudy.bank.dto.ReplicaStats;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+//Hands out primary connections, except to reads of a @ReadFromReplica method, which go round robin to the healthy replicas.
+//A client whose write committed less than sticky-ms ago reads from the primary, so it always sees its own writes.
+//Lag is measured with a heartbeat row the primary rewrites every check-interval-ms: a replica whose copy of it is more than
+//max-lag-ms behind the primary's previous one, or cannot be read, serves no reads until a later check finds it caught up.
+//Connections are lazy: JPA takes one when a transaction begins, before its read-only flag is visible, so the choice of database
+//waits for the first statement.
+public class ReplicaRoutingDataSource extends LazyConnectionDataSourceProxy {
+
+    private static final ThreadLocal<Boolean> READ_FROM_REPLICA = new ThreadLocal<>();
+
+    //set for the duration of a request by ReplicaClientFilter
+    private static final ThreadLocal<String> CLIENT = new ThreadLocal<>();
+
+    private final DataSource primary;
+
+    private final JdbcTemplate primaryJdbcTemplate;
+
+    private final List<Replica> replicas;
+
+    private final long maxLagMs;
+
+    private final long stickyMs;
+
+    private final long checkIntervalMs;
+
+    //client to the time its last write committed
+    private final Map<String, Long> lastWrites = new ConcurrentHashMap<>();
+
+    private final AtomicInteger nextReplica = new AtomicInteger();
+
+    //the heartbeat written by the previous check, what an up to date replica holds
+    private volatile long lastHeartbeat;
+
+    private final ScheduledExecutorService checker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "replica-check");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public ReplicaRoutingDataSource(DataSource primary, Map<String, DataSource> replicas, long maxLagMs, long stickyMs, long checkIntervalMs) {
+        this.primary = primary;
+        this.primaryJdbcTemplate = new JdbcTemplate(primary);
+        this.replicas = replicas.entrySet().stream().map(replica -> new Replica(replica.getKey(), replica.getValue())).collect(Collectors.toList());
+        this.maxLagMs = maxLagMs;
+        this.stickyMs = stickyMs;
+        this.checkIntervalMs = checkIntervalMs;
+        setTargetDataSource(new Router());
+    }
+
+    //Replicas start out unhealthy, the first check decides which ones take reads
+    public void start() {
+        primaryJdbcTemplate.execute("create table if not exists replica_heartbeat(heartbeat_id int primary key, written_at bigint not null)");
+        writeHeartbeat();
+        checker.scheduleWithFixedDelay(this::checkReplicas, checkIntervalMs, checkIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    public void close() throws Exception {
+        checker.shutdownNow();
+        checker.awaitTermination(1, TimeUnit.MINUTES);
+        for (Replica replica : replicas)
+            closePool(replica.dataSource);
+        closePool(primary);
+    }
+
+    //Mark the current thread as running a @ReadFromReplica method, returns the previous mark for restoreReplicaReads
+    public static Boolean enterReplicaReads() {
+        Boolean previous = READ_FROM_REPLICA.get();
+        READ_FROM_REPLICA.set(Boolean.TRUE);
+        return previous;
+    }
+
+    public static void restoreReplicaReads(Boolean previous) {
+        if (previous == null)
+            READ_FROM_REPLICA.remove();
+        else
+            READ_FROM_REPLICA.set(previous);
+    }
+
+    public static void setClient(String client) {
+        if (client == null)
+            CLIENT.remove();
+        else
+            CLIENT.set(client);
+    }
+
+    //Whether the reads of the current thread go to a replica, when one is healthy
+    public boolean readsFromReplica() {
+        return isReplicaRead() && !wroteRecently();
+    }
+
+    //Measure every replica against the previous heartbeat, then write the next one
+    public void checkReplicas() {
+        long expected = lastHeartbeat;
+        for (Replica replica : replicas) {
+            //nothing to measure against until the primary took a heartbeat
+            if (expected == 0)
+                break;
+            try {
+                Long writtenAt = replica.jdbcTemplate.queryForObject("select written_at from replica_heartbeat where heartbeat_id = 1", Long.class);
+                replica.lagMs = writtenAt == null ? -1 : Math.max(expected - writtenAt, 0);
+            } catch (DataAccessException exception) {
+                replica.lagMs = -1;
+            }
+            replica.healthy = replica.lagMs >= 0 && replica.lagMs <= maxLagMs;
+        }
+        writeHeartbeat();
+        long now = System.currentTimeMillis();
+        lastWrites.values().removeIf(committedAt -> now - committedAt > stickyMs);
+    }
+
+    public List<ReplicaStats> getStats() {
+        List<ReplicaStats> stats = new ArrayList<>(replicas.size());
+        for (Replica replica : replicas)
+            stats.add(new ReplicaStats(replica.url, replica.healthy, replica.lagMs, replica.reads.sum()));
+        return stats;
+    }
+
+    private void writeHeartbeat() {
+        long now = System.currentTimeMillis();
+        try {
+            primaryJdbcTemplate.update("merge into replica_heartbeat(heartbeat_id, written_at) key(heartbeat_id) values(1, ?)", now);
+            lastHeartbeat = now;
+        } catch (DataAccessException exception) {
+            //replicas are measured against the last heartbeat that made it until the primary answers again
+        }
+    }
+
+    //a read-write transaction joined by a @ReadFromReplica method still needs the primary
+    private static boolean isReplicaRead() {
+        return READ_FROM_REPLICA.get() != null && (!TransactionSynchronizationManager.isActualTransactionActive()
+                || TransactionSynchronizationManager.isCurrentTransactionReadOnly());
+    }
+
+    private void recordWrite() {
+        String client = CLIENT.get();
+        if (client == null || !TransactionSynchronizationManager.isSynchronizationActive()
+                || TransactionSynchronizationManager.isCurrentTransactionReadOnly())
+            return;
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                lastWrites.put(client, System.currentTimeMillis());
+            }
+        });
+    }
+
+    private boolean wroteRecently() {
+        String client = CLIENT.get();
+        Long committedAt = client == null ? null : lastWrites.get(client);
+        return committedAt != null && System.currentTimeMillis() - committedAt <= stickyMs;
+    }
+
+    private static Connection connect(DataSource dataSource, String username, String password) throws SQLException {
+        return username == null ? dataSource.getConnection() : dataSource.getConnection(username, password);
+    }
+
+    private static void closePool(DataSource dataSource) throws Exception {
+        if (dataSource instanceof AutoCloseable)
+            ((AutoCloseable) dataSource).close();
+    }
+
+    //picks the database once the lazy connection runs its first statement
+    private class Router extends AbstractDataSource {
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            return getConnection(null, null);
+        }
+
+        @Override
+        public Connection getConnection(String username, String password) throws SQLException {
+            if (!isReplicaRead()) {
+                recordWrite();
+                return connect(primary, username, password);
+            }
+            if (wroteRecently())
+                return connect(primary, username, password);
+            for (int attempt = 0; attempt < replicas.size(); attempt++) {
+                Replica replica = replicas.get(Math.floorMod(nextReplica.getAndIncrement(), replicas.size()));
+                if (!replica.healthy)
+                    continue;
+                try {
+                    Connection connection = connect(replica.dataSource, username, password);
+                    replica.reads.increment();
+                    return connection;
+                } catch (SQLException exception) {
+                    //down since the last check, the next check brings it back once it answers again
+                    replica.healthy = false;
+                }
+            }
+            return connect(primary, username, password);
+        }
+    }
+
+    private static class Replica {
+        private final String url;
+        private final DataSource dataSource;
+        private final JdbcTemplate jdbcTemplate;
+        private final LongAdder reads = new LongAdder();
+        private volatile boolean healthy;
+        private volatile long lagMs = -1;
+
+        private Replica(String url, DataSource dataSource) {
+            this.url = url;
+            this.dataSource = dataSource;
+            this.jdbcTemplate = new JdbcTemplate(dataSource);
+        }
+    }
+}
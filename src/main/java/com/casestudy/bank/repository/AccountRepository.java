@@ -1,10 +1,41 @@
 package com.casestudy.bank.repository;
 
+import com.casestudy.bank.dto.AccountBalance;
 import com.casestudy.bank.model.Account;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.LockModeType;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface AccountRepository extends CrudRepository<Account, Integer> {
     Account findByAccountId(Integer accountId);
+
+    @Query("select new com.casestudy.bank.dto.AccountBalance(a.accountId, a.accountType, a.balance) from Account a where a.accountId = :accountId")
+    Optional<AccountBalance> findBalanceByAccountId(@Param("accountId") Integer accountId);
+
+    //plain read, a concurrent change is caught by the version check when the transaction flushes
+    List<Account> findByAccountIdIn(Collection<Integer> accountIds);
+
+    //locks rows in ascending id order so concurrent batches cannot deadlock
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    List<Account> findByAccountIdInOrderByAccountId(Collection<Integer> accountIds);
+
+    //one row, locked until the transaction ends
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select a from Account a where a.accountId = :accountId")
+    Account findLockedByAccountId(@Param("accountId") Integer accountId);
+
+    @Transactional
+    @Modifying
+    @Query("update Account a set a.balance = :balance, a.version = a.version + 1 where a.accountId = :accountId")
+    int updateBalance(@Param("accountId") Integer accountId, @Param("balance") long balance);
 }
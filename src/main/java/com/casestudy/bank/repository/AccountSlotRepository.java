@@ -0,0 +1,39 @@
+package com.casestudy.bank.repository;
+
+import com.casestudy.bank.dto.AccountBalance;
+import com.casestudy.bank.model.AccountSlot;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import javax.persistence.LockModeType;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface AccountSlotRepository extends CrudRepository<AccountSlot, Integer> {
+
+    boolean existsByAccountIdAndSlot(Integer accountId, int slot);
+
+    //one statement, so a concurrent fold of the slots into the account row is never half seen
+    @Query("select new com.casestudy.bank.dto.AccountBalance(a.accountId, a.accountType, a.balance, "
+            + "(select coalesce(sum(s.balance), 0) from AccountSlot s where s.accountId = a.accountId)) "
+            + "from Account a where a.accountId = :accountId")
+    Optional<AccountBalance> findTotalBalanceByAccountId(@Param("accountId") Integer accountId);
+
+    //locks every slot in slot order, only taken when a debit has to fold the slots back into the account
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    List<AccountSlot> findByAccountIdOrderBySlot(Integer accountId);
+
+    //in place add, concurrent credits only meet when they pick the same slot
+    @Modifying
+    @Query("update AccountSlot s set s.balance = s.balance + :amount where s.accountId = :accountId and s.slot = :slot")
+    int credit(@Param("accountId") Integer accountId, @Param("slot") int slot, @Param("amount") long amount);
+
+    @Modifying
+    @Query("update AccountSlot s set s.balance = s.balance - :amount where s.accountId = :accountId and s.slot = :slot and s.balance >= :amount")
+    int debit(@Param("accountId") Integer accountId, @Param("slot") int slot, @Param("amount") long amount);
+}
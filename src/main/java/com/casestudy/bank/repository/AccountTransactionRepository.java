@@ -0,0 +1,33 @@
+package com.casestudy.bank.repository;
+
+import com.casestudy.bank.model.AccountTransaction;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import javax.persistence.QueryHint;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+
+@Repository
+public interface AccountTransactionRepository extends CrudRepository<AccountTransaction, Long> {
+
+    //keyset page, newest first: seeks to (before, beforeId) on the account index and reads forward, never skips rows.
+    //accountId leads the order by so the database reads rows in index order instead of sorting the whole range.
+    @Query("select t from AccountTransaction t where t.accountId = :accountId and t.createdAt >= :from and t.createdAt <= :before"
+            + " and (t.createdAt < :before or t.transactionId < :beforeId) order by t.accountId, t.createdAt desc, t.transactionId desc")
+    List<AccountTransaction> findPage(@Param("accountId") int accountId, @Param("from") long from, @Param("before") long before,
+                                      @Param("beforeId") long beforeId, Pageable pageable);
+
+    //must be consumed inside a transaction, rows are fetched from the cursor as the stream advances
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "500"))
+    @Query("select t from AccountTransaction t where t.accountId = :accountId and t.createdAt >= :from and t.createdAt <= :before"
+            + " and (t.createdAt < :before or t.transactionId < :beforeId) order by t.accountId, t.createdAt desc, t.transactionId desc")
+    Stream<AccountTransaction> streamRange(@Param("accountId") int accountId, @Param("from") long from, @Param("before") long before,
+                                           @Param("beforeId") long beforeId);
+}
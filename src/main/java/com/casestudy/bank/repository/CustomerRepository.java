@@ -1,9 +1,43 @@
 package com.casestudy.bank.repository;
 
 import com.casestudy.bank.model.Customer;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.QueryHint;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+
 @Repository
 public interface CustomerRepository extends CrudRepository<Customer, Integer> {
+
+    //every read that returns customers joins their account in the same select instead of one select per account
+    @Override
+    @EntityGraph(attributePaths = "account")
+    Optional<Customer> findById(Integer customerId);
+
+    @Override
+    @EntityGraph(attributePaths = "account")
+    Iterable<Customer> findAll();
+
+    //keyset page: seeks past the cursor on the primary key instead of skipping rows with OFFSET
+    @EntityGraph(attributePaths = "account")
+    List<Customer> findByCustomerIdGreaterThanOrderByCustomerId(Integer customerId, Pageable pageable);
+
+    @Query("select c.email from Customer c where c.email in :emails")
+    List<String> findEmailsIn(@Param("emails") Collection<String> emails);
+
+    //must be consumed inside a transaction, rows are fetched from the cursor as the stream advances
+    @EntityGraph(attributePaths = "account")
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "500"))
+    Stream<Customer> streamAllByOrderByCustomerId();
 }
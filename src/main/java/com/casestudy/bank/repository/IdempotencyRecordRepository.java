@@ -0,0 +1,32 @@
+package com.casestudy.bank.repository;
+
+import com.casestudy.bank.model.IdempotencyRecord;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.stream.Stream;
+
+@Repository
+public interface IdempotencyRecordRepository extends CrudRepository<IdempotencyRecord, String> {
+
+    //must be consumed inside a transaction, oldest first so the newest keys end up in the current index table
+    Stream<IdempotencyRecord> streamByCreatedAtGreaterThanEqualOrderByCreatedAt(long createdAt);
+
+    @Modifying
+    @Transactional
+    @Query("delete from IdempotencyRecord r where r.createdAt < :createdAt")
+    int deleteCreatedBefore(@Param("createdAt") long createdAt);
+
+    //records are always new to save(), so changes go through queries
+    @Modifying
+    @Query("update IdempotencyRecord r set r.status = :status where r.idempotencyKey = :idempotencyKey")
+    int updateStatus(@Param("idempotencyKey") String idempotencyKey, @Param("status") String status);
+
+    @Modifying
+    @Query("delete from IdempotencyRecord r where r.idempotencyKey = :idempotencyKey")
+    int deleteByIdempotencyKey(@Param("idempotencyKey") String idempotencyKey);
+}
@@ -0,0 +1,9 @@
+package com.casestudy.bank.repository;
+
+import com.casestudy.bank.model.TransferCredit;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface TransferCreditRepository extends CrudRepository<TransferCredit, String> {
+}
@@ -0,0 +1,23 @@
+package com.casestudy.bank.repository;
+
+import com.casestudy.bank.model.TransferReservation;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+@Repository
+public interface TransferReservationRepository extends CrudRepository<TransferReservation, String> {
+
+    List<TransferReservation> findByCreatedAtLessThanOrderByCreatedAt(long createdAt);
+
+    //delete() skips entities that report isNew(), so reservations are removed by query
+    @Modifying
+    @Transactional
+    @Query("delete from TransferReservation r where r.transferId = :transferId")
+    int deleteByTransferId(@Param("transferId") String transferId);
+}
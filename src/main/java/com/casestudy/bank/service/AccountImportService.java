@@ -0,0 +1,294 @@
+package com.casestudy.bank.service;
+
+import com.casestudy.bank.customer.EmailIndex;
+import com.casestudy.bank.dto.BulkImportError;
+import com.casestudy.bank.dto.BulkImportResult;
+import com.casestudy.bank.eventsourcing.EventSourcing;
+import com.casestudy.bank.model.Account;
+import com.casestudy.bank.model.AccountType;
+import com.casestudy.bank.model.Customer;
+import com.casestudy.bank.money.Money;
+import com.casestudy.bank.repository.CustomerRepository;
+import com.casestudy.bank.sharding.AccountShards;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+//Onboards accounts from NDJSON or CSV uploads, read line by line and inserted in chunks of one transaction each
+@Service
+public class AccountImportService {
+
+    public static final String CSV_HEADER = "accountRef,accountType,balance,firstName,lastName,email";
+
+    private static final Pattern EMAIL = Pattern.compile("[^@\\s]+@[^@\\s]+");
+
+    @Autowired
+    BankService bankService;
+
+    @Autowired
+    CustomerRepository customerRepository;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+    @PersistenceContext
+    EntityManager entityManager;
+
+    @Autowired
+    EmailIndex emailIndex;
+
+    @Autowired
+    AccountShards accountShards;
+
+    @Autowired(required = false)
+    EventSourcing eventSourcing;
+
+    @Value("${bank.accounts.bulk.chunk-size:1000}")
+    private int chunkSize;
+
+    @Value("${bank.accounts.bulk.max-errors:100}")
+    private int maxErrors;
+
+    //One account per line in the POST /bank/account format
+    public BulkImportResult importNdjson(InputStream input) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+        ImportRun run = new ImportRun();
+        long lineNumber = 0;
+        String line;
+        try {
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank())
+                    continue;
+                try {
+                    run.add(lineNumber, objectMapper.readValue(line, Account.class));
+                } catch (JsonProcessingException exception) {
+                    run.reject(lineNumber, "Malformed account: " + exception.getOriginalMessage());
+                }
+            }
+            return run.finish();
+        } finally {
+            run.releaseReserved();
+        }
+    }
+
+    //One customer per row under CSV_HEADER, consecutive rows with the same accountRef are one account, fields are not quoted
+    public BulkImportResult importCsv(InputStream input) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+        String header = reader.readLine();
+        if (header == null || !header.trim().equals(CSV_HEADER))
+            throw new IllegalArgumentException("Expected CSV header " + CSV_HEADER);
+
+        ImportRun run = new ImportRun();
+        CsvAccount current = null;
+        long lineNumber = 1;
+        String line;
+        try {
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank())
+                    continue;
+                String[] fields = line.split(",", -1);
+                String accountRef = fields[0].trim();
+                if (current == null || !current.accountRef.equals(accountRef)) {
+                    if (current != null)
+                        current.complete(run);
+                    current = new CsvAccount(accountRef, lineNumber);
+                }
+                current.addRow(fields);
+            }
+            if (current != null)
+                current.complete(run);
+            return run.finish();
+        } finally {
+            run.releaseReserved();
+        }
+    }
+
+    //the checks addAccount and the entity constraints stand for, null when the account is acceptable
+    private String validate(Account account) {
+        if (account.getAccountType() == null)
+            return "AccountType cannot be null";
+        if (account.getCustomers() == null)
+            return "Customer cannot be null";
+        if (!bankService.hasValidCustomerCount(account))
+            return "Invalid number of customers for a " + account.getAccountType() + " account";
+        for (Customer customer : account.getCustomers()) {
+            if (customer.getFirstName() == null || customer.getFirstName().length() > 65)
+                return "First Name cannot be null or longer than 65";
+            if (customer.getLastName() == null || customer.getLastName().length() > 65)
+                return "Last Name cannot be null or longer than 65";
+            if (customer.getEmail() == null || customer.getEmail().length() > 100 || !EMAIL.matcher(customer.getEmail()).matches())
+                return "Invalid Email format";
+        }
+        return null;
+    }
+
+    //Rows of one account in a CSV upload
+    private class CsvAccount {
+        private final String accountRef;
+        private final long line;
+        private final Account account = new Account(null, 0, new ArrayList<>());
+        private String error;
+
+        private CsvAccount(String accountRef, long line) {
+            this.accountRef = accountRef;
+            this.line = line;
+        }
+
+        private void addRow(String[] fields) {
+            if (error != null)
+                return;
+            if (fields.length != 6) {
+                error = "Expected 6 fields but found " + fields.length;
+                return;
+            }
+            //account columns are read from the first row, later rows only add customers
+            if (account.getCustomers().isEmpty()) {
+                try {
+                    account.setAccountType(AccountType.valueOf(fields[1].trim()));
+                    account.setBalance(Money.fromDecimal(new BigDecimal(fields[2].trim())));
+                } catch (IllegalArgumentException | ArithmeticException exception) {
+                    error = "Invalid account type or balance";
+                    return;
+                }
+            }
+            account.getCustomers().add(new Customer(fields[3].trim(), fields[4].trim(), fields[5].trim(), null));
+        }
+
+        private void complete(ImportRun run) {
+            if (error != null)
+                run.reject(line, error);
+            else
+                run.add(line, account);
+        }
+    }
+
+    //Accounts of one upload, buffered up to chunk-size and inserted together
+    private class ImportRun {
+        private final List<Account> chunk = new ArrayList<>();
+        private final List<Long> chunkLines = new ArrayList<>();
+        private final Set<String> chunkEmails = new HashSet<>();
+        private final List<BulkImportError> errors = new ArrayList<>();
+        private long accounts;
+        private long customers;
+        private long rejected;
+
+        private void add(long line, Account account) {
+            String error = validate(account);
+            if (error != null) {
+                reject(line, error);
+                return;
+            }
+            //same copy into new customers with lower cased emails that addAccount makes
+            bankService.saveAccountDetails(account);
+            account.setAccountId(null);
+            Set<String> emails = new HashSet<>();
+            for (Customer customer : account.getCustomers()) {
+                if (!emails.add(customer.getEmail()) || chunkEmails.contains(customer.getEmail())) {
+                    reject(line, "Email appears twice: " + customer.getEmail());
+                    return;
+                }
+            }
+            //claimed like addAccount does, so a concurrent insert on any shard is refused until this chunk commits or gives it back
+            List<String> reserved = new ArrayList<>();
+            for (String email : emails) {
+                if (!emailIndex.reserve(email)) {
+                    reserved.forEach(emailIndex::release);
+                    reject(line, "Email already registered: " + email);
+                    return;
+                }
+                reserved.add(email);
+            }
+            chunkEmails.addAll(emails);
+            chunk.add(account);
+            chunkLines.add(line);
+            if (chunk.size() >= chunkSize)
+                flush();
+        }
+
+        private void reject(long line, String reason) {
+            rejected++;
+            if (errors.size() < maxErrors)
+                errors.add(new BulkImportError(line, reason));
+        }
+
+        private BulkImportResult finish() {
+            flush();
+            return new BulkImportResult(accounts, customers, rejected, errors);
+        }
+
+        //one select for emails the shard holds behind the index's back, then inserts that hibernate sends as JDBC batches on commit
+        private void flush() {
+            if (chunk.isEmpty())
+                return;
+            List<BulkImportError> taken = new ArrayList<>();
+            List<Account> persisted = new ArrayList<>(chunk.size());
+            try {
+                //a chunk is one transaction, so all of its accounts go to one shard
+                long[] inserted = accountShards.call(accountShards.nextShard(), () -> transactionTemplate.execute(transaction -> {
+                    Set<String> existing = new HashSet<>(customerRepository.findEmailsIn(chunkEmails));
+                    long[] counts = new long[2];
+                    for (int i = 0; i < chunk.size(); i++) {
+                        Account account = chunk.get(i);
+                        String email = account.getCustomers().stream().map(Customer::getEmail).filter(existing::contains).findFirst().orElse(null);
+                        if (email != null) {
+                            taken.add(new BulkImportError(chunkLines.get(i), "Email already registered: " + email));
+                            continue;
+                        }
+                        entityManager.persist(account);
+                        persisted.add(account);
+                        counts[0]++;
+                        counts[1] += account.getCustomers().size();
+                    }
+                    return counts;
+                }));
+                accounts += inserted[0];
+                customers += inserted[1];
+                taken.forEach(error -> reject(error.getLine(), error.getReason()));
+                for (Account account : persisted) {
+                    for (Customer customer : account.getCustomers())
+                        emailIndex.register(customer.getEmail(), customer.getCustomerId());
+                }
+                if (eventSourcing != null)
+                    eventSourcing.accountsOpened(persisted);
+            } catch (DataAccessException | TransactionException exception) {
+                //nothing of the chunk was inserted
+                for (Long line : chunkLines)
+                    reject(line, "Chunk rolled back: " + exception.getMostSpecificCause().getMessage());
+            } finally {
+                releaseReserved();
+            }
+            chunk.clear();
+            chunkLines.clear();
+        }
+
+        //Give back the claims of a chunk, emails already registered to an inserted customer are left alone
+        private void releaseReserved() {
+            chunkEmails.forEach(emailIndex::release);
+            chunkEmails.clear();
+        }
+    }
+}
@@ -1,40 +1,163 @@
 package com.casestudy.bank.service;
 
+import com.casestudy.bank.cache.BalanceCache;
+import com.casestudy.bank.coalescing.BalanceReadCoalescer;
+import com.casestudy.bank.contention.CommitStripes;
+import com.casestudy.bank.contention.ContentionMonitor;
+import com.casestudy.bank.contention.RetryPolicy;
+import com.casestudy.bank.customer.EmailIndex;
+import com.casestudy.bank.dto.AccountBalance;
+import com.casestudy.bank.dto.FundTransfer;
+import com.casestudy.bank.dto.TransferResult;
+import com.casestudy.bank.eventsourcing.EventSourcing;
+import com.casestudy.bank.hot.HotAccounts;
+import com.casestudy.bank.idempotency.IdempotencyIndex;
+import com.casestudy.bank.idempotency.IdempotencyKeys;
+import com.casestudy.bank.ledger.LedgerEngine;
 import com.casestudy.bank.model.Account;
+import com.casestudy.bank.model.AccountSlot;
+import com.casestudy.bank.model.AccountTransaction;
 import com.casestudy.bank.model.Customer;
+import com.casestudy.bank.replica.ReadFromReplica;
 import com.casestudy.bank.repository.AccountRepository;
+import com.casestudy.bank.repository.AccountSlotRepository;
+import com.casestudy.bank.repository.AccountTransactionRepository;
 import com.casestudy.bank.repository.CustomerRepository;
+import com.casestudy.bank.sharding.AccountShards;
+import com.casestudy.bank.sharding.CrossShardTransfers;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 
 @Service
 public class BankService {
 
+    //streamed entities are evicted from the persistence context in chunks of this size
+    private static final int STREAM_CLEAR_INTERVAL = 500;
+
     @Autowired
     AccountRepository accountRepository;
 
     @Autowired
     CustomerRepository customerRepository;
 
+    @Autowired
+    LedgerEngine ledgerEngine;
+
+    @Autowired
+    BalanceCache balanceCache;
+
+    @Autowired
+    BalanceReadCoalescer balanceReadCoalescer;
+
+    @PersistenceContext
+    EntityManager entityManager;
+
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+    @Autowired
+    RetryPolicy retryPolicy;
+
+    @Autowired
+    ContentionMonitor contentionMonitor;
+
+    @Autowired
+    CommitStripes commitStripes;
+
+    @Autowired
+    HotAccounts hotAccounts;
+
+    @Autowired
+    AccountSlotRepository accountSlotRepository;
+
+    @Autowired
+    IdempotencyKeys idempotencyKeys;
+
+    @Autowired
+    AccountTransactionRepository accountTransactionRepository;
+
+    @Autowired
+    EmailIndex emailIndex;
+
+    @Autowired
+    AccountShards accountShards;
+
+    //present when bank.sharding.enabled, moves money between accounts of different shards
+    @Autowired(required = false)
+    CrossShardTransfers crossShardTransfers;
+
+    //present when bank.event-sourcing.enabled, committed changes are then recorded as events before they are acknowledged
+    @Autowired(required = false)
+    EventSourcing eventSourcing;
+
     //create new account
     public Account addAccount(Account request) {
-        String accountType = request.getAccountType().toString();
-        if (accountType.equals("SAVING") || accountType.equals("CURRENT")) {
-            if (request.getCustomers().size() > 1)
-                return null;
-            else
-                saveAccountDetails(request);
-        } else {
-            if (request.getCustomers().size() < 2)
+        if (!hasValidCustomerCount(request))
+            return null;
+        saveAccountDetails(request);
+        //a taken email is refused here, without the failed insert and rollback
+        List<String> reserved = new ArrayList<>();
+        for (Customer customer : request.getCustomers()) {
+            if (!emailIndex.reserve(customer.getEmail())) {
+                reserved.forEach(emailIndex::release);
                 return null;
-            else
-                saveAccountDetails(request);
+            }
+            reserved.add(customer.getEmail());
+        }
+        Account account = null;
+        try {
+            account = accountShards.call(accountShards.nextShard(), () -> accountRepository.save(request));
+        } finally {
+            //a failed insert gives its emails back
+            if (account == null)
+                reserved.forEach(emailIndex::release);
         }
-        return accountRepository.save(request);
+        if (account == null)
+            return null;
+        for (Customer customer : account.getCustomers())
+            emailIndex.register(customer.getEmail(), customer.getCustomerId());
+        balanceChanged(account);
+        if (eventSourcing != null)
+            eventSourcing.accountOpened(account);
+        return account;
+    }
+
+    //SAVING and CURRENT accounts have at most one customer, JOINT accounts at least two
+    public boolean hasValidCustomerCount(Account request) {
+        String accountType = request.getAccountType().toString();
+        if (accountType.equals("SAVING") || accountType.equals("CURRENT"))
+            return request.getCustomers().size() <= 1;
+        else
+            return request.getCustomers().size() >= 2;
     }
 
     //Save Customer Details
@@ -45,7 +168,7 @@ public class BankService {
             Customer newCustomer = new Customer();
             newCustomer.setFirstName(customer.getFirstName());
             newCustomer.setLastName(customer.getLastName());
-            newCustomer.setEmail(customer.getEmail().toLowerCase());
+            newCustomer.setEmail(EmailIndex.normalize(customer.getEmail()));
             newCustomerList.add(newCustomer);
         }
         for (Customer customer : newCustomerList) {
@@ -56,39 +179,447 @@ public class BankService {
 
     //update customer details
     public Customer upDateCustomer(Integer customerId, Customer request) {
+        return accountShards.call(accountShards.shardOf(customerId), () -> updateCustomer(customerId, request));
+    }
+
+    private Customer updateCustomer(Integer customerId, Customer request) {
         Customer customer = customerRepository.findById(customerId).get();
+        String previousEmail = customer.getEmail();
+        boolean emailChanged = request.getEmail() != null
+                && !EmailIndex.normalize(request.getEmail()).equals(EmailIndex.normalize(previousEmail));
+        if (emailChanged && !emailIndex.reserve(request.getEmail()))
+            return null;
         customer.setFirstName(request.getFirstName());
         customer.setLastName(request.getLastName());
-        customer.setEmail(request.getEmail());
+        //stored lower cased like a new customer's, so the index and the stored email never disagree
+        customer.setEmail(request.getEmail() == null ? null : EmailIndex.normalize(request.getEmail()));
         try {
             customer = customerRepository.save(customer);
         } catch (Exception exception) {
-            customer = null;
+            if (emailChanged)
+                emailIndex.release(request.getEmail());
+            return null;
         }
+        if (emailChanged) {
+            emailIndex.register(request.getEmail(), customerId);
+            emailIndex.unregister(previousEmail, customerId);
+        }
+        if (eventSourcing != null)
+            eventSourcing.customerUpdated(customer);
         return customer;
     }
 
     //get all customer details
+    @ReadFromReplica
     public List<Customer> getAllCustomers() {
-        return (List<Customer>) customerRepository.findAll();
+        if (!accountShards.isSharded())
+            return (List<Customer>) customerRepository.findAll();
+        List<Customer> customers = new ArrayList<>();
+        accountShards.runOnEveryShard(() -> customerRepository.findAll().forEach(customers::add));
+        return customers;
+    }
+
+    //get one page of customers with id greater than the cursor, the first size ids of every shard's page merged
+    public List<Customer> getCustomersPage(Integer afterCustomerId, int size) {
+        int after = afterCustomerId == null ? 0 : afterCustomerId;
+        if (!accountShards.isSharded())
+            return customerRepository.findByCustomerIdGreaterThanOrderByCustomerId(after, PageRequest.of(0, size));
+        List<Customer> customers = new ArrayList<>();
+        accountShards.runOnEveryShard(() -> customers.addAll(customerRepository.findByCustomerIdGreaterThanOrderByCustomerId(after, PageRequest.of(0, size))));
+        customers.sort(Comparator.comparing(Customer::getCustomerId));
+        return customers.size() > size ? new ArrayList<>(customers.subList(0, size)) : customers;
+    }
+
+    //stream all customer details in id order shard by shard, memory stays flat whatever the table size
+    public void streamAllCustomers(Consumer<Customer> consumer) {
+        TransactionTemplate readOnly = readOnlyTransactions();
+        accountShards.runOnEveryShard(() -> readOnly.executeWithoutResult(transaction -> {
+            try (Stream<Customer> customers = customerRepository.streamAllByOrderByCustomerId()) {
+                int streamed = 0;
+                Iterator<Customer> iterator = customers.iterator();
+                while (iterator.hasNext()) {
+                    consumer.accept(iterator.next());
+                    if (++streamed % STREAM_CLEAR_INTERVAL == 0)
+                        entityManager.clear();
+                }
+            }
+        }));
     }
 
     // get one customer details
+    @ReadFromReplica
     public Optional<Customer> getCustomerById(Integer customerId) {
-        return customerRepository.findById(customerId);
+        return accountShards.call(accountShards.shardOf(customerId), () -> customerRepository.findById(customerId));
+    }
+
+    //an unknown email is answered by the index alone, a known one by its primary key
+    public Optional<Customer> getCustomerByEmail(String email) {
+        return emailIndex.find(email).flatMap(this::getCustomerById);
+    }
+
+    //Transfer fund, retried with backoff when a concurrent transfer updated either account first
+    public String transferFunds(Integer from, Integer to, long amount) {
+        return transfer(from, to, amount, null, 0);
+    }
+
+    //Transfer fund once per idempotency key, a replay gets the first status back without touching the accounts
+    public String transferFunds(Integer from, Integer to, long amount, String idempotencyKey) {
+        //the key is recorded and recovered on the shard of the debited account
+        return accountShards.call(accountShards.shardOf(from), () -> transferOncePerKey(from, to, amount, idempotencyKey));
+    }
+
+    private String transferOncePerKey(Integer from, Integer to, long amount, String idempotencyKey) {
+        int requestHash = IdempotencyKeys.requestHash(from, to, amount);
+        String replayed = idempotencyKeys.find(idempotencyKey, requestHash);
+        if (replayed != null)
+            return replayed;
+        //the ledger cannot roll a transfer back when the key turns out to be taken, so it claims the key first
+        if (ledgerEngine.isEnabled()) {
+            String claimed = idempotencyKeys.claim(idempotencyKey, requestHash);
+            if (claimed != null)
+                return claimed;
+        }
+        try {
+            return transfer(from, to, amount, idempotencyKey, requestHash);
+        } catch (DataIntegrityViolationException exception) {
+            //a request with the same key committed first, our transfer was rolled back with the duplicate insert
+            String recovered = idempotencyKeys.recover(idempotencyKey, requestHash);
+            if (recovered == null)
+                throw exception;
+            return recovered;
+        }
+    }
+
+    private String transfer(Integer from, Integer to, long amount, String idempotencyKey, int requestHash) {
+        String status = transferCommitted(from, to, amount, idempotencyKey, requestHash);
+        if (eventSourcing != null && status.equals("SUCCESS"))
+            eventSourcing.transferred(from, to, amount);
+        return status;
+    }
+
+    private String transferCommitted(Integer from, Integer to, long amount, String idempotencyKey, int requestHash) {
+        if (ledgerEngine.isEnabled()) {
+            //the key was claimed before, the outcome is stored before the history so a replay never moves the money again
+            String status = ledgerTransfer(from, to, amount, idempotencyKey);
+            if (idempotencyKey != null)
+                idempotencyKeys.complete(idempotencyKey, requestHash, status);
+            return ledgerTransferred(from, to, amount, status);
+        }
+
+        for (int attempt = 1; ; attempt++) {
+            try {
+                if (accountShards.shardOf(from) != accountShards.shardOf(to))
+                    return crossShardTransfers.transfer(from, to, amount, idempotencyKey, requestHash);
+                return accountShards.call(accountShards.shardOf(from), () -> transferOnce(from, to, amount, idempotencyKey, requestHash));
+            } catch (ConcurrencyFailureException exception) {
+                recordConflict(exception, from, to);
+                if (attempt >= retryPolicy.getMaxAttempts() || !retryPolicy.backoff(attempt)) {
+                    contentionMonitor.recordGiveUp(from);
+                    contentionMonitor.recordGiveUp(to);
+                    return "CONFLICT";
+                }
+                contentionMonitor.recordRetry(from);
+                contentionMonitor.recordRetry(to);
+            }
+        }
+    }
+
+    public boolean isTransferSequenced() {
+        return ledgerEngine.isSequenced();
+    }
+
+    //Transfer on the ledger sequencer without holding the calling thread, history and write-behind pacing run on executor
+    //once a sequencer writer applied it
+    public CompletableFuture<String> transferFundsAsync(Integer from, Integer to, long amount, Executor executor) {
+        return ledgerEngine.submitTransfer(from, to, amount).thenApplyAsync(applied -> {
+            ledgerEngine.awaitCapacity();
+            String status = ledgerTransferred(from, to, amount, applied);
+            if (eventSourcing != null && status.equals("SUCCESS"))
+                eventSourcing.transferred(from, to, amount);
+            return status;
+        }, executor);
+    }
+
+    //a claimed key is given back when the transfer failed before moving money
+    private String ledgerTransfer(Integer from, Integer to, long amount, String claimedKey) {
+        try {
+            return ledgerEngine.transfer(from, to, amount);
+        } catch (RuntimeException exception) {
+            if (claimedKey != null)
+                idempotencyKeys.release(claimedKey);
+            throw exception;
+        }
     }
 
-    //Transfer fund
-    public String transferFunds(Integer from, Integer to, Double amount) {
-        Account fromAccount = accountRepository.findByAccountId(from);
-        Account toAccount = accountRepository.findByAccountId(to);
+    //the ledger has no database transaction, history of a successful transfer is written after it
+    private String ledgerTransferred(Integer from, Integer to, long amount, String status) {
+        if (status.equals("SUCCESS"))
+            accountTransactionRepository.saveAll(historyOf(from, to, amount));
+        return status;
+    }
+
+    private String transferOnce(Integer from, Integer to, long amount, String idempotencyKey, int requestHash) {
+        //one transaction keeps both accounts managed, so the saves are plain versioned updates without a merge select.
+        //Nothing is locked while the transfer reads and decides, a concurrent commit on either account fails the version
+        //check on flush and the transfer is retried
+        return transactionTemplate.execute(transaction -> {
+            String status = hotAccounts.isHot(from) || hotAccounts.isHot(to)
+                    ? transferWithHotAccount(from, to, amount)
+                    : transferAccounts(from, to, amount);
+            if (idempotencyKey != null)
+                idempotencyKeys.record(idempotencyKey, requestHash, status);
+            return status;
+        });
+    }
+
+    private String transferAccounts(Integer from, Integer to, long amount) {
+        commitStripes.guardCommit(Arrays.asList(from, to));
+        Map<Integer, Account> accounts = loadAccounts(Arrays.asList(from, to));
+        Account fromAccount = accounts.get(from);
+        Account toAccount = accounts.get(to);
+
+        String status = applyTransfer(fromAccount, toAccount, amount);
+        if (status.equals("SUCCESS")) {
+            accountRepository.save(fromAccount);
+            accountRepository.save(toAccount);
+            accountTransactionRepository.saveAll(historyOf(from, to, amount));
+            balanceChanged(fromAccount);
+            balanceChanged(toAccount);
+        }
+        return status;
+    }
+
+    //A hot credit lands on a random slot without reading or locking the hot account row, so credits only meet when they
+    //pick the same slot. A hot debit tries a slot, then locks the row and takes from it, then folds every slot into it
+    private String transferWithHotAccount(Integer from, Integer to, long amount) {
+        boolean hotFrom = hotAccounts.isHot(from);
+        boolean hotTo = hotAccounts.isHot(to);
+        Map<Integer, Account> accounts = loadAccounts(Arrays.asList(hotFrom ? null : from, hotTo ? null : to));
+        if (!exists(from, hotFrom, accounts) || !exists(to, hotTo, accounts))
+            return "ID MISMATCH";
+
+        Account fromAccount = accounts.get(from);
+        if (hotFrom) {
+            if (!debitHotAccount(from, amount))
+                return "INSUFFICIENT FUNDS";
+        } else if (amount <= fromAccount.getBalance()) {
+            fromAccount.setBalance(fromAccount.getBalance() - amount);
+        } else {
+            return "INSUFFICIENT FUNDS";
+        }
+        Account toAccount = null;
+        if (!hotTo || accountSlotRepository.credit(to, hotAccounts.pickSlot(), amount) == 0) {
+            toAccount = hotTo ? accountRepository.findByAccountId(to) : accounts.get(to);
+            toAccount.setBalance(toAccount.getBalance() + amount);
+        }
+
+        //only rows written without a row lock go through the commit stripes, a slot credit leaves the hot row alone
+        commitStripes.guardCommit(Arrays.asList(fromAccount == null ? null : from, toAccount == null ? null : to));
+        if (fromAccount != null)
+            accountRepository.save(fromAccount);
+        if (toAccount != null)
+            accountRepository.save(toAccount);
+        accountTransactionRepository.saveAll(historyOf(from, to, amount));
+        if (!hotFrom)
+            balanceChanged(fromAccount);
+        if (!hotTo)
+            balanceChanged(toAccount);
+        return "SUCCESS";
+    }
+
+    //a hot account is checked by key only, reading its row must not wait for a debit holding it
+    private boolean exists(Integer accountId, boolean hot, Map<Integer, Account> accounts) {
+        return hot ? accountRepository.existsById(accountId) : accounts.containsKey(accountId);
+    }
 
+    //the row is locked only once a slot fell short, a debit from the row or a fold must not race another one
+    private boolean debitHotAccount(Integer accountId, long amount) {
+        if (accountSlotRepository.debit(accountId, hotAccounts.pickSlot(), amount) == 1)
+            return true;
+        Account account = accountRepository.findLockedByAccountId(accountId);
+        if (account == null)
+            return false;
+        if (amount <= account.getBalance()) {
+            account.setBalance(account.getBalance() - amount);
+            return true;
+        }
+        List<AccountSlot> slots = accountSlotRepository.findByAccountIdOrderBySlot(accountId);
+        long total = account.getBalance();
+        for (AccountSlot slot : slots)
+            total += slot.getBalance();
+        if (amount > total)
+            return false;
+        slots.forEach(slot -> slot.setBalance(0));
+        account.setBalance(total - amount);
+        return true;
+    }
+
+    //Transfer funds in bulk: accounts loaded with one locking IN query, updates flushed as a JDBC batch on commit.
+    //Accounts of different shards cannot share that transaction, so with several shards every transfer runs on its own.
+    public List<TransferResult> transferFundsBatch(List<FundTransfer> transfers) {
+        if (accountShards.isSharded())
+            return transferEach(transfers);
+        return transactionTemplate.execute(transaction -> transferBatch(transfers));
+    }
+
+    private List<TransferResult> transferEach(List<FundTransfer> transfers) {
+        List<TransferResult> results = new ArrayList<>(transfers.size());
+        for (FundTransfer transfer : transfers) {
+            String status;
+            if (transfer.getFromAccount() == null || transfer.getToAccount() == null)
+                status = "ID MISMATCH";
+            else if (transfer.getIdempotencyKey() != null)
+                status = transferFunds(transfer.getFromAccount(), transfer.getToAccount(), transfer.getAmount(), transfer.getIdempotencyKey());
+            else
+                status = transferFunds(transfer.getFromAccount(), transfer.getToAccount(), transfer.getAmount());
+            results.add(toResult(transfer, status));
+        }
+        return results;
+    }
+
+    private List<TransferResult> transferBatch(List<FundTransfer> transfers) {
+        List<TransferResult> results = new ArrayList<>(transfers.size());
+        Map<String, TransferResult> keyed = new HashMap<>();
+        if (eventSourcing != null) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    eventSourcing.transferred(results);
+                }
+            });
+        }
+        if (ledgerEngine.isEnabled()) {
+            for (FundTransfer transfer : transfers) {
+                String key = transfer.getIdempotencyKey();
+                int requestHash = IdempotencyKeys.requestHash(transfer.getFromAccount(), transfer.getToAccount(), transfer.getAmount());
+                String replayed = replayed(transfer, keyed);
+                if (replayed == null && key != null)
+                    replayed = idempotencyKeys.claim(key, requestHash);
+                if (replayed != null) {
+                    results.add(toResult(transfer, replayed));
+                    continue;
+                }
+                TransferResult result = toResult(transfer, ledgerTransfer(transfer.getFromAccount(), transfer.getToAccount(), transfer.getAmount(), key));
+                if (key != null) {
+                    keyed.put(key, result);
+                    idempotencyKeys.complete(key, requestHash, result.getStatus());
+                }
+                results.add(result);
+            }
+            saveHistory(results);
+            return results;
+        }
+
+        List<Integer> accountIds = new ArrayList<>();
+        for (FundTransfer transfer : transfers) {
+            accountIds.add(transfer.getFromAccount());
+            accountIds.add(transfer.getToAccount());
+        }
+        Map<Integer, Account> accounts = lockAccounts(accountIds);
+
+        //applied in request order, so a later transfer sees the balances left by earlier ones
+        Map<Integer, Account> changedAccounts = new HashMap<>();
+        for (FundTransfer transfer : transfers) {
+            String replayed = replayed(transfer, keyed);
+            if (replayed != null) {
+                results.add(toResult(transfer, replayed));
+                continue;
+            }
+            Account fromAccount = accounts.get(transfer.getFromAccount());
+            Account toAccount = accounts.get(transfer.getToAccount());
+            String status = applyTransfer(fromAccount, toAccount, transfer.getAmount());
+            if (status.equals("SUCCESS")) {
+                changedAccounts.put(fromAccount.getAccountId(), fromAccount);
+                changedAccounts.put(toAccount.getAccountId(), toAccount);
+            }
+            TransferResult result = toResult(transfer, status);
+            recordKey(transfer, result, keyed);
+            results.add(result);
+        }
+        changedAccounts.values().forEach(this::balanceChanged);
+        saveHistory(results);
+        return results;
+    }
+
+    //the debit and credit rows of every successful transfer, sent as one insert batch
+    private void saveHistory(List<TransferResult> results) {
+        long now = System.currentTimeMillis();
+        List<AccountTransaction> history = new ArrayList<>();
+        for (TransferResult result : results) {
+            if (result.getStatus().equals("SUCCESS")) {
+                history.add(new AccountTransaction(result.getFromAccount(), result.getToAccount(), -result.getAmount(), now));
+                history.add(new AccountTransaction(result.getToAccount(), result.getFromAccount(), result.getAmount(), now));
+            }
+        }
+        accountTransactionRepository.saveAll(history);
+    }
+
+    private List<AccountTransaction> historyOf(Integer from, Integer to, long amount) {
+        long now = System.currentTimeMillis();
+        return List.of(new AccountTransaction(from, to, -amount, now), new AccountTransaction(to, from, amount, now));
+    }
+
+    //status of an earlier transfer with the same key, in this batch or before it
+    private String replayed(FundTransfer transfer, Map<String, TransferResult> keyed) {
+        String key = transfer.getIdempotencyKey();
+        if (key == null)
+            return null;
+        TransferResult earlier = keyed.get(key);
+        if (earlier == null)
+            return idempotencyKeys.find(key, IdempotencyKeys.requestHash(transfer.getFromAccount(), transfer.getToAccount(), transfer.getAmount()));
+        boolean sameTransfer = Objects.equals(earlier.getFromAccount(), transfer.getFromAccount())
+                && Objects.equals(earlier.getToAccount(), transfer.getToAccount()) && earlier.getAmount() == transfer.getAmount();
+        return sameTransfer ? earlier.getStatus() : IdempotencyIndex.KEY_REUSED;
+    }
+
+    private void recordKey(FundTransfer transfer, TransferResult result, Map<String, TransferResult> keyed) {
+        String key = transfer.getIdempotencyKey();
+        if (key == null)
+            return;
+        keyed.put(key, result);
+        idempotencyKeys.record(key, IdempotencyKeys.requestHash(transfer.getFromAccount(), transfer.getToAccount(), transfer.getAmount()), result.getStatus());
+    }
+
+    //blame the account whose version check failed when hibernate tells us which one it was
+    private void recordConflict(ConcurrencyFailureException exception, Integer from, Integer to) {
+        Object identifier = exception instanceof ObjectOptimisticLockingFailureException
+                ? ((ObjectOptimisticLockingFailureException) exception).getIdentifier() : null;
+        if (identifier instanceof Integer) {
+            contentionMonitor.recordConflict((Integer) identifier);
+        } else {
+            contentionMonitor.recordConflict(from);
+            contentionMonitor.recordConflict(to);
+        }
+    }
+
+    //Load the accounts without row locks, two transfers on the same account both proceed and the later commit fails its
+    //version check and is retried
+    private Map<Integer, Account> loadAccounts(Collection<Integer> accountIds) {
+        return byId(accountIds, accountRepository::findByAccountIdIn);
+    }
+
+    //Load the accounts of a batch with their rows locked in ascending id order, so batches touching the same accounts queue
+    //behind each other instead of deadlocking
+    private Map<Integer, Account> lockAccounts(Collection<Integer> accountIds) {
+        return byId(accountIds, accountRepository::findByAccountIdInOrderByAccountId);
+    }
+
+    private Map<Integer, Account> byId(Collection<Integer> accountIds, Function<Collection<Integer>, List<Account>> finder) {
+        Set<Integer> ids = new HashSet<>(accountIds);
+        ids.remove(null);
+        Map<Integer, Account> accounts = new HashMap<>();
+        if (ids.isEmpty())
+            return accounts;
+        for (Account account : finder.apply(ids))
+            accounts.put(account.getAccountId(), account);
+        return accounts;
+    }
+
+    private String applyTransfer(Account fromAccount, Account toAccount, long amount) {
         if (fromAccount != null && toAccount != null) {
             if (amount <= fromAccount.getBalance()) {
                 fromAccount.setBalance(fromAccount.getBalance() - amount);
                 toAccount.setBalance(toAccount.getBalance() + amount);
-                accountRepository.save(fromAccount);
-                accountRepository.save(toAccount);
                 return "SUCCESS";
             } else {
                 return "INSUFFICIENT FUNDS";
@@ -97,9 +628,90 @@ public class BankService {
             return "ID MISMATCH";
     }
 
+    private TransferResult toResult(FundTransfer transfer, String status) {
+        return new TransferResult(transfer.getFromAccount(), transfer.getToAccount(), transfer.getAmount(), status);
+    }
+
+    public boolean hasAccount(Integer accountId) {
+        return accountShards.call(accountShards.shardOf(accountId), () -> accountRepository.existsById(accountId));
+    }
+
+    //Get one page of an account's transactions newest first, created in [from, to) and older than the cursor row
+    public List<AccountTransaction> getTransactionsPage(Integer accountId, Long before, long from, long to, int size) {
+        return accountShards.call(accountShards.shardOf(accountId), () -> {
+            long[] seek = seekPosition(accountId, before, to);
+            return accountTransactionRepository.findPage(accountId, from, seek[0], seek[1], PageRequest.of(0, size));
+        });
+    }
+
+    //stream an account's transactions newest first, memory stays flat whatever the history size
+    public void streamTransactions(Integer accountId, Long before, long from, long to, Consumer<AccountTransaction> consumer) {
+        accountShards.run(accountShards.shardOf(accountId), () -> readOnlyTransactions().executeWithoutResult(transaction -> {
+            long[] seek = seekPosition(accountId, before, to);
+            try (Stream<AccountTransaction> transactions = accountTransactionRepository.streamRange(accountId, from, seek[0], seek[1])) {
+                int streamed = 0;
+                Iterator<AccountTransaction> iterator = transactions.iterator();
+                while (iterator.hasNext()) {
+                    consumer.accept(iterator.next());
+                    if (++streamed % STREAM_CLEAR_INTERVAL == 0)
+                        entityManager.clear();
+                }
+            }
+        }));
+    }
+
+    //streams need a transaction that holds the connection until the last row, and a shard chosen before it begins
+    private TransactionTemplate readOnlyTransactions() {
+        TransactionTemplate readOnly = new TransactionTemplate(transactionTemplate.getTransactionManager());
+        readOnly.setReadOnly(true);
+        return readOnly;
+    }
+
+    //newest (createdAt, transactionId) a page may start below: the cursor row, or the end of the date range if that is older
+    private long[] seekPosition(Integer accountId, Long before, long to) {
+        long[] seek = {to - 1, Long.MAX_VALUE};
+        if (before == null)
+            return seek;
+        AccountTransaction cursor = accountTransactionRepository.findById(before)
+                .filter(transaction -> transaction.getAccountId() == accountId)
+                .orElseThrow(() -> new IllegalArgumentException("Unknown cursor " + before));
+        if (cursor.getCreatedAt() <= seek[0]) {
+            seek[0] = cursor.getCreatedAt();
+            seek[1] = cursor.getTransactionId();
+        }
+        return seek;
+    }
+
+    //a committed balance change refreshes the cache and keeps later reads out of queries already in flight
+    private void balanceChanged(Account account) {
+        balanceCache.update(account);
+        balanceReadCoalescer.written(account.getAccountId());
+    }
+
     //Get Balance Details
-    public Optional<Account> getBalanceOf(Integer accountId) {
-        return accountRepository.findById(accountId);
+    @ReadFromReplica
+    public Optional<AccountBalance> getBalanceOf(Integer accountId) {
+        return accountShards.call(accountShards.shardOf(accountId), () -> balanceOf(accountId));
+    }
+
+    private Optional<AccountBalance> balanceOf(Integer accountId) {
+        //the projection holds every committed change, including the whole balance of a hot account
+        if (eventSourcing != null)
+            return eventSourcing.getBalance(accountId);
+        //slots change without touching the account row, so hot balances are summed on every read and never cached
+        if (hotAccounts.isHot(accountId))
+            return accountSlotRepository.findTotalBalanceByAccountId(accountId);
+        //concurrent misses for one account share a single query
+        Supplier<Optional<AccountBalance>> query = () -> balanceReadCoalescer.load(accountId, () -> accountRepository.findBalanceByAccountId(accountId));
+        Optional<AccountBalance> account = balanceCache.isEnabled() ? balanceCache.get(accountId, query) : query.get();
+        if (ledgerEngine.isEnabled()) {
+            //ledger balance is ahead of the database until write-behind catches up
+            account.ifPresent(value -> {
+                if (ledgerEngine.contains(accountId))
+                    value.setBalance(ledgerEngine.getBalance(accountId));
+            });
+        }
+        return account;
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,109 @@
+package com.casestudy.bank.sharding;
+
+import com.casestudy.bank.id.IdSequences;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+//Accounts, their customers and their history are partitioned by id across the shards of ShardRoutingDataSource.
+//Ids are handed out in blocks of IdSequences.BLOCK_SIZE and block b belongs to shard b % count, so every shard's sequences
+//only hand out blocks of their own shard (drawn per shard by ShardSequenceGenerator) and the owner of an id is found without a lookup.
+//Shard 0 also holds the data.sql rows. Without bank.sharding.enabled there is a single shard and every call runs as is.
+@Component
+public class AccountShards {
+
+    @Autowired(required = false)
+    ShardRoutingDataSource shardRoutingDataSource;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    //hibernate has created the schema of shard 0 once the factory exists
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
+    private final AtomicInteger nextShard = new AtomicInteger();
+
+    //the other shards get the tables hibernate created on shard 0, a shard that already has them is left as it is
+    @PostConstruct
+    public void createSchemas() {
+        if (!isSharded())
+            return;
+        List<String> schema = jdbcTemplate.queryForList("script nodata", String.class);
+        for (int shard = 1; shard < count(); shard++) {
+            run(shard, () -> {
+                Integer tables = jdbcTemplate.queryForObject(
+                        "select count(*) from information_schema.tables where table_name = 'ACCOUNT' and table_schema = 'PUBLIC'", Integer.class);
+                if (tables != null && tables > 0)
+                    return;
+                for (String statement : schema) {
+                    if (!statement.startsWith("CREATE USER"))
+                        jdbcTemplate.execute(statement);
+                }
+            });
+        }
+    }
+
+    public int count() {
+        return shardRoutingDataSource == null ? 1 : shardRoutingDataSource.getShardCount();
+    }
+
+    public boolean isSharded() {
+        return count() > 1;
+    }
+
+    //shard of an account, customer or history id, unknown ids are looked up on shard 0 and not found there
+    public int shardOf(Integer id) {
+        if (id == null || id < 1)
+            return 0;
+        return (int) ((id - 1L) / IdSequences.BLOCK_SIZE % count());
+    }
+
+    //shard for a new account, round robin
+    public int nextShard() {
+        return Math.floorMod(nextShard.getAndIncrement(), count());
+    }
+
+    //Run work with every statement it issues outside a transaction, or in transactions it starts, sent to the shard
+    public <T> T call(int shard, Supplier<T> work) {
+        if (!isSharded())
+            return work.get();
+        int current = ShardRoutingDataSource.currentShard();
+        if (current != shard && TransactionSynchronizationManager.isActualTransactionActive())
+            throw new IllegalStateException("Cannot switch to shard " + shard + " inside a transaction on shard " + current);
+        Integer previous = ShardRoutingDataSource.enterShard(shard);
+        try {
+            return work.get();
+        } finally {
+            ShardRoutingDataSource.restoreShard(previous);
+        }
+    }
+
+    public void run(int shard, Runnable work) {
+        call(shard, () -> {
+            work.run();
+            return null;
+        });
+    }
+
+    //one result per shard, in shard order
+    public <T> List<T> callOnEveryShard(Supplier<T> work) {
+        List<T> results = new ArrayList<>(count());
+        for (int shard = 0; shard < count(); shard++)
+            results.add(call(shard, work));
+        return results;
+    }
+
+    public void runOnEveryShard(Runnable work) {
+        for (int shard = 0; shard < count(); shard++)
+            run(shard, work);
+    }
+}
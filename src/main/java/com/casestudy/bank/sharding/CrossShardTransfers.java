@@ -0,0 +1,195 @@
+package com.casestudy.bank.sharding;
+
+import com.casestudy.bank.cache.BalanceCache;
+import com.casestudy.bank.coalescing.BalanceReadCoalescer;
+import com.casestudy.bank.contention.RetryPolicy;
+import com.casestudy.bank.dto.ShardingStats;
+import com.casestudy.bank.idempotency.IdempotencyKeys;
+import com.casestudy.bank.model.Account;
+import com.casestudy.bank.model.AccountTransaction;
+import com.casestudy.bank.model.TransferCredit;
+import com.casestudy.bank.model.TransferReservation;
+import com.casestudy.bank.repository.AccountRepository;
+import com.casestudy.bank.repository.AccountTransactionRepository;
+import com.casestudy.bank.repository.TransferCreditRepository;
+import com.casestudy.bank.repository.TransferReservationRepository;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+//Transfers between accounts of different shards, in two local transactions instead of a distributed one.
+//The source shard's transaction debits the account and inserts a reservation, the target shard's transaction credits the
+//account and inserts a credit row with the same transfer id, then the reservation is deleted.
+//A crash or failure between the two leaves the reservation behind, and the recovery task completes it once it is older
+//than recovery-delay-ms. The credit row makes completing twice impossible, so the recovery may race the request that debited.
+//Until the credit commits the money is in neither balance, reads never see it twice.
+@Component
+@ConditionalOnProperty(name = "bank.sharding.enabled", havingValue = "true")
+public class CrossShardTransfers implements SmartInitializingSingleton, DisposableBean {
+
+    @Autowired
+    AccountShards accountShards;
+
+    @Autowired
+    AccountRepository accountRepository;
+
+    @Autowired
+    AccountTransactionRepository accountTransactionRepository;
+
+    @Autowired
+    TransferReservationRepository transferReservationRepository;
+
+    @Autowired
+    TransferCreditRepository transferCreditRepository;
+
+    @Autowired
+    BalanceCache balanceCache;
+
+    @Autowired
+    BalanceReadCoalescer balanceReadCoalescer;
+
+    @Autowired
+    IdempotencyKeys idempotencyKeys;
+
+    @Autowired
+    RetryPolicy retryPolicy;
+
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+    @Value("${bank.sharding.recovery-delay-ms:5000}")
+    private long recoveryDelayMs;
+
+    @Value("${bank.sharding.recovery-interval-ms:1000}")
+    private long recoveryIntervalMs;
+
+    private final LongAdder transfers = new LongAdder();
+
+    private final LongAdder recovered = new LongAdder();
+
+    private final ScheduledExecutorService recovery = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "cross-shard-recovery");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    //the first run completes what a previous process left behind
+    @Override
+    public void afterSingletonsInstantiated() {
+        recovery.scheduleWithFixedDelay(() -> {
+            try {
+                recover();
+            } catch (DataAccessException exception) {
+                //a shard that does not answer is scanned again on the next run
+            }
+        }, 0, recoveryIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        recovery.shutdownNow();
+        recovery.awaitTermination(1, TimeUnit.MINUTES);
+    }
+
+    //Debit on the source shard and credit on the target shard, a ConcurrencyFailureException of the debit is the caller's to retry.
+    //The idempotency key is recorded with the debit, so it lives on the source shard.
+    public String transfer(Integer from, Integer to, long amount, String idempotencyKey, int requestHash) {
+        boolean toExists = to != null && accountShards.call(accountShards.shardOf(to), () -> accountRepository.existsById(to));
+        TransferReservation reservation = new TransferReservation(UUID.randomUUID().toString(), from, to, amount, System.currentTimeMillis());
+        String status = accountShards.call(accountShards.shardOf(from), () -> transactionTemplate.execute(transaction -> {
+            String result = debit(accountRepository.findLockedByAccountId(from), toExists, reservation);
+            if (idempotencyKey != null)
+                idempotencyKeys.record(idempotencyKey, requestHash, result);
+            return result;
+        }));
+        if (status.equals("SUCCESS")) {
+            transfers.increment();
+            complete(reservation);
+        }
+        return status;
+    }
+
+    private String debit(Account fromAccount, boolean toExists, TransferReservation reservation) {
+        if (fromAccount == null || !toExists)
+            return "ID MISMATCH";
+        if (reservation.getAmount() > fromAccount.getBalance())
+            return "INSUFFICIENT FUNDS";
+        fromAccount.setBalance(fromAccount.getBalance() - reservation.getAmount());
+        accountRepository.save(fromAccount);
+        transferReservationRepository.save(reservation);
+        accountTransactionRepository.save(new AccountTransaction(reservation.getFromAccount(), reservation.getToAccount(),
+                -reservation.getAmount(), reservation.getCreatedAt()));
+        balanceCache.update(fromAccount);
+        balanceReadCoalescer.written(fromAccount.getAccountId());
+        return "SUCCESS";
+    }
+
+    //Credit the target account unless it already was, then drop the reservation, false leaves it to the recovery task
+    public boolean complete(TransferReservation reservation) {
+        try {
+            for (int attempt = 1; ; attempt++) {
+                try {
+                    accountShards.run(accountShards.shardOf(reservation.getToAccount()),
+                            () -> transactionTemplate.executeWithoutResult(transaction -> credit(reservation)));
+                    break;
+                } catch (ConcurrencyFailureException exception) {
+                    if (attempt >= retryPolicy.getMaxAttempts() || !retryPolicy.backoff(attempt))
+                        return false;
+                }
+            }
+            accountShards.run(accountShards.shardOf(reservation.getFromAccount()),
+                    () -> transferReservationRepository.deleteByTransferId(reservation.getTransferId()));
+            return true;
+        } catch (DataAccessException exception) {
+            return false;
+        }
+    }
+
+    private void credit(TransferReservation reservation) {
+        if (transferCreditRepository.existsById(reservation.getTransferId()))
+            return;
+        Account toAccount = accountRepository.findLockedByAccountId(reservation.getToAccount());
+        toAccount.setBalance(toAccount.getBalance() + reservation.getAmount());
+        accountRepository.save(toAccount);
+        transferCreditRepository.save(new TransferCredit(reservation.getTransferId(), reservation.getToAccount(),
+                reservation.getAmount(), reservation.getCreatedAt()));
+        accountTransactionRepository.save(new AccountTransaction(reservation.getToAccount(), reservation.getFromAccount(),
+                reservation.getAmount(), reservation.getCreatedAt()));
+        balanceCache.update(toAccount);
+        balanceReadCoalescer.written(toAccount.getAccountId());
+    }
+
+    //Complete the reservations of every shard older than recovery-delay-ms, returns how many were completed
+    public int recover() {
+        long before = System.currentTimeMillis() - recoveryDelayMs;
+        int completed = 0;
+        for (int shard = 0; shard < accountShards.count(); shard++) {
+            List<TransferReservation> pending = accountShards.call(shard,
+                    () -> transferReservationRepository.findByCreatedAtLessThanOrderByCreatedAt(before));
+            for (TransferReservation reservation : pending) {
+                if (complete(reservation))
+                    completed++;
+            }
+        }
+        recovered.add(completed);
+        return completed;
+    }
+
+    public ShardingStats getStats() {
+        long pending = accountShards.callOnEveryShard(transferReservationRepository::count).stream().mapToLong(Long::longValue).sum();
+        return new ShardingStats(accountShards.count(), transfers.sum(), pending, recovered.sum());
+    }
+}
@@ -0,0 +1,66 @@
+package com.casestudy.bank.sharding;
+
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+
+//Hands out connections of the shard AccountShards selected for the current thread, shard 0 when none was.
+//Connections are lazy like ReplicaRoutingDataSource, the shard is picked at the first statement.
+public class ShardRoutingDataSource extends LazyConnectionDataSourceProxy {
+
+    private static final ThreadLocal<Integer> SHARD = new ThreadLocal<>();
+
+    private final List<DataSource> shards;
+
+    public ShardRoutingDataSource(List<DataSource> shards) {
+        this.shards = shards;
+        setTargetDataSource(new Router());
+    }
+
+    public int getShardCount() {
+        return shards.size();
+    }
+
+    public static int currentShard() {
+        Integer shard = SHARD.get();
+        return shard == null ? 0 : shard;
+    }
+
+    //Select the shard for the current thread, returns the previous selection for restoreShard
+    static Integer enterShard(int shard) {
+        Integer previous = SHARD.get();
+        SHARD.set(shard);
+        return previous;
+    }
+
+    static void restoreShard(Integer previous) {
+        if (previous == null)
+            SHARD.remove();
+        else
+            SHARD.set(previous);
+    }
+
+    public void close() throws Exception {
+        for (DataSource shard : shards) {
+            if (shard instanceof AutoCloseable)
+                ((AutoCloseable) shard).close();
+        }
+    }
+
+    private class Router extends AbstractDataSource {
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            return shards.get(currentShard()).getConnection();
+        }
+
+        @Override
+        public Connection getConnection(String username, String password) throws SQLException {
+            return shards.get(currentShard()).getConnection(username, password);
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.casestudy.bank.sharding;
+
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.enhanced.Optimizer;
+import org.hibernate.id.enhanced.OptimizerFactory;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+import org.hibernate.internal.util.config.ConfigurationHelper;
+import org.hibernate.service.ServiceRegistry;
+import org.hibernate.type.Type;
+
+import java.io.Serializable;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+//The sequence generator of every entity when sharded: one in-memory block per shard, each drawn from that shard's own sequence,
+//so an id always belongs to the shard it is inserted on. A single shared block would hand ids of one shard to inserts on another.
+public class ShardSequenceGenerator extends SequenceStyleGenerator {
+
+    private final Map<Integer, Optimizer> optimizers = new ConcurrentHashMap<>();
+
+    private Supplier<Optimizer> newOptimizer;
+
+    //the same optimizer settings SequenceStyleGenerator derives for its single block
+    @Override
+    public void configure(Type type, Properties params, ServiceRegistry serviceRegistry) {
+        super.configure(type, params, serviceRegistry);
+        int incrementSize = getOptimizer().getIncrementSize();
+        String strategy = determineOptimizationStrategy(params, incrementSize);
+        Class<?> returnClass = type.getReturnedClass();
+        int initialValue = ConfigurationHelper.getInt(INITIAL_PARAM, params, -1);
+        newOptimizer = () -> OptimizerFactory.buildOptimizer(strategy, returnClass, incrementSize, initialValue);
+    }
+
+    //runs in the transaction of the insert, so the current shard is the one the row goes to
+    @Override
+    public Serializable generate(SharedSessionContractImplementor session, Object object) {
+        Optimizer optimizer = optimizers.computeIfAbsent(ShardRoutingDataSource.currentShard(), shard -> newOptimizer.get());
+        return optimizer.generate(getDatabaseStructure().buildCallback(session));
+    }
+}
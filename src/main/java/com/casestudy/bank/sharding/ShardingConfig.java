@@ -0,0 +1,65 @@
+package com.casestudy.bank.sharding;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+import org.hibernate.jpa.spi.IdentifierGeneratorStrategyProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+//Replaces the single spring.datasource pool with shard 0 at spring.datasource.url plus the shards listed in bank.sharding.urls
+@Configuration
+@ConditionalOnProperty(name = "bank.sharding.enabled", havingValue = "true")
+public class ShardingConfig {
+
+    //modes that keep all accounts in memory or pick connections themselves
+    private static final String[] UNSUPPORTED = {"bank.ledger.enabled", "bank.event-sourcing.enabled", "bank.datasource.replicas.enabled"};
+
+    @Bean(destroyMethod = "close")
+    public ShardRoutingDataSource shardRoutingDataSource(DataSourceProperties properties, Environment environment,
+                                                         @Value("${bank.sharding.urls:}") List<String> urls,
+                                                         @Value("${bank.sharding.username:${spring.datasource.username:}}") String username,
+                                                         @Value("${bank.sharding.password:${spring.datasource.password:}}") String password) {
+        for (String property : UNSUPPORTED) {
+            if (environment.getProperty(property, Boolean.class, false))
+                throw new IllegalStateException("bank.sharding.enabled cannot be combined with " + property);
+        }
+        if (!environment.getProperty("bank.hot-accounts.ids", "").isBlank())
+            throw new IllegalStateException("bank.sharding.enabled cannot be combined with bank.hot-accounts.ids");
+        //an entity manager held for the whole request would keep the connection of the first shard it touched
+        if (environment.getProperty("spring.jpa.open-in-view", Boolean.class, true))
+            throw new IllegalStateException("bank.sharding.enabled needs spring.jpa.open-in-view=false");
+
+        List<DataSource> shards = new ArrayList<>();
+        HikariDataSource home = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        home.setPoolName("shard-0");
+        shards.add(home);
+        for (String url : urls) {
+            if (url.isBlank())
+                continue;
+            HikariDataSource shard = DataSourceBuilder.create().type(HikariDataSource.class).driverClassName(properties.getDriverClassName())
+                    .url(url.trim()).username(username).password(password).build();
+            shard.setPoolName("shard-" + shards.size());
+            shards.add(shard);
+        }
+        return new ShardRoutingDataSource(shards);
+    }
+
+    //@SequenceGenerator ids are generated by ShardSequenceGenerator instead of hibernate's own
+    @Bean
+    public HibernatePropertiesCustomizer shardSequenceGenerator() {
+        IdentifierGeneratorStrategyProvider strategies = () -> Map.of("enhanced-sequence", ShardSequenceGenerator.class,
+                SequenceStyleGenerator.class.getName(), ShardSequenceGenerator.class);
+        return properties -> properties.put("hibernate.ejb.identifier_generator_strategy_provider", strategies);
+    }
+}
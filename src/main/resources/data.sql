@@ -1,6 +1,6 @@
-insert into account(account_id,account_type,balance) values(1,'SAVING',20000);
-insert into account(account_id,account_type,balance) values(2,'JOINT',28000);
-insert into account(account_id,account_type,balance) values(3,'CURRENT',200000);
+insert into account(account_id,account_type,balance,version) values(1,'SAVING',20000,0);
+insert into account(account_id,account_type,balance,version) values(2,'JOINT',28000,0);
+insert into account(account_id,account_type,balance,version) values(3,'CURRENT',200000,0);
 
 insert into customer(customer_id, first_name,last_name,email,account_id) values(1,'Sagar','Nath','sagarnath@example.com',1);
 insert into customer(customer_id, first_name,last_name,email,account_id) values(2,'Deepak','Nath','depaknath@example.com',2);
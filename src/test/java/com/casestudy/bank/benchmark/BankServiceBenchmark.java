@@ -0,0 +1,62 @@
+package com.casestudy.bank.benchmark;
+
+import com.casestudy.bank.service.BankService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+//BankService calls against an H2 database seeded with datasetSize accounts
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BankServiceBenchmark {
+
+    @Param({"100", "10000"})
+    int datasetSize;
+
+    private ConfigurableApplicationContext context;
+
+    private BankService bankService;
+
+    private int firstAccountId;
+
+    private final AtomicLong newAccounts = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start("servicebench" + datasetSize);
+        bankService = context.getBean(BankService.class);
+        firstAccountId = BenchmarkContext.seed(bankService, datasetSize);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public String transferFunds() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int from = firstAccountId + random.nextInt(datasetSize);
+        int to = firstAccountId + random.nextInt(datasetSize);
+        return bankService.transferFunds(from, to, 1);
+    }
+
+    @Benchmark
+    public Object addAccount() {
+        return bankService.addAccount(BenchmarkContext.newAccount("new" + newAccounts.incrementAndGet()));
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public Object getAllCustomers() {
+        return bankService.getAllCustomers();
+    }
+}
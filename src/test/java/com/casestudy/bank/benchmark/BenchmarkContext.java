@@ -0,0 +1,51 @@
+package com.casestudy.bank.benchmark;
+
+import com.casestudy.bank.BankApplication;
+import com.casestudy.bank.model.Account;
+import com.casestudy.bank.model.AccountType;
+import com.casestudy.bank.model.Customer;
+import com.casestudy.bank.money.Money;
+import com.casestudy.bank.service.BankService;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+//Boots the application against its own in-memory database and seeds it for a benchmark run
+final class BenchmarkContext {
+
+    private BenchmarkContext() {
+    }
+
+    //passed as command line arguments, builder default properties would lose to application.properties
+    static ConfigurableApplicationContext start(String name, String... properties) {
+        List<String> args = new ArrayList<>(Arrays.asList(
+                "--spring.datasource.url=jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1",
+                "--spring.jpa.show-sql=false",
+                "--spring.main.banner-mode=off",
+                "--server.port=0",
+                "--logging.level.root=WARN"));
+        for (String property : properties)
+            args.add("--" + property);
+        return new SpringApplicationBuilder(BankApplication.class).run(args.toArray(new String[0]));
+    }
+
+    //seeds accounts with one customer each, returns the first seeded account id
+    static int seed(BankService bankService, int accounts) {
+        int first = -1;
+        for (int i = 0; i < accounts; i++) {
+            Account account = bankService.addAccount(newAccount("seed" + i));
+            if (first < 0)
+                first = account.getAccountId();
+        }
+        return first;
+    }
+
+    static Account newAccount(String name) {
+        Customer customer = new Customer(name, "Benchmark", name + "@example.com", null);
+        return new Account(AccountType.SAVING, Money.of(1_000_000), Collections.singletonList(customer));
+    }
+}
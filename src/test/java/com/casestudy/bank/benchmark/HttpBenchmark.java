@@ -0,0 +1,63 @@
+package com.casestudy.bank.benchmark;
+
+import com.casestudy.bank.service.BankService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+//Full in-process request path: DispatcherServlet, Jackson, BankController and BankService
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class HttpBenchmark {
+
+    @Param({"100", "10000"})
+    int datasetSize;
+
+    private ConfigurableApplicationContext context;
+
+    private MockMvc mockMvc;
+
+    private int firstAccountId;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start("httpbench" + datasetSize);
+        firstAccountId = BenchmarkContext.seed(context.getBean(BankService.class), datasetSize);
+        mockMvc = MockMvcBuilders.webAppContextSetup((WebApplicationContext) context).build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public int getBalance() throws Exception {
+        int accountId = firstAccountId + ThreadLocalRandom.current().nextInt(datasetSize);
+        return mockMvc.perform(get("/bank/balance/{accountId}", accountId)).andReturn().getResponse().getStatus();
+    }
+
+    @Benchmark
+    public int transfer() throws Exception {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int from = firstAccountId + random.nextInt(datasetSize);
+        int to = firstAccountId + random.nextInt(datasetSize);
+        return mockMvc.perform(post("/bank/transfer")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"fromAccount\":" + from + ",\"toAccount\":" + to + ",\"amount\":0.01}"))
+                .andReturn().getResponse().getStatus();
+    }
+}
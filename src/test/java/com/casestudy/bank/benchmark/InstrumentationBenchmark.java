@@ -0,0 +1,68 @@
+package com.casestudy.bank.benchmark;
+
+import com.casestudy.bank.metrics.LatencyRecorder;
+import com.casestudy.bank.metrics.LatencyTimer;
+import com.casestudy.bank.metrics.StatementCounter;
+import com.casestudy.bank.service.BankService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+//Cost of the latency instrumentation on the transfer path, compare the two metricsEnabled results
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class InstrumentationBenchmark {
+
+    private static final int ACCOUNTS = 1000;
+
+    @Param({"false", "true"})
+    boolean metricsEnabled;
+
+    private ConfigurableApplicationContext context;
+
+    private BankService bankService;
+
+    private int firstAccountId;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start("instrumentationbench" + metricsEnabled, "bank.metrics.enabled=" + metricsEnabled);
+        bankService = context.getBean(BankService.class);
+        firstAccountId = BenchmarkContext.seed(bankService, ACCOUNTS);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public String transferFunds() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int from = firstAccountId + random.nextInt(ACCOUNTS);
+        int to = firstAccountId + random.nextInt(ACCOUNTS);
+        return bankService.transferFunds(from, to, 1);
+    }
+
+    //what one instrumented call adds on top of the method itself
+    @State(Scope.Thread)
+    public static class TimerState {
+
+        LatencyTimer timer = new LatencyRecorder().timer("benchmark");
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public void recordCall(TimerState state) {
+        long statements = StatementCounter.current();
+        long start = System.nanoTime();
+        state.timer.record(System.nanoTime() - start, StatementCounter.current() - statements);
+    }
+}
@@ -0,0 +1,53 @@
+package com.casestudy.bank.benchmark;
+
+import com.casestudy.bank.model.Account;
+import com.casestudy.bank.model.AccountType;
+import com.casestudy.bank.model.Customer;
+import com.casestudy.bank.money.Money;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+//Jackson serialization of the Account <-> Customer graphs returned by the controller
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JsonBenchmark {
+
+    @Param({"1", "1000"})
+    int datasetSize;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private Account account;
+
+    private List<Customer> customers;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        account = new Account(1, AccountType.JOINT, Money.of(20000), new ArrayList<>());
+        customers = new ArrayList<>();
+        for (int i = 0; i < datasetSize; i++) {
+            Customer customer = new Customer(i, "First" + i, "Last" + i, "customer" + i + "@example.com", account);
+            account.getCustomers().add(customer);
+            customers.add(customer);
+        }
+    }
+
+    @Benchmark
+    public String serializeAccount() throws JsonProcessingException {
+        return objectMapper.writeValueAsString(account);
+    }
+
+    @Benchmark
+    public String serializeCustomers() throws JsonProcessingException {
+        return objectMapper.writeValueAsString(customers);
+    }
+}
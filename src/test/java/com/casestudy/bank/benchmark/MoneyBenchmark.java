@@ -0,0 +1,53 @@
+package com.casestudy.bank.benchmark;
+
+import com.casestudy.bank.money.Money;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+//Transfer arithmetic with the old boxed Double balances against long minor units
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MoneyBenchmark {
+
+    private Double doubleFromBalance;
+    private Double doubleToBalance;
+    private Double doubleAmount;
+
+    private long fromBalance;
+    private long toBalance;
+    private long amount;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        doubleFromBalance = 1_000_000_000.0;
+        doubleToBalance = 0.0;
+        doubleAmount = 0.1;
+        fromBalance = Money.of(1_000_000_000);
+        toBalance = 0;
+        amount = Money.fromDecimal(new BigDecimal("0.10"));
+    }
+
+    @Benchmark
+    public Double doubleTransfer() {
+        if (doubleAmount <= doubleFromBalance) {
+            doubleFromBalance = doubleFromBalance - doubleAmount;
+            doubleToBalance = doubleToBalance + doubleAmount;
+        }
+        return doubleToBalance;
+    }
+
+    @Benchmark
+    public long fixedPointTransfer() {
+        if (amount <= fromBalance) {
+            fromBalance = fromBalance - amount;
+            toBalance = toBalance + amount;
+        }
+        return toBalance;
+    }
+}
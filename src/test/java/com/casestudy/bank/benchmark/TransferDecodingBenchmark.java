@@ -0,0 +1,56 @@
+package com.casestudy.bank.benchmark;
+
+import com.casestudy.bank.controller.TransferFrames;
+import com.casestudy.bank.dto.FundTransfer;
+import com.casestudy.bank.money.Money;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+//Request body decoding of JSON transfers against binary frames, run with -prof gc to compare allocation per request
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TransferDecodingBenchmark {
+
+    private static final TypeReference<List<FundTransfer>> TRANSFER_LIST = new TypeReference<>() {
+    };
+
+    @Param({"1", "1000"})
+    int batchSize;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private byte[] json;
+
+    private byte[] frames;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        List<FundTransfer> transfers = new ArrayList<>();
+        for (int i = 0; i < batchSize; i++)
+            transfers.add(new FundTransfer(1000 + i, 2000 + i, Money.of(i) + 25));
+        json = objectMapper.writeValueAsBytes(transfers);
+        frames = TransferFrames.encode(transfers);
+    }
+
+    @Benchmark
+    public List<FundTransfer> decodeJson() throws IOException {
+        return objectMapper.readValue(json, TRANSFER_LIST);
+    }
+
+    //what POST /bank/transfers/batch does with frames, fixed offset reads straight into the transfers
+    @Benchmark
+    public List<FundTransfer> decodeFrames() {
+        return TransferFrames.toTransfers(ByteBuffer.wrap(frames));
+    }
+}
@@ -0,0 +1,130 @@
+package com.casestudy.bank.cache;
+
+import com.casestudy.bank.dto.AccountBalance;
+import com.casestudy.bank.dto.CacheStats;
+import com.casestudy.bank.model.Account;
+import com.casestudy.bank.model.AccountType;
+import com.casestudy.bank.money.Money;
+import com.casestudy.bank.repository.AccountRepository;
+import com.casestudy.bank.repository.CustomerRepository;
+import com.casestudy.bank.service.BankService;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.mockito.Mockito.*;
+
+@SpringBootTest(properties = {"bank.cache.balance.enabled=true", "bank.cache.balance.max-size=2", "bank.cache.balance.ttl-ms=200"})
+class BalanceCacheTest {
+
+    @Autowired
+    BankService bankService;
+
+    @Autowired
+    BalanceCache balanceCache;
+
+    @MockBean
+    AccountRepository accountRepository;
+
+    @MockBean
+    CustomerRepository customerRepository;
+
+    @Test
+    @DisplayName("test getBalanceOf is served from the cache after the first load")
+    void testReadThrough() {
+        //Setup our mock repository
+        doReturn(Optional.of(new AccountBalance(10, AccountType.SAVING, Money.of(500)))).when(accountRepository).findBalanceByAccountId(10);
+        CacheStats before = balanceCache.getStats();
+
+        //Execute the service calls
+        bankService.getBalanceOf(10);
+        Optional<AccountBalance> returnedBalance = bankService.getBalanceOf(10);
+
+        //Assert the response
+        Assertions.assertEquals(Money.of(500), returnedBalance.get().getBalance(), "Cached balance should be returned");
+        verify(accountRepository, times(1)).findBalanceByAccountId(10);
+        CacheStats after = balanceCache.getStats();
+        Assertions.assertEquals(1, after.getHits() - before.getHits(), "Second read should be a hit");
+        Assertions.assertEquals(1, after.getMisses() - before.getMisses(), "First read should be a miss");
+    }
+
+    @Test
+    @DisplayName("test transferFunds refreshes cached balances")
+    void testTransferUpdatesCache() {
+        //Setup our mock repository
+        doReturn(Optional.of(new AccountBalance(20, AccountType.JOINT, Money.of(500)))).when(accountRepository).findBalanceByAccountId(20);
+        doReturn(List.of(new Account(20, AccountType.JOINT, Money.of(500), null), new Account(21, AccountType.CURRENT, Money.of(200), null)))
+                .when(accountRepository).findByAccountIdIn(any());
+        bankService.getBalanceOf(20);
+
+        //Execute the service calls
+        String status = bankService.transferFunds(20, 21, Money.of(300));
+        Optional<AccountBalance> returnedBalance = bankService.getBalanceOf(20);
+
+        //Assert the response
+        Assertions.assertEquals("SUCCESS", status, "Transfer should happen");
+        Assertions.assertEquals(Money.of(200), returnedBalance.get().getBalance(), "Writer should read its own write");
+        verify(accountRepository, times(1)).findBalanceByAccountId(20);
+    }
+
+    @Test
+    @DisplayName("test entries are evicted by size and ttl")
+    void testEviction() throws Exception {
+        //Setup our mock repository
+        for (int accountId = 30; accountId < 33; accountId++)
+            doReturn(Optional.of(new AccountBalance(accountId, AccountType.SAVING, Money.of(1)))).when(accountRepository).findBalanceByAccountId(accountId);
+        CacheStats before = balanceCache.getStats();
+
+        //Execute the service calls beyond max-size
+        bankService.getBalanceOf(30);
+        bankService.getBalanceOf(31);
+        bankService.getBalanceOf(32);
+
+        //Assert the size eviction
+        Assertions.assertEquals(2, balanceCache.getStats().getSize(), "Cache should not grow beyond max-size");
+        Assertions.assertTrue(balanceCache.getStats().getEvictions() > before.getEvictions(), "Eldest entry should be evicted");
+
+        //Assert the ttl eviction
+        Thread.sleep(250);
+        bankService.getBalanceOf(32);
+        verify(accountRepository, times(2)).findBalanceByAccountId(32);
+    }
+
+    @Test
+    @DisplayName("test an older version committed late does not replace a newer one")
+    void testOutOfOrderCommits() {
+        //Setup two snapshots of one account, the newer one stored first
+        Account newer = new Account(50, AccountType.SAVING, Money.of(300), null);
+        newer.setVersion(3L);
+        Account older = new Account(50, AccountType.SAVING, Money.of(100), null);
+        older.setVersion(2L);
+
+        //Execute the updates out of order
+        balanceCache.update(newer);
+        balanceCache.update(older);
+
+        //Assert the newer balance is served
+        Assertions.assertEquals(Money.of(300), bankService.getBalanceOf(50).get().getBalance(), "Newer version should be kept");
+        verify(accountRepository, never()).findBalanceByAccountId(50);
+    }
+
+    @Test
+    @DisplayName("test a load racing with a write is not cached")
+    void testRacedLoadNotCached() {
+        //Execute a load that sees a concurrent write
+        balanceCache.get(40, () -> {
+            balanceCache.invalidate(40);
+            return Optional.of(new AccountBalance(40, AccountType.SAVING, Money.of(1)));
+        });
+        doReturn(Optional.of(new AccountBalance(40, AccountType.SAVING, Money.of(2)))).when(accountRepository).findBalanceByAccountId(40);
+
+        //Assert the next read goes to the repository
+        Assertions.assertEquals(Money.of(2), bankService.getBalanceOf(40).get().getBalance(), "Raced load should not be served");
+    }
+}
@@ -0,0 +1,138 @@
+package com.casestudy.bank.coalescing;
+
+import com.casestudy.bank.dto.AccountBalance;
+import com.casestudy.bank.dto.CoalescingStats;
+import com.casestudy.bank.model.AccountType;
+import com.casestudy.bank.money.Money;
+import com.casestudy.bank.repository.AccountRepository;
+import com.casestudy.bank.repository.CustomerRepository;
+import com.casestudy.bank.service.BankService;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.mockito.Mockito.*;
+
+@SpringBootTest(properties = {"bank.balance.coalescing.enabled=true", "bank.balance.coalescing.max-wait-ms=10000"})
+class BalanceReadCoalescerTest {
+
+    private static final int READERS = 8;
+
+    @Autowired
+    BankService bankService;
+
+    @Autowired
+    BalanceReadCoalescer balanceReadCoalescer;
+
+    @MockBean
+    AccountRepository accountRepository;
+
+    @MockBean
+    CustomerRepository customerRepository;
+
+    @Test
+    @DisplayName("test concurrent getBalanceOf calls for one account share one query")
+    void testConcurrentReadsShareOneQuery() throws Exception {
+        //Setup a query that blocks until every reader is waiting
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            release.await();
+            return Optional.of(new AccountBalance(10, AccountType.SAVING, Money.of(500)));
+        }).when(accountRepository).findBalanceByAccountId(10);
+        //a first read through the proxies, so no reader later blocks on anything but the query
+        bankService.getBalanceOf(11);
+        CoalescingStats before = balanceReadCoalescer.getStats();
+
+        //Execute the reads
+        ExecutorService executor = Executors.newFixedThreadPool(READERS);
+        List<Thread> readers = new ArrayList<>();
+        List<Future<Optional<AccountBalance>>> results = new ArrayList<>();
+        try {
+            for (int i = 0; i < READERS; i++) {
+                results.add(executor.submit(() -> {
+                    synchronized (readers) {
+                        readers.add(Thread.currentThread());
+                    }
+                    return bankService.getBalanceOf(10);
+                }));
+            }
+            awaitWaiting(readers);
+            release.countDown();
+
+            //Assert one query served every read, each with its own copy
+            List<AccountBalance> balances = new ArrayList<>();
+            for (Future<Optional<AccountBalance>> result : results)
+                balances.add(result.get().get());
+            verify(accountRepository, times(1)).findBalanceByAccountId(10);
+            for (AccountBalance balance : balances)
+                Assertions.assertEquals(Money.of(500), balance.getBalance(), "Every reader should get the balance");
+            Assertions.assertNotSame(balances.get(0), balances.get(1), "Readers should not share an instance");
+            CoalescingStats after = balanceReadCoalescer.getStats();
+            Assertions.assertEquals(1, after.getQueries() - before.getQueries(), "Only the first read should query");
+            Assertions.assertEquals(READERS - 1, after.getCoalesced() - before.getCoalesced(), "Other reads should be coalesced");
+            Assertions.assertEquals(0, after.getInFlight(), "No query should be left in flight");
+        } finally {
+            release.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    @DisplayName("test a read after a write does not join the query started before it")
+    void testWriteDetachesQueryInFlight() throws Exception {
+        //Setup a first query that blocks, later ones answer right away
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger calls = new AtomicInteger();
+        doAnswer(invocation -> {
+            if (calls.incrementAndGet() == 1) {
+                release.await();
+                return Optional.of(new AccountBalance(20, AccountType.SAVING, Money.of(500)));
+            }
+            return Optional.of(new AccountBalance(20, AccountType.SAVING, Money.of(400)));
+        }).when(accountRepository).findBalanceByAccountId(20);
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Optional<AccountBalance>> stale = executor.submit(() -> bankService.getBalanceOf(20));
+            while (calls.get() == 0)
+                Thread.sleep(1);
+
+            //Execute a write then a read
+            balanceReadCoalescer.written(20);
+            Optional<AccountBalance> returnedBalance = bankService.getBalanceOf(20);
+
+            //Assert the read queried again
+            Assertions.assertEquals(Money.of(400), returnedBalance.get().getBalance(), "Read after the write should see it");
+            release.countDown();
+            Assertions.assertEquals(Money.of(500), stale.get().get().getBalance(), "Read before the write keeps its result");
+            verify(accountRepository, times(2)).findBalanceByAccountId(20);
+        } finally {
+            release.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    //every reader blocked, the first on the query and the others on its result
+    private static void awaitWaiting(List<Thread> readers) throws InterruptedException {
+        while (true) {
+            synchronized (readers) {
+                if (readers.size() == READERS && readers.stream().allMatch(thread ->
+                        thread.getState() == Thread.State.WAITING || thread.getState() == Thread.State.TIMED_WAITING))
+                    return;
+            }
+            Thread.sleep(1);
+        }
+    }
+}
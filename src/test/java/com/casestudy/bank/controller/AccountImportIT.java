@@ -0,0 +1,129 @@
+package com.casestudy.bank.controller;
+
+import com.casestudy.bank.customer.EmailIndex;
+import com.casestudy.bank.repository.CustomerRepository;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.Arrays;
+
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {"spring.datasource.url=jdbc:h2:mem:importdb;DB_CLOSE_DELAY=-1",
+        "spring.jpa.properties.hibernate.generate_statistics=true", "bank.accounts.bulk.chunk-size=100"})
+@AutoConfigureMockMvc
+public class AccountImportIT {
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @Autowired
+    CustomerRepository customerRepository;
+
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    EmailIndex emailIndex;
+
+    @Test
+    @DisplayName("POST /bank/accounts/bulk - NDJSON in JDBC batches")
+    void testImportNdjson() throws Exception {
+        //Setup an upload of 250 accounts
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < 250; i++)
+            body.append("{\"accountType\":\"SAVING\",\"balance\":10.50,\"customers\":[{\"firstName\":\"Bulk\",\"lastName\":\"Json\",\"email\":\"Json")
+                    .append(i).append("@example.com\"}]}\n");
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        //Execute the POST request
+        mockMvc.perform(post("/bank/accounts/bulk")
+                .contentType(BankController.APPLICATION_NDJSON_VALUE)
+                .content(body.toString()))
+                //Validate the response code and content
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.accounts", is(250)))
+                .andExpect(jsonPath("$.customers", is(250)))
+                .andExpect(jsonPath("$.rejected", is(0)));
+
+        //Assert the inserts were batched and emails stored lower cased
+        Assertions.assertEquals(500, statistics.getEntityInsertCount(), "Every account and customer should be inserted");
+        Assertions.assertTrue(statistics.getPrepareStatementCount() < 50, "Inserts should be batched, prepared " + statistics.getPrepareStatementCount());
+        Assertions.assertEquals(1, customerRepository.findEmailsIn(Arrays.asList("json7@example.com")).size(), "Email should be lower cased");
+    }
+
+    @Test
+    @DisplayName("POST /bank/accounts/bulk - CSV joint accounts and rejected rows")
+    void testImportCsv() throws Exception {
+        //Setup an upload with a joint account, a joint account with one customer, a bad balance and a taken email
+        String body = "accountRef,accountType,balance,firstName,lastName,email\n"
+                + "a1,JOINT,100.00,Ann,Csv,ann.csv@example.com\n"
+                + "a1,JOINT,100.00,Bob,Csv,bob.csv@example.com\n"
+                + "a2,JOINT,5.00,Cid,Csv,cid.csv@example.com\n"
+                + "a3,CURRENT,abc,Dan,Csv,dan.csv@example.com\n"
+                + "a4,SAVING,1.00,Eve,Csv,sagarnath@example.com\n"
+                + "a5,CURRENT,0.01,Fay,Csv,fay.csv@example.com\n";
+
+        //Execute the POST request
+        mockMvc.perform(post("/bank/accounts/bulk")
+                .contentType(BankController.TEXT_CSV_VALUE)
+                .content(body))
+                //Validate the response code and content
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.accounts", is(2)))
+                .andExpect(jsonPath("$.customers", is(3)))
+                .andExpect(jsonPath("$.rejected", is(3)))
+                .andExpect(jsonPath("$.errors", hasSize(3)))
+                .andExpect(jsonPath("$.errors[0].line", is(4)))
+                .andExpect(jsonPath("$.errors[1].line", is(5)))
+                .andExpect(jsonPath("$.errors[2].line", is(6)))
+                .andExpect(jsonPath("$.errors[2].reason", is("Email already registered: sagarnath@example.com")));
+    }
+
+    @Test
+    @DisplayName("POST /bank/accounts/bulk - emails claimed by an insert in flight are refused")
+    void testImportReservedEmail() throws Exception {
+        //Setup an email claimed by an addAccount that has not committed yet, possibly on another shard
+        Assertions.assertTrue(emailIndex.reserve("held.json@example.com"), "Email should be free");
+
+        //Execute the POST request
+        mockMvc.perform(post("/bank/accounts/bulk")
+                .contentType(BankController.APPLICATION_NDJSON_VALUE)
+                .content("{\"accountType\":\"SAVING\",\"balance\":1.00,\"customers\":[{\"firstName\":\"Held\",\"lastName\":\"Json\",\"email\":\"held.json@example.com\"}]}\n"
+                        + "{\"accountType\":\"SAVING\",\"balance\":1.00,\"customers\":[{\"firstName\":\"Free\",\"lastName\":\"Json\",\"email\":\"free.json@example.com\"}]}\n"))
+                //Validate the response code and content
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.accounts", is(1)))
+                .andExpect(jsonPath("$.rejected", is(1)))
+                .andExpect(jsonPath("$.errors[0].reason", is("Email already registered: held.json@example.com")));
+
+        //Assert the claim of the other insert is untouched and the imported email is registered
+        Assertions.assertFalse(emailIndex.reserve("held.json@example.com"), "Claim of the other insert should be kept");
+        Assertions.assertTrue(emailIndex.find("free.json@example.com").isPresent(), "Imported email should be registered after commit");
+        emailIndex.release("held.json@example.com");
+    }
+
+    @Test
+    @DisplayName("POST /bank/accounts/bulk - CSV without header")
+    void testImportCsvWithoutHeader() throws Exception {
+        //Execute the POST request
+        mockMvc.perform(post("/bank/accounts/bulk")
+                .contentType(BankController.TEXT_CSV_VALUE)
+                .content("a1,SAVING,1.00,Ann,Csv,ann@example.com\n"))
+                //Validate the response code
+                .andExpect(status().isBadRequest());
+    }
+}
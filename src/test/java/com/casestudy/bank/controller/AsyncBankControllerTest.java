@@ -0,0 +1,150 @@
+package com.casestudy.bank.controller;
+
+import com.casestudy.bank.dto.AccountBalance;
+import com.casestudy.bank.dto.FundTransfer;
+import com.casestudy.bank.model.AccountType;
+import com.casestudy.bank.model.Customer;
+import com.casestudy.bank.money.Money;
+import com.casestudy.bank.service.BankService;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.util.Collections;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static com.casestudy.bank.controller.BankControllerTest.asJsonString;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest(properties = {"bank.async.enabled=true", "bank.async.limit.transfer=1"})
+@AutoConfigureMockMvc
+class AsyncBankControllerTest {
+
+    @MockBean
+    BankService bankService;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    @DisplayName("GET /async/balance/1 success")
+    void testGetBalanceOf() throws Exception {
+        //setup our mocked service
+        doReturn(Optional.of(new AccountBalance(1, AccountType.SAVING, Money.of(200)))).when(bankService).getBalanceOf(1);
+
+        //Execute the GET request
+        MvcResult result = mockMvc.perform(get("/bank/async/balance/{accountId}", 1))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        //Validate the dispatched response
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.accountId", is(1)))
+                .andExpect(jsonPath("$.balance", is(200.0)));
+    }
+
+    @Test
+    @DisplayName("GET /async/balance/9 - Not Found")
+    void testGetBalanceOfNotFound() throws Exception {
+        //setup our mocked service
+        doReturn(Optional.empty()).when(bankService).getBalanceOf(9);
+
+        //Execute the GET request
+        MvcResult result = mockMvc.perform(get("/bank/async/balance/{accountId}", 9))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        //Validate the dispatched response
+        mockMvc.perform(asyncDispatch(result)).andExpect(status().isNotFound());
+    }
+
+    @Test
+    @DisplayName("POST /async/transfer over the limit - Service Unavailable")
+    void testTransferOverLimit() throws Exception {
+        //setup our mocked service to hold the first transfer
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            started.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return "SUCCESS";
+        }).when(bankService).transferFunds(anyInt(), anyInt(), anyLong());
+        String body = asJsonString(new FundTransfer(1, 2, Money.of(100)));
+
+        //Execute two POST requests while the first is in flight
+        MvcResult first = mockMvc.perform(post("/bank/async/transfer").contentType(MediaType.APPLICATION_JSON).content(body))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        started.await(5, TimeUnit.SECONDS);
+        MvcResult second = mockMvc.perform(post("/bank/async/transfer").contentType(MediaType.APPLICATION_JSON).content(body))
+                .andReturn();
+        release.countDown();
+
+        //Validate the response codes
+        mockMvc.perform(asyncDispatch(second)).andExpect(status().isServiceUnavailable());
+        mockMvc.perform(asyncDispatch(first)).andExpect(status().isOk());
+    }
+
+    @Test
+    @DisplayName("POST /async/transfer - binary frame")
+    void testTransferFundFrame() throws Exception {
+        //setup our mocked service
+        doReturn("SUCCESS").when(bankService).transferFunds(1, 2, Money.of(200));
+
+        //Execute the POST request
+        MvcResult result = mockMvc.perform(post("/bank/async/transfer")
+                .contentType(TransferFrames.APPLICATION_TRANSFER_FRAME_VALUE)
+                .content(TransferFrames.encode(Collections.singletonList(new FundTransfer(1, 2, Money.of(200))))))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        //Validate the dispatched response
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().string("SUCCESS"));
+    }
+
+    @Test
+    @DisplayName("GET /async/customers/stream")
+    void testStreamAllCustomers() throws Exception {
+        //setup our mocked service
+        doAnswer(invocation -> {
+            Consumer<Customer> consumer = invocation.getArgument(0);
+            consumer.accept(new Customer("Ann", "Async", "ann.async@example.com", null));
+            consumer.accept(new Customer("Bob", "Async", "bob.async@example.com", null));
+            return null;
+        }).when(bankService).streamAllCustomers(any());
+
+        //Execute the GET request, the headers come from the bank executor and the body from the streaming executor
+        MvcResult result = mockMvc.perform(get("/bank/async/customers/stream"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        MvcResult streaming = mockMvc.perform(asyncDispatch(result))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        streaming.getAsyncResult();
+
+        //Validate the dispatched response
+        String body = mockMvc.perform(asyncDispatch(streaming))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(BankController.APPLICATION_NDJSON_VALUE))
+                .andReturn().getResponse().getContentAsString();
+        Assertions.assertEquals(2, body.split("\n").length, "Every customer should be streamed");
+    }
+}
@@ -4,6 +4,7 @@ import com.casestudy.bank.BankApplication;
 import com.casestudy.bank.dto.FundTransfer;
 import com.casestudy.bank.model.AccountType;
 import com.casestudy.bank.model.Customer;
+import com.casestudy.bank.money.Money;
 import com.casestudy.bank.service.BankService;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.Assertions;
@@ -59,6 +60,58 @@ public class BankControllerIT {
                 .andExpect(jsonPath("$[0].account.balance", is(20000.0))).andReturn();
     }
 
+    @Test
+    @DisplayName("GET /customers/page")
+    void testGetCustomersPage() throws Exception {
+        //Execute the GET request for the first page
+        mockMvc.perform(get("/bank/customers/page").param("size", "3"))
+                //Validate the response code and content type
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                //validate the returned fields
+                .andExpect(jsonPath("$.customers", hasSize(3)))
+                .andExpect(jsonPath("$.customers[0].customerId", is(1)))
+                .andExpect(jsonPath("$.customers[2].customerId", is(3)))
+                .andExpect(jsonPath("$.nextCursor", is(3)));
+
+        //Execute the GET request for the last page
+        mockMvc.perform(get("/bank/customers/page").param("after", "3").param("size", "3"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.customers", hasSize(1)))
+                .andExpect(jsonPath("$.customers[0].customerId", is(4)))
+                .andExpect(jsonPath("$.customers[0].account.accountId", is(3)))
+                .andExpect(jsonPath("$.nextCursor").doesNotExist());
+    }
+
+    @Test
+    @DisplayName("GET /customers/page - Bad Request")
+    void testGetCustomersPageBadSize() throws Exception {
+        mockMvc.perform(get("/bank/customers/page").param("size", "0"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @DisplayName("GET /customers/stream")
+    void testStreamAllCustomers() throws Exception {
+        //Execute the GET request, the body is written asynchronously
+        MvcResult mvcResult = mockMvc.perform(get("/bank/customers/stream"))
+                .andExpect(request().asyncStarted()).andReturn();
+        mvcResult.getAsyncResult();
+        String body = mockMvc.perform(asyncDispatch(mvcResult))
+                //Validate the response code and content type
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(BankController.APPLICATION_NDJSON_VALUE))
+                .andReturn().getResponse().getContentAsString();
+
+        //validate one customer per line in id order
+        String[] lines = body.split("\n");
+        Assertions.assertEquals(4, lines.length, "4 Customers should be streamed");
+        for (int i = 0; i < lines.length; i++) {
+            Customer customer = objectMapper.readValue(lines[i], Customer.class);
+            Assertions.assertEquals(i + 1, customer.getCustomerId(), "Customers should be streamed in id order");
+        }
+    }
+
     @Test
     @DisplayName("GET /customer/1 ")
     void testGetOneCustomer() throws Exception {
@@ -123,7 +176,7 @@ public class BankControllerIT {
     @DisplayName("POST /bank/transfer - SUCCESS")
     void testTransferFundSuccess() throws Exception {
         //Setup POST data
-        FundTransfer fundTransfer = new FundTransfer(3, 2, 200.0);
+        FundTransfer fundTransfer = new FundTransfer(3, 2, Money.of(200));
 
         //Execute the POST request
         MvcResult mvcResult = mockMvc.perform(post("/bank/transfer")
@@ -0,0 +1,116 @@
+package com.casestudy.bank.controller;
+
+import com.casestudy.bank.dto.FundTransfer;
+import com.casestudy.bank.model.Account;
+import com.casestudy.bank.model.AccountType;
+import com.casestudy.bank.model.Customer;
+import com.casestudy.bank.money.Money;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.Arrays;
+
+import static com.casestudy.bank.controller.BankControllerTest.asJsonString;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+//Guards the fetch plan of each endpoint by counting the SQL statements a request prepares
+@SpringBootTest(properties = {"spring.datasource.url=jdbc:h2:mem:querycountdb;DB_CLOSE_DELAY=-1",
+        "spring.jpa.properties.hibernate.generate_statistics=true"})
+@AutoConfigureMockMvc
+public class BankControllerQueryCountIT {
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    @DisplayName("GET /bank/balance/2 - one select")
+    void testGetBalanceOf() throws Exception {
+        mockMvc.perform(get("/bank/balance/{accountId}", 2)).andExpect(status().isOk());
+        Assertions.assertEquals(1, statistics.getPrepareStatementCount(), "Balance should be a single projection select");
+    }
+
+    @Test
+    @DisplayName("GET /bank/customer/2 - one select")
+    void testGetOneCustomer() throws Exception {
+        mockMvc.perform(get("/bank/customer/{customerId}", 2)).andExpect(status().isOk());
+        Assertions.assertEquals(1, statistics.getPrepareStatementCount(), "Customer and account should be joined");
+    }
+
+    @Test
+    @DisplayName("GET /bank/customer?email= - one select by id")
+    void testGetCustomerByEmail() throws Exception {
+        mockMvc.perform(get("/bank/customer").param("email", "SagarNath@example.com")).andExpect(status().isOk());
+        Assertions.assertEquals(1, statistics.getPrepareStatementCount(), "Email should be resolved to an id in memory");
+    }
+
+    @Test
+    @DisplayName("GET /bank/customer?email= unknown - no select")
+    void testGetCustomerByUnknownEmail() throws Exception {
+        mockMvc.perform(get("/bank/customer").param("email", "nobody@example.com")).andExpect(status().isNotFound());
+        Assertions.assertEquals(0, statistics.getPrepareStatementCount(), "An unknown email should be answered from memory");
+    }
+
+    @Test
+    @DisplayName("POST /bank/account with a registered email - no statement")
+    void testAddAccountWithRegisteredEmail() throws Exception {
+        Account account = new Account(AccountType.SAVING, Money.of(10), Arrays.asList(new Customer("Sagar", "Nath", "SAGARNATH@example.com", null)));
+        mockMvc.perform(post("/bank/account")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(asJsonString(account)))
+                .andExpect(status().isBadRequest());
+        Assertions.assertEquals(0, statistics.getPrepareStatementCount(), "A taken email should be refused before the insert");
+    }
+
+    @Test
+    @DisplayName("GET /bank/customers - one select")
+    void testGetAllCustomers() throws Exception {
+        mockMvc.perform(get("/bank/customers")).andExpect(status().isOk());
+        Assertions.assertEquals(1, statistics.getPrepareStatementCount(), "Customers should not trigger a select per account");
+    }
+
+    @Test
+    @DisplayName("GET /bank/customers/page - one select")
+    void testGetCustomersPage() throws Exception {
+        mockMvc.perform(get("/bank/customers/page").param("size", "10")).andExpect(status().isOk());
+        Assertions.assertEquals(1, statistics.getPrepareStatementCount(), "A page should not trigger a select per account");
+    }
+
+    @Test
+    @DisplayName("POST /bank/transfer - one select, one update batch and one history insert batch")
+    void testTransferFund() throws Exception {
+        //the first transfer also draws a block of history ids from the sequence
+        mockMvc.perform(post("/bank/transfer")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(asJsonString(new FundTransfer(3, 2, Money.of(1)))))
+                .andExpect(status().isOk());
+        statistics.clear();
+        mockMvc.perform(post("/bank/transfer")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(asJsonString(new FundTransfer(3, 2, Money.of(1)))))
+                .andExpect(status().isOk());
+        Assertions.assertEquals(3, statistics.getPrepareStatementCount(), "Transfer should not load customers or merge accounts");
+    }
+}
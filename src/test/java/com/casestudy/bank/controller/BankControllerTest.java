@@ -1,9 +1,12 @@
 package com.casestudy.bank.controller;
 
+import com.casestudy.bank.dto.AccountBalance;
 import com.casestudy.bank.dto.FundTransfer;
+import com.casestudy.bank.dto.TransferResult;
 import com.casestudy.bank.model.Account;
 import com.casestudy.bank.model.AccountType;
 import com.casestudy.bank.model.Customer;
+import com.casestudy.bank.money.Money;
 import com.casestudy.bank.service.BankService;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.DisplayName;
@@ -17,12 +20,14 @@ import org.springframework.test.web.servlet.MockMvc;
 
 import java.nio.charset.Charset;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Optional;
 
 import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.Matchers.is;
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -46,7 +51,7 @@ class BankControllerTest {
     @DisplayName("GET /customers success")
     void testGetALLCustomer() throws Exception {
         //setup our mocked service
-        Account account = new Account(1, AccountType.SAVING, 200.0, null);
+        Account account = new Account(1, AccountType.SAVING, Money.of(200), null);
         Customer customer1 = new Customer(1, "Bhavana", "Nath", "bhavana.nath@example.com", account);
         Customer customer2 = new Customer(2, "Sagar", "Nath", "sagar.nath@example.com", account);
         doReturn(Arrays.asList(customer1, customer2)).when(bankService).getAllCustomers();
@@ -79,7 +84,7 @@ class BankControllerTest {
     @DisplayName("GET /customer/1 ")
     void testGetOneCustomer() throws Exception {
         //setup our mocked service
-        Account account = new Account(1, AccountType.SAVING, 200.0, null);
+        Account account = new Account(1, AccountType.SAVING, Money.of(200), null);
         Customer customer = new Customer(1, "Bhavana", "Nath", "bhavana.nath@example.com", account);
         doReturn((Optional.of(customer))).when(bankService).getCustomerById(1);
 
@@ -112,14 +117,42 @@ class BankControllerTest {
         verify(bankService).getCustomerById(1);
     }
 
+    @Test
+    @DisplayName("GET /bank/customer?email= - Found")
+    void testGetCustomerByEmail() throws Exception {
+        //setup our mocked service
+        Account account = new Account(1, AccountType.SAVING, Money.of(200), null);
+        Customer customer = new Customer(1, "Bhavana", "Nath", "bhavana.nath@example.com", account);
+        doReturn(Optional.of(customer)).when(bankService).getCustomerByEmail("Bhavana.Nath@example.com");
+
+        //Execute the GET Request
+        mockMvc.perform(get("/bank/customer").param("email", "Bhavana.Nath@example.com"))
+                //validate the response code and returned fields
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.customerId", is(1)))
+                .andExpect(jsonPath("$.email", is("bhavana.nath@example.com")));
+    }
+
+    @Test
+    @DisplayName("GET /bank/customer?email= - Not Found")
+    void testGetCustomerByEmailNotFound() throws Exception {
+        // Setup our mocked service
+        doReturn(Optional.empty()).when(bankService).getCustomerByEmail("nobody@example.com");
+
+        // Execute the GET request
+        mockMvc.perform(get("/bank/customer").param("email", "nobody@example.com"))
+                // Validate the response code
+                .andExpect(status().isNotFound());
+    }
+
     @Test
     @DisplayName("POST /bank/account - SUCCESS")
     void testAddAccount() throws Exception {
         // Setup our mocked service
         Customer customer1 = new Customer(1, "Bhavana", "Nath", "bhavana.nath@example.com", null);
         Customer customer2 = new Customer(2, "Sagar", "Nath", "sagar.nath@example.com", null);
-        Account accountToPost = new Account(1, AccountType.JOINT, 200.0, Arrays.asList(customer1, customer2));
-        Account accountToReturn = new Account(1, AccountType.JOINT, 200.0, Arrays.asList(customer1, customer2));
+        Account accountToPost = new Account(1, AccountType.JOINT, Money.of(200), Arrays.asList(customer1, customer2));
+        Account accountToReturn = new Account(1, AccountType.JOINT, Money.of(200), Arrays.asList(customer1, customer2));
         doReturn(accountToReturn).when(bankService).addAccount(any());
 
         // Execute the POST request
@@ -150,7 +183,7 @@ class BankControllerTest {
         // Setup our mocked service
         Customer customer1 = new Customer(1, "Bhavana", "Nath", "bhavana.nath@example.com", null);
         Customer customer2 = new Customer(2, "Sagar", "Nath", "sagar.nath@example.com", null);
-        Account accountToPost = new Account(1, AccountType.SAVING, 200.0, Arrays.asList(customer1, customer2));
+        Account accountToPost = new Account(1, AccountType.SAVING, Money.of(200), Arrays.asList(customer1, customer2));
         doReturn(null).when(bankService).addAccount(any());
 
         // Execute the POST request
@@ -224,8 +257,8 @@ class BankControllerTest {
     @DisplayName("GET /bank/balance/1 ")
     void testGetBalanceOf() throws Exception {
         //setup our mocked service
-        Account account = new Account(1, AccountType.SAVING, 200.0, null);
-        doReturn((Optional.of(account))).when(bankService).getBalanceOf(1);
+        AccountBalance balance = new AccountBalance(1, AccountType.SAVING, Money.of(200));
+        doReturn((Optional.of(balance))).when(bankService).getBalanceOf(1);
 
         //Execute the GET Request
         mockMvc.perform(get("/bank/balance/{accountId}", 1))
@@ -257,7 +290,7 @@ class BankControllerTest {
     void testTransferFundSuccess() throws Exception {
         //setup our mocked service
         String message = "SUCCESS";
-        FundTransfer fundTransfer = new FundTransfer(1, 2, 200.0);
+        FundTransfer fundTransfer = new FundTransfer(1, 2, Money.of(200));
         doReturn(message).when(bankService).transferFunds(fundTransfer.getFromAccount(), fundTransfer.getToAccount(), fundTransfer.getAmount());
 
         //Execute the POST request
@@ -269,7 +302,7 @@ class BankControllerTest {
                 .andExpect(content().contentType(APPLICATION_TEXT_UTF8))
                 //validate the result
                 .andExpect(content().string("SUCCESS"));
-        verify(bankService).transferFunds(anyInt(), anyInt(), anyDouble());
+        verify(bankService).transferFunds(anyInt(), anyInt(), anyLong());
     }
 
     @Test
@@ -277,7 +310,7 @@ class BankControllerTest {
     void testTransferFundNotFound() throws Exception {
         //setup our mocked service
         String message = "ID MISMATCH";
-        FundTransfer fundTransfer = new FundTransfer(1, 2, 200.0);
+        FundTransfer fundTransfer = new FundTransfer(1, 2, Money.of(200));
         doReturn(message).when(bankService).transferFunds(fundTransfer.getFromAccount(), fundTransfer.getToAccount(), fundTransfer.getAmount());
 
         //Execute the POST request
@@ -289,7 +322,141 @@ class BankControllerTest {
                 .andExpect(content().contentType(APPLICATION_TEXT_UTF8))
                 //validate the result
                 .andExpect(content().string("ID MISMATCH"));
-        verify(bankService).transferFunds(anyInt(), anyInt(), anyDouble());
+        verify(bankService).transferFunds(anyInt(), anyInt(), anyLong());
+    }
+
+    @Test
+    @DisplayName("POST /bank/transfer - Conflict after retries")
+    void testTransferFundConflict() throws Exception {
+        //setup our mocked service
+        FundTransfer fundTransfer = new FundTransfer(1, 2, Money.of(200));
+        doReturn("CONFLICT").when(bankService).transferFunds(fundTransfer.getFromAccount(), fundTransfer.getToAccount(), fundTransfer.getAmount());
+
+        //Execute the POST request
+        mockMvc.perform(post("/bank/transfer")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(asJsonString(fundTransfer)))
+                //Validate the response code and content
+                .andExpect(status().isConflict())
+                .andExpect(content().string("CONFLICT"));
+    }
+
+    @Test
+    @DisplayName("POST /bank/transfer - Idempotency key passed to the service")
+    void testTransferFundIdempotencyKey() throws Exception {
+        //setup our mocked service
+        FundTransfer fundTransfer = new FundTransfer(1, 2, Money.of(200), "order-42");
+        doReturn("SUCCESS").when(bankService).transferFunds(1, 2, Money.of(200), "order-42");
+
+        //Execute the POST request
+        mockMvc.perform(post("/bank/transfer")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(asJsonString(fundTransfer)))
+                //Validate the response code and content
+                .andExpect(status().isOk())
+                .andExpect(content().string("SUCCESS"));
+        verify(bankService, never()).transferFunds(anyInt(), anyInt(), anyLong());
+    }
+
+    @Test
+    @DisplayName("POST /bank/transfer - Idempotency key reused for another transfer")
+    void testTransferFundKeyReused() throws Exception {
+        //setup our mocked service
+        FundTransfer fundTransfer = new FundTransfer(1, 2, Money.of(300), "order-42");
+        doReturn("KEY REUSED").when(bankService).transferFunds(1, 2, Money.of(300), "order-42");
+
+        //Execute the POST request
+        mockMvc.perform(post("/bank/transfer")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(asJsonString(fundTransfer)))
+                //Validate the response code and content
+                .andExpect(status().isUnprocessableEntity())
+                .andExpect(content().string("KEY REUSED"));
+    }
+
+    @Test
+    @DisplayName("POST /bank/transfers/batch - SUCCESS")
+    void testTransferFundsBatch() throws Exception {
+        //setup our mocked service
+        FundTransfer transfer1 = new FundTransfer(1, 2, Money.of(200));
+        FundTransfer transfer2 = new FundTransfer(2, 3, Money.of(900));
+        doReturn(Arrays.asList(new TransferResult(1, 2, Money.of(200), "SUCCESS"), new TransferResult(2, 3, Money.of(900), "INSUFFICIENT FUNDS")))
+                .when(bankService).transferFundsBatch(Arrays.asList(transfer1, transfer2));
+
+        //Execute the POST request
+        mockMvc.perform(post("/bank/transfers/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(asJsonString(Arrays.asList(transfer1, transfer2))))
+                //Validate the response code and content
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                //validate the results
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("$[0].fromAccount", is(1)))
+                .andExpect(jsonPath("$[0].amount", is(200.0)))
+                .andExpect(jsonPath("$[0].status", is("SUCCESS")))
+                .andExpect(jsonPath("$[1].toAccount", is(3)))
+                .andExpect(jsonPath("$[1].status", is("INSUFFICIENT FUNDS")));
+        verify(bankService).transferFundsBatch(anyList());
+    }
+
+    @Test
+    @DisplayName("POST /bank/transfers/batch - Empty")
+    void testTransferFundsBatchEmpty() throws Exception {
+        //Execute the POST request
+        mockMvc.perform(post("/bank/transfers/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(asJsonString(Collections.emptyList())))
+                //Validate the response code
+                .andExpect(status().isBadRequest());
+        verify(bankService, never()).transferFundsBatch(anyList());
+    }
+
+    @Test
+    @DisplayName("POST /bank/transfer - binary frame")
+    void testTransferFundFrame() throws Exception {
+        //setup our mocked service
+        doReturn("INSUFFICIENT FUNDS").when(bankService).transferFunds(1, 2, Money.of(200));
+
+        //Execute the POST request
+        mockMvc.perform(post("/bank/transfer")
+                .contentType(TransferFrames.APPLICATION_TRANSFER_FRAME_VALUE)
+                .content(TransferFrames.encode(Collections.singletonList(new FundTransfer(1, 2, Money.of(200))))))
+                //Validate the response code and content
+                .andExpect(status().isConflict())
+                .andExpect(content().string("INSUFFICIENT FUNDS"));
+    }
+
+    @Test
+    @DisplayName("POST /bank/transfer - binary frame of the wrong size")
+    void testTransferFundFrameTruncated() throws Exception {
+        //Execute the POST request
+        mockMvc.perform(post("/bank/transfer")
+                .contentType(TransferFrames.APPLICATION_TRANSFER_FRAME_VALUE)
+                .content(new byte[TransferFrames.FRAME_SIZE - 1]))
+                //Validate the response code
+                .andExpect(status().isBadRequest());
+        verify(bankService, never()).transferFunds(anyInt(), anyInt(), anyLong());
+    }
+
+    @Test
+    @DisplayName("POST /bank/transfers/batch - binary frames")
+    void testTransferFundsBatchFrames() throws Exception {
+        //setup our mocked service
+        FundTransfer transfer1 = new FundTransfer(1, 2, Money.of(200));
+        FundTransfer transfer2 = new FundTransfer(2, 3, Money.of(900));
+        doReturn(Arrays.asList(new TransferResult(1, 2, Money.of(200), "SUCCESS"), new TransferResult(2, 3, Money.of(900), "INSUFFICIENT FUNDS")))
+                .when(bankService).transferFundsBatch(Arrays.asList(transfer1, transfer2));
+
+        //Execute the POST request
+        mockMvc.perform(post("/bank/transfers/batch")
+                .contentType(TransferFrames.APPLICATION_TRANSFER_FRAME_VALUE)
+                .accept(TransferFrames.APPLICATION_TRANSFER_STATUS_VALUE)
+                .content(TransferFrames.encode(Arrays.asList(transfer1, transfer2))))
+                //Validate the response code and one status byte per transfer
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(TransferFrames.APPLICATION_TRANSFER_STATUS_VALUE))
+                .andExpect(content().bytes(new byte[]{0, 1}));
     }
 
     static String asJsonString(final Object obj) {
@@ -0,0 +1,123 @@
+package com.casestudy.bank.controller;
+
+import com.casestudy.bank.model.Account;
+import com.casestudy.bank.model.AccountType;
+import com.casestudy.bank.model.Customer;
+import com.casestudy.bank.money.Money;
+import com.casestudy.bank.service.BankService;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.util.ArrayList;
+import java.util.Collections;
+
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:historydb;DB_CLOSE_DELAY=-1")
+@AutoConfigureMockMvc
+public class TransactionHistoryIT {
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @Autowired
+    BankService bankService;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    private int accountId;
+
+    @BeforeEach
+    void setUp() {
+        //Setup a fresh account with three incoming and one outgoing transfer
+        accountId = bankService.addAccount(new Account(AccountType.SAVING, Money.of(0), new ArrayList<>(Collections.singletonList(
+                new Customer("History", "Test", "history" + System.nanoTime() + "@example.com", null))))).getAccountId();
+        bankService.transferFunds(3, accountId, Money.of(10));
+        bankService.transferFunds(3, accountId, Money.of(20));
+        bankService.transferFunds(3, accountId, Money.of(30));
+        bankService.transferFunds(accountId, 1, Money.of(5));
+    }
+
+    @Test
+    @DisplayName("GET /bank/account/{id}/transactions - pages newest first")
+    void testPages() throws Exception {
+        //Execute the first page
+        MvcResult first = mockMvc.perform(get("/bank/account/{id}/transactions", accountId).param("size", "3"))
+                //Validate the response code and content
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.transactions", hasSize(3)))
+                .andExpect(jsonPath("$.transactions[0].amount", is(-5.0)))
+                .andExpect(jsonPath("$.transactions[0].counterpartyAccountId", is(1)))
+                .andExpect(jsonPath("$.transactions[1].amount", is(30.0)))
+                .andExpect(jsonPath("$.transactions[2].amount", is(20.0)))
+                .andReturn();
+        String cursor = first.getResponse().getContentAsString().replaceAll(".*\"nextCursor\":(\\d+).*", "$1");
+
+        //Execute the next page
+        mockMvc.perform(get("/bank/account/{id}/transactions", accountId).param("size", "3").param("before", cursor))
+                //Validate the response code and content
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.transactions", hasSize(1)))
+                .andExpect(jsonPath("$.transactions[0].amount", is(10.0)))
+                .andExpect(jsonPath("$.nextCursor", nullValue()));
+    }
+
+    @Test
+    @DisplayName("GET /bank/account/{id}/transactions - date range and bad requests")
+    void testFilters() throws Exception {
+        //Execute a range that ends before the transfers
+        mockMvc.perform(get("/bank/account/{id}/transactions", accountId).param("to", "2000-01-01T00:00:00Z"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.transactions", hasSize(0)));
+        //Execute a range that starts before them
+        mockMvc.perform(get("/bank/account/{id}/transactions", accountId).param("from", "2000-01-01T00:00:00Z"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.transactions", hasSize(4)));
+        //Execute an unknown account, a cursor of another account and a bad size
+        mockMvc.perform(get("/bank/account/{id}/transactions", 999999))
+                .andExpect(status().isNotFound());
+        mockMvc.perform(get("/bank/account/{id}/transactions", 1).param("before", String.valueOf(Long.MAX_VALUE)))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/bank/account/{id}/transactions", accountId).param("size", "0"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @DisplayName("GET /bank/account/{id}/transactions - NDJSON stream")
+    void testStream() throws Exception {
+        //Execute the GET request
+        MvcResult result = mockMvc.perform(get("/bank/account/{id}/transactions", accountId).accept(BankController.APPLICATION_NDJSON_VALUE))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        //Assert one line per transaction
+        String body = mockMvc.perform(asyncDispatch(result)).andExpect(status().isOk()).andReturn().getResponse().getContentAsString();
+        Assertions.assertEquals(4, body.split("\n").length, "Every transaction should be streamed");
+    }
+
+    @Test
+    @DisplayName("test the newest page is read from the account index without sorting")
+    void testIndexedPlan() {
+        //Assert the plan of the page query
+        String plan = jdbcTemplate.queryForObject("explain select * from account_transaction where account_id = 1 and created_at >= 0"
+                + " and created_at <= 9 and (created_at < 9 or transaction_id < 9) order by account_id, created_at desc, transaction_id desc limit 100", String.class);
+        Assertions.assertFalse(plan.contains("tableScan"), plan);
+        Assertions.assertTrue(plan.contains("index sorted"), plan);
+    }
+}
@@ -0,0 +1,46 @@
+package com.casestudy.bank.customer;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Optional;
+
+class EmailIndexTest {
+
+    @Test
+    @DisplayName("test a reserved email is taken but not found until registered")
+    void testReserveAndRegister() {
+        EmailIndex index = new EmailIndex();
+
+        //Execute a reservation and a competing one
+        Assertions.assertTrue(index.reserve("Ann@Example.com"), "Free email should be reserved");
+        Assertions.assertFalse(index.reserve("ann@example.com"), "Reserved email should be taken whatever its case");
+        Assertions.assertEquals(Optional.empty(), index.find("ann@example.com"), "Uncommitted customer should not be found");
+
+        //Execute the commit
+        index.register("ann@example.com", 7);
+
+        //Assert the lookup
+        Assertions.assertEquals(Optional.of(7), index.find("ANN@example.com"), "Lookup should ignore case");
+        index.release("ann@example.com");
+        Assertions.assertEquals(Optional.of(7), index.find("ann@example.com"), "Release should not drop a registered email");
+    }
+
+    @Test
+    @DisplayName("test a released or moved email is free again")
+    void testReleaseAndUnregister() {
+        EmailIndex index = new EmailIndex();
+        index.reserve("bob@example.com");
+        index.register("cid@example.com", 3);
+
+        //Execute a failed insert and an email change
+        index.release("bob@example.com");
+        index.unregister("cid@example.com", 4);
+        index.unregister("cid@example.com", 3);
+
+        //Assert both emails can be claimed again
+        Assertions.assertTrue(index.reserve("bob@example.com"), "Released email should be free");
+        Assertions.assertTrue(index.reserve("cid@example.com"), "Email left by its customer should be free");
+    }
+}
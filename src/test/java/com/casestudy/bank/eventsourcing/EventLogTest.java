@@ -0,0 +1,136 @@
+package com.casestudy.bank.eventsourcing;
+
+import com.casestudy.bank.model.AccountType;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+class EventLogTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    @DisplayName("test append and replay in sequence order")
+    void testAppendAndReplay() throws Exception {
+        EventLog log = new EventLog(directory);
+        log.open();
+
+        //Append an opening, a customer update and a transfer
+        log.append(AccountEvent.accountOpened(1, AccountType.JOINT, 1000, List.of(
+                new CustomerState(1, 1, "Ann", "Event", "ann@example.com"), new CustomerState(2, 1, "Bob", "Event", "bob@example.com"))));
+        log.append(AccountEvent.customerUpdated(new CustomerState(2, 1, "Bob", "Renamed", "bob@example.com")));
+        long last = log.append(AccountEvent.transfer(1, 2, 250));
+        log.awaitDurable(last);
+
+        //Assert the replayed events
+        List<AccountEvent> events = new ArrayList<>();
+        log.replay(0, events::add);
+        log.close();
+        Assertions.assertEquals(3, last, "Sequence should start at one");
+        Assertions.assertEquals(3, events.size(), "Every event should be replayed");
+        Assertions.assertEquals(2, events.get(0).getCustomers().size(), "Customers should be preserved");
+        Assertions.assertEquals("Renamed", events.get(1).getCustomers().get(0).getLastName(), "Updates should be preserved");
+        Assertions.assertEquals(250, events.get(2).getAmount(), "Amounts should be preserved");
+    }
+
+    @Test
+    @DisplayName("test a torn tail is cut off on open")
+    void testTornTail() throws Exception {
+        EventLog log = new EventLog(directory);
+        log.open();
+        log.append(AccountEvent.transfer(1, 2, 10));
+        log.awaitDurable(log.append(AccountEvent.transfer(1, 2, 20)));
+        Path segment = log.segments().get(0);
+        log.close();
+
+        //Setup half a record as a crash during a write would leave
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            channel.write(ByteBuffer.wrap(new byte[]{0, 0, 0, 40, 1, 2}));
+        }
+
+        //Execute a reopen and another append
+        EventLog reopened = new EventLog(directory);
+        reopened.open();
+        long sequence = reopened.append(AccountEvent.transfer(1, 2, 30));
+        reopened.awaitDurable(sequence);
+
+        //Assert the torn record is gone and the new one follows the intact ones
+        List<AccountEvent> events = new ArrayList<>();
+        reopened.replay(0, events::add);
+        reopened.close();
+        Assertions.assertEquals(3, sequence, "Sequence should continue after the intact events");
+        Assertions.assertEquals(3, events.size(), "The torn record should be dropped");
+        Assertions.assertEquals(30, events.get(2).getAmount(), "The new event should be readable");
+    }
+
+    @Test
+    @DisplayName("test recovery from a snapshot and the events after it")
+    void testSnapshotRecovery() throws Exception {
+        EventLog log = new EventLog(directory);
+        SnapshotStore snapshots = new SnapshotStore(directory);
+        AccountProjection projection = new AccountProjection();
+        log.open();
+        append(log, projection, AccountEvent.accountOpened(1, AccountType.SAVING, 1000, List.of(new CustomerState(1, 1, "Ann", "Event", "ann@example.com"))));
+        append(log, projection, AccountEvent.accountOpened(2, AccountType.CURRENT, 0, List.of()));
+        append(log, projection, AccountEvent.transfer(1, 2, 100));
+
+        //Execute a snapshot, drop the events it covers and append one more
+        long covered = log.getLastSequence();
+        log.roll();
+        snapshots.write(covered, projection.getAccounts(), projection.getCustomers());
+        log.deleteSegmentsUpTo(covered);
+        log.awaitDurable(append(log, projection, AccountEvent.transfer(2, 1, 30)));
+        log.close();
+
+        //Assert a restart rebuilds the same balances from the snapshot and one event
+        AccountProjection recovered = new AccountProjection();
+        long snapshotSequence = snapshots.restore(recovered);
+        EventLog reopened = new EventLog(directory);
+        reopened.open();
+        List<AccountEvent> replayed = new ArrayList<>();
+        reopened.replay(snapshotSequence, replayed::add);
+        replayed.forEach(recovered::apply);
+        reopened.close();
+        Assertions.assertEquals(3, snapshotSequence, "Snapshot should cover the first three events");
+        Assertions.assertEquals(1, replayed.size(), "Only the event after the snapshot should be replayed");
+        Assertions.assertEquals(930, recovered.getAccount(1).getBalance(), "Balance should be rebuilt");
+        Assertions.assertEquals(70, recovered.getAccount(2).getBalance(), "Balance should be rebuilt");
+        Assertions.assertEquals(1, recovered.getCustomers().size(), "Customers should be restored");
+        Assertions.assertEquals(4, reopened.getLastSequence(), "Sequence should survive the deleted segment");
+    }
+
+    @Test
+    @DisplayName("test a corrupt snapshot falls back to the previous one")
+    void testCorruptSnapshot() throws Exception {
+        SnapshotStore snapshots = new SnapshotStore(directory);
+        snapshots.write(5, List.of(new AccountState(1, AccountType.SAVING, 500)), List.of());
+        snapshots.write(9, List.of(new AccountState(1, AccountType.SAVING, 900)), List.of());
+
+        //Setup a flipped byte in the newest snapshot
+        Path newest = directory.resolve(String.format("snapshot-%020d.bin", 9));
+        byte[] bytes = Files.readAllBytes(newest);
+        bytes[bytes.length - 6] ^= 1;
+        Files.write(newest, bytes);
+
+        //Assert the older snapshot is restored
+        AccountProjection projection = new AccountProjection();
+        Assertions.assertEquals(5, snapshots.restore(projection), "Older snapshot should be used");
+        Assertions.assertEquals(500, projection.getAccount(1).getBalance(), "Balance should come from the older snapshot");
+    }
+
+    private static long append(EventLog log, AccountProjection projection, AccountEvent event) {
+        long sequence = log.append(event);
+        projection.apply(event);
+        return sequence;
+    }
+}
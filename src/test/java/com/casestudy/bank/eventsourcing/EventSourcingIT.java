@@ -0,0 +1,77 @@
+package com.casestudy.bank.eventsourcing;
+
+import com.casestudy.bank.BankApplication;
+import com.casestudy.bank.dto.EventSourcingStats;
+import com.casestudy.bank.model.Account;
+import com.casestudy.bank.model.AccountType;
+import com.casestudy.bank.model.Customer;
+import com.casestudy.bank.money.Money;
+import com.casestudy.bank.service.BankService;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+
+public class EventSourcingIT {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    @DisplayName("test a restart on an empty database rebuilds it from the snapshot and the events after it")
+    void testRestartRecovery() {
+        //Setup an account and transfers in a first run, with a snapshot every three events
+        int accountId;
+        try (ConfigurableApplicationContext context = start("eventsdb1")) {
+            BankService bankService = context.getBean(BankService.class);
+            accountId = bankService.addAccount(new Account(AccountType.SAVING, Money.of(100),
+                    new ArrayList<>(Collections.singletonList(new Customer("Event", "Sourced", "event.sourced@example.com", null))))).getAccountId();
+            Assertions.assertEquals("SUCCESS", bankService.transferFunds(1, accountId, Money.of(50)));
+            Assertions.assertEquals("SUCCESS", bankService.transferFunds(accountId, 2, Money.of(30)));
+            Assertions.assertEquals("INSUFFICIENT FUNDS", bankService.transferFunds(accountId, 2, Money.of(1000)));
+        }
+
+        //Execute a second run against a new database, as create-drop leaves it after a restart
+        try (ConfigurableApplicationContext context = start("eventsdb2")) {
+            BankService bankService = context.getBean(BankService.class);
+            JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+            EventSourcingStats stats = context.getBean(EventSourcing.class).getStats();
+
+            //Assert state came back from the snapshot plus the events after it
+            Assertions.assertEquals(Money.of(120), bankService.getBalanceOf(accountId).get().getBalance(), "Balance should be rebuilt");
+            Assertions.assertEquals(0, new BigDecimal("120.00").compareTo(
+                    jdbcTemplate.queryForObject("select balance from account where account_id = ?", BigDecimal.class, accountId)),
+                    "Database row should be restored");
+            Assertions.assertEquals(1, jdbcTemplate.queryForObject("select count(*) from customer where email = 'event.sourced@example.com'", Integer.class),
+                    "Customer should be restored");
+            Assertions.assertEquals(0, new BigDecimal("19950.00").compareTo(
+                    jdbcTemplate.queryForObject("select balance from account where account_id = 1", BigDecimal.class)),
+                    "Seeded account should keep its transfers");
+            Assertions.assertTrue(stats.getSnapshotSequence() > 0, "A snapshot should have been taken");
+            Assertions.assertEquals(stats.getLastSequence() - stats.getSnapshotSequence(), stats.getRecoveredEvents(), "Only events after the snapshot should be replayed");
+
+            //Assert new accounts do not reuse restored ids
+            Account next = bankService.addAccount(new Account(AccountType.SAVING, Money.of(1),
+                    new ArrayList<>(Collections.singletonList(new Customer("Event", "Next", "event.next@example.com", null)))));
+            Assertions.assertTrue(next.getAccountId() > accountId, "Ids should continue after the restored accounts");
+        }
+    }
+
+    private ConfigurableApplicationContext start(String database) {
+        return new SpringApplicationBuilder(BankApplication.class).run(
+                "--spring.datasource.url=jdbc:h2:mem:" + database + ";DB_CLOSE_DELAY=-1",
+                "--spring.main.banner-mode=off",
+                "--server.port=0",
+                "--bank.event-sourcing.enabled=true",
+                "--bank.event-sourcing.directory=" + directory,
+                "--bank.event-sourcing.snapshot-every=3");
+    }
+}
@@ -0,0 +1,60 @@
+package com.casestudy.bank.id;
+
+import com.casestudy.bank.model.Account;
+import com.casestudy.bank.model.AccountType;
+import com.casestudy.bank.model.Customer;
+import com.casestudy.bank.money.Money;
+import com.casestudy.bank.service.BankService;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:iddb;DB_CLOSE_DELAY=-1")
+public class IdSequencesIT {
+
+    @Autowired
+    IdSequences idSequences;
+
+    @Autowired
+    BankService bankService;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Test
+    @DisplayName("test new accounts follow the seeded ids")
+    void testIdsAfterSeededRows() {
+        //Execute two account creations
+        Account first = bankService.addAccount(account("first.seq@example.com"));
+        Account second = bankService.addAccount(account("second.seq@example.com"));
+
+        //Assert the ids
+        Assertions.assertTrue(first.getAccountId() > 3, "Id should follow the data.sql accounts");
+        Assertions.assertEquals(first.getAccountId() + 1, second.getAccountId(), "Ids should come from the same block");
+        Assertions.assertTrue(first.getCustomers().get(0).getCustomerId() > 4, "Id should follow the data.sql customers");
+    }
+
+    @Test
+    @DisplayName("test a sequence behind existing ids is moved past them")
+    void testSequenceMovedPastIds() {
+        //Setup a row written with an explicit id, as an IDENTITY era table would have
+        jdbcTemplate.update("insert into account(account_id,account_type,balance,version) values(100000,'SAVING',0,0)");
+
+        //Execute the startup migration again
+        idSequences.afterSingletonsInstantiated();
+
+        //Assert the next block starts after it
+        Long next = jdbcTemplate.queryForObject("select next value for account_seq", Long.class);
+        Assertions.assertTrue(next > 100000, "Sequence should be past the existing id, was " + next);
+    }
+
+    private Account account(String email) {
+        return new Account(AccountType.SAVING, Money.of(10), new ArrayList<>(Collections.singletonList(new Customer("Id", "Sequence", email, null))));
+    }
+}
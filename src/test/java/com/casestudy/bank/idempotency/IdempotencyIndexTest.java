@@ -0,0 +1,76 @@
+package com.casestudy.bank.idempotency;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class IdempotencyIndexTest {
+
+    @Test
+    @DisplayName("test recorded key returns its status")
+    void testFind() {
+        IdempotencyIndex index = new IdempotencyIndex(16, 60_000);
+
+        //Record two keys
+        index.put("key-1", 11, "SUCCESS");
+        index.put("key-2", 22, "INSUFFICIENT FUNDS");
+
+        //Assert the lookups
+        Assertions.assertEquals("SUCCESS", index.find("key-1", 11), "Status should be replayed");
+        Assertions.assertEquals("INSUFFICIENT FUNDS", index.find("key-2", 22), "Status should be replayed");
+        Assertions.assertNull(index.find("key-3", 33), "Unknown key should not be found");
+        Assertions.assertEquals(IdempotencyIndex.KEY_REUSED, index.find("key-1", 12), "Key of another request should be refused");
+    }
+
+    @Test
+    @DisplayName("test first status wins and unfinished ones are not kept")
+    void testPut() {
+        IdempotencyIndex index = new IdempotencyIndex(16, 60_000);
+
+        //Record a key twice and a conflict
+        index.put("key-1", 11, "SUCCESS");
+        index.put("key-1", 11, "ID MISMATCH");
+        index.put("key-2", 22, "CONFLICT");
+
+        //Assert the lookups
+        Assertions.assertEquals("SUCCESS", index.find("key-1", 11), "First status should be kept");
+        Assertions.assertNull(index.find("key-2", 22), "Conflict should be retryable");
+        Assertions.assertEquals(1, index.size(), "Only one key should be held");
+    }
+
+    @Test
+    @DisplayName("test a full table rotates and memory stays bounded")
+    void testCapacity() {
+        IdempotencyIndex index = new IdempotencyIndex(100, 60_000);
+
+        //Record five times the capacity
+        for (int i = 0; i < 500; i++)
+            index.put("key-" + i, i, "SUCCESS");
+
+        //Assert the newest keys are kept and the oldest dropped
+        Assertions.assertTrue(index.size() <= 200, "At most two tables of keys should be held");
+        Assertions.assertEquals("SUCCESS", index.find("key-499", 499), "Newest key should be kept");
+        Assertions.assertEquals("SUCCESS", index.find("key-400", 400), "Keys of the previous table should be kept");
+        Assertions.assertNull(index.find("key-0", 0), "Oldest key should be dropped");
+    }
+
+    @Test
+    @DisplayName("test keys expire after the window")
+    void testWindow() {
+        IdempotencyIndex index = new IdempotencyIndex(100, 1000);
+        long now = System.currentTimeMillis();
+        index.put("key-1", 1, "SUCCESS");
+
+        //Execute rotations half a window apart
+        boolean early = index.rotateIfDue(now + 100);
+        boolean first = index.rotateIfDue(now + 600);
+        String afterFirst = index.find("key-1", 1);
+        boolean second = index.rotateIfDue(now + 1200);
+
+        //Assert the key lives between half and a whole window
+        Assertions.assertFalse(early, "Table should not rotate early");
+        Assertions.assertTrue(first && second, "Table should rotate every half window");
+        Assertions.assertEquals("SUCCESS", afterFirst, "Key should survive one rotation");
+        Assertions.assertNull(index.find("key-1", 1), "Key should expire after two rotations");
+    }
+}
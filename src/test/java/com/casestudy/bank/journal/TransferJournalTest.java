@@ -0,0 +1,200 @@
+package com.casestudy.bank.journal;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+class TransferJournalTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    @DisplayName("test append and replay in sequence order")
+    void testAppendAndReplay() throws Exception {
+        TransferJournal journal = new TransferJournal(directory, 1024);
+        journal.open();
+
+        //Append two transfers
+        long first = journal.append(1, 2, 100, 900, 100);
+        long second = journal.append(2, 1, 50, 50, 950);
+        journal.awaitDurable(second);
+
+        //Assert the replayed records
+        List<TransferRecord> records = new ArrayList<>();
+        journal.replay(records::add);
+        journal.close();
+        Assertions.assertEquals(1, first, "Sequence should start at one");
+        Assertions.assertEquals(2, records.size(), "Every record should be replayed");
+        Assertions.assertEquals(2, records.get(1).getSequence(), "Records should replay in order");
+        Assertions.assertEquals(950, records.get(1).getToBalance(), "Balances should be preserved");
+    }
+
+    @Test
+    @DisplayName("test segments roll over when full")
+    void testRollover() throws Exception {
+        TransferJournal journal = new TransferJournal(directory, 4 * TransferJournal.RECORD_SIZE);
+        journal.open();
+
+        //Append more records than one segment holds
+        for (int i = 1; i <= 10; i++)
+            journal.append(1, 2, 1, 100 - i, i);
+        journal.awaitDurable(journal.getLastSequence());
+
+        //Assert the segments
+        List<TransferRecord> records = new ArrayList<>();
+        journal.replay(records::add);
+        journal.close();
+        Assertions.assertEquals(3, journal.segments().size(), "Ten records should need three segments");
+        Assertions.assertEquals(10, records.size(), "Every record should be replayed across segments");
+    }
+
+    @Test
+    @DisplayName("test reopen continues the sequence and rebuilds balances")
+    void testReopen() throws Exception {
+        TransferJournal journal = new TransferJournal(directory, 1024);
+        journal.open();
+        journal.append(1, 2, 100, 900, 100);
+        journal.awaitDurable(journal.append(3, 1, 10, 0, 910));
+        journal.close();
+
+        //Reopen the same directory
+        TransferJournal reopened = new TransferJournal(directory, 1024);
+        reopened.open();
+        long sequence = reopened.append(2, 3, 5, 95, 5);
+        reopened.awaitDurable(sequence);
+        Map<Integer, Long> balances = reopened.rebuildBalances();
+        reopened.close();
+
+        //Assert the response
+        Assertions.assertEquals(3, sequence, "Sequence should continue after reopen");
+        Assertions.assertEquals(910L, balances.get(1), "Latest balance should win");
+        Assertions.assertEquals(95L, balances.get(2), "Latest balance should win");
+        Assertions.assertEquals(5L, balances.get(3), "Latest balance should win");
+    }
+
+    @Test
+    @DisplayName("test torn record at the tail is ignored and overwritten")
+    void testTornTail() throws Exception {
+        TransferJournal journal = new TransferJournal(directory, 1024);
+        journal.open();
+        journal.append(1, 2, 100, 900, 100);
+        journal.awaitDurable(journal.append(1, 2, 100, 800, 200));
+        journal.close();
+
+        //Corrupt the second record
+        try (FileChannel channel = FileChannel.open(journal.segments().get(0), StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{1, 2, 3}), TransferJournal.RECORD_SIZE + 30);
+        }
+
+        //Reopen and append over the torn record
+        TransferJournal reopened = new TransferJournal(directory, 1024);
+        reopened.open();
+        long sequence = reopened.append(2, 1, 20, 80, 920);
+        reopened.awaitDurable(sequence);
+        List<TransferRecord> records = new ArrayList<>();
+        reopened.replay(records::add);
+        reopened.close();
+
+        //Assert the response
+        Assertions.assertEquals(2, sequence, "Torn record should not count");
+        Assertions.assertEquals(2, records.size(), "Torn record should be replaced");
+        Assertions.assertEquals(920, records.get(1).getToBalance(), "New record should be replayed");
+    }
+
+    @Test
+    @DisplayName("test compaction keeps the latest balance of each account")
+    void testCompact() throws Exception {
+        TransferJournal journal = new TransferJournal(directory, 4 * TransferJournal.RECORD_SIZE);
+        journal.open();
+        for (int i = 1; i <= 12; i++)
+            journal.append(i % 2 == 0 ? 1 : 3, 2, 1, 100 - i, i);
+        journal.awaitDurable(journal.getLastSequence());
+        Map<Integer, Long> before = journal.rebuildBalances();
+
+        //Execute the compaction
+        journal.compact();
+
+        //Assert the response
+        List<TransferRecord> records = new ArrayList<>();
+        journal.replay(records::add);
+        Assertions.assertEquals(2, journal.segments().size(), "Sealed segments should fold into one");
+        Assertions.assertEquals(before, journal.rebuildBalances(), "Compaction should preserve balances");
+        Assertions.assertTrue(records.size() < 12, "Superseded records should be dropped");
+        Assertions.assertEquals(13, journal.append(1, 2, 1, 0, 0), "Sequence should continue after compaction");
+        journal.close();
+    }
+
+    @Test
+    @DisplayName("test rolling compacts sealed segments in the background")
+    void testCompactOnRoll() throws Exception {
+        TransferJournal journal = new TransferJournal(directory, 4 * TransferJournal.RECORD_SIZE, true);
+        journal.open();
+
+        //Append enough transfers between three accounts to roll many times
+        for (int i = 1; i <= 60; i++)
+            journal.append(i % 3 + 1, (i + 1) % 3 + 1, 1, 1000 - i, i);
+        journal.awaitDurable(journal.getLastSequence());
+        journal.close();
+
+        //Reopen the compacted directory
+        TransferJournal reopened = new TransferJournal(directory, 4 * TransferJournal.RECORD_SIZE, true);
+        reopened.open();
+        List<TransferRecord> records = new ArrayList<>();
+        reopened.replay(records::add);
+        Map<Integer, Long> balances = reopened.rebuildBalances();
+        long sequence = reopened.append(1, 2, 1, 0, 0);
+        reopened.close();
+
+        //Assert the response
+        Assertions.assertEquals(2, reopened.segments().size(), "Sealed segments should fold into one");
+        Assertions.assertTrue(records.size() <= 3 + 4, "Replay should hold the latest record per account and the active segment");
+        Assertions.assertEquals(940L, balances.get(1), "Latest balance should win");
+        Assertions.assertEquals(60L, balances.get(2), "Latest balance should win");
+        Assertions.assertEquals(941L, balances.get(3), "Latest balance should win");
+        Assertions.assertEquals(61, sequence, "Sequence should continue after compaction");
+    }
+
+    @Test
+    @DisplayName("test concurrent appends are all durable")
+    void testConcurrentAppends() throws Exception {
+        TransferJournal journal = new TransferJournal(directory, 16 * 1024);
+        journal.open();
+
+        //Append and wait from several threads
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            int account = i;
+            tasks.add(() -> {
+                for (int j = 0; j < 100; j++)
+                    journal.awaitDurable(journal.append(account, account + 1, 1, j, j));
+                return null;
+            });
+        }
+        for (Future<Void> future : executor.invokeAll(tasks))
+            future.get();
+        executor.shutdown();
+
+        //Assert the response
+        List<TransferRecord> records = new ArrayList<>();
+        journal.replay(records::add);
+        journal.close();
+        Assertions.assertEquals(800, records.size(), "Every append should be replayed");
+        for (int i = 0; i < records.size(); i++)
+            Assertions.assertEquals(i + 1, records.get(i).getSequence(), "Sequences should be gapless");
+    }
+}
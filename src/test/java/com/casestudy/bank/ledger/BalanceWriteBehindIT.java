@@ -0,0 +1,80 @@
+package com.casestudy.bank.ledger;
+
+import com.casestudy.bank.dto.WriteBehindStats;
+import com.casestudy.bank.money.Money;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+
+@SpringBootTest(properties = {"spring.datasource.url=jdbc:h2:mem:writebehinddb;DB_CLOSE_DELAY=-1",
+        "bank.ledger.write-behind.batch-size=2"})
+public class BalanceWriteBehindIT {
+
+    @Autowired
+    BalanceWriteBehind balanceWriteBehind;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Test
+    @DisplayName("test updates of one account coalesce into one row")
+    void testCoalesce() {
+        WriteBehindStats before = balanceWriteBehind.getStats();
+
+        //Submit several balances of the same account
+        for (int i = 1; i <= 100; i++)
+            balanceWriteBehind.submit(1, Money.of(i));
+        balanceWriteBehind.flush();
+
+        //Assert the database and counters
+        WriteBehindStats after = balanceWriteBehind.getStats();
+        Assertions.assertEquals(Money.of(100), balanceOf(1), "Latest balance should be written");
+        Assertions.assertEquals(1, after.getRows() - before.getRows(), "Updates should collapse into one row");
+        Assertions.assertEquals(99, after.getCoalesced() - before.getCoalesced(), "Superseded updates should be counted");
+        Assertions.assertEquals(0, after.getPending(), "Nothing should be left pending");
+    }
+
+    @Test
+    @DisplayName("test pending accounts are written in batches of batch-size")
+    void testBatches() {
+        WriteBehindStats before = balanceWriteBehind.getStats();
+
+        //Submit three accounts with a batch size of two
+        balanceWriteBehind.submit(1, Money.of(10));
+        balanceWriteBehind.submit(2, Money.of(20));
+        balanceWriteBehind.submit(3, Money.of(30));
+        balanceWriteBehind.flush();
+
+        //Assert the database and counters
+        WriteBehindStats after = balanceWriteBehind.getStats();
+        Assertions.assertEquals(2, after.getBatches() - before.getBatches(), "Three rows should need two batches");
+        Assertions.assertEquals(Money.of(10), balanceOf(1), "Balance should be written");
+        Assertions.assertEquals(Money.of(20), balanceOf(2), "Balance should be written");
+        Assertions.assertEquals(Money.of(30), balanceOf(3), "Balance should be written");
+    }
+
+    @Test
+    @DisplayName("test background flusher writes within the window")
+    void testBackgroundFlush() throws Exception {
+        balanceWriteBehind.start();
+
+        //Submit and give the flusher time, a balance leaves pending before its batch is written
+        long rows = balanceWriteBehind.getStats().getRows();
+        balanceWriteBehind.submit(2, Money.of(77));
+        long deadline = System.currentTimeMillis() + 5000;
+        while (balanceWriteBehind.getStats().getRows() == rows && System.currentTimeMillis() < deadline)
+            Thread.sleep(5);
+
+        //Assert the database
+        Assertions.assertEquals(Money.of(77), balanceOf(2), "Flusher should write the balance");
+    }
+
+    private long balanceOf(int accountId) {
+        return Money.fromDecimal(jdbcTemplate.queryForObject("select balance from account where account_id = ?", BigDecimal.class, accountId));
+    }
+}
@@ -0,0 +1,118 @@
+package com.casestudy.bank.ledger;
+
+import com.casestudy.bank.model.Account;
+import com.casestudy.bank.model.AccountType;
+import com.casestudy.bank.money.Money;
+import com.casestudy.bank.repository.AccountRepository;
+import com.casestudy.bank.repository.CustomerRepository;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.mockito.Mockito.*;
+
+@SpringBootTest(properties = {"bank.ledger.enabled=true", "bank.ledger.write-behind.window-ms=60000"})
+class LedgerEngineTest {
+
+    @Autowired
+    LedgerEngine ledgerEngine;
+
+    @MockBean
+    AccountRepository accountRepository;
+
+    @MockBean
+    CustomerRepository customerRepository;
+
+    @MockBean
+    BalanceWriteBehind balanceWriteBehind;
+
+    @Test
+    @DisplayName("test transfer with unknown account")
+    void testTransferUnknownAccount() {
+        //Setup our mock repository
+        doReturn(new Account(10, AccountType.SAVING, Money.of(500), null)).when(accountRepository).findByAccountId(10);
+        doReturn(null).when(accountRepository).findByAccountId(11);
+
+        //Execute the ledger call
+        String status = ledgerEngine.transfer(10, 11, Money.of(100));
+
+        //Assert the response
+        Assertions.assertEquals("ID MISMATCH", status, "Transfer should not happen");
+        Assertions.assertEquals(Money.of(500), ledgerEngine.getBalance(10), "Balance should not change");
+    }
+
+    @Test
+    @DisplayName("test transfer with insufficient funds")
+    void testTransferInsufficientFunds() {
+        //Setup our mock repository
+        doReturn(new Account(20, AccountType.SAVING, Money.of(50), null)).when(accountRepository).findByAccountId(20);
+        doReturn(new Account(21, AccountType.CURRENT, Money.of(0), null)).when(accountRepository).findByAccountId(21);
+
+        //Execute the ledger call
+        String status = ledgerEngine.transfer(20, 21, Money.of(100));
+
+        //Assert the response
+        Assertions.assertEquals("INSUFFICIENT FUNDS", status, "Transfer should not happen");
+        Assertions.assertEquals(Money.of(50), ledgerEngine.getBalance(20), "Balance should not change");
+    }
+
+    @Test
+    @DisplayName("test concurrent opposite transfers keep balances consistent")
+    void testConcurrentTransfers() throws Exception {
+        //Setup our mock repository
+        doReturn(new Account(30, AccountType.SAVING, Money.of(1000), null)).when(accountRepository).findByAccountId(30);
+        doReturn(new Account(31, AccountType.CURRENT, Money.of(1000), null)).when(accountRepository).findByAccountId(31);
+
+        //Execute transfers in both directions from several threads
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Callable<Integer>> tasks = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            boolean forward = i % 2 == 0;
+            tasks.add(() -> {
+                int succeeded = 0;
+                for (int j = 0; j < 5000; j++) {
+                    String status = forward ? ledgerEngine.transfer(30, 31, Money.of(1)) : ledgerEngine.transfer(31, 30, Money.of(1));
+                    if (status.equals("SUCCESS"))
+                        succeeded++;
+                }
+                return forward ? succeeded : -succeeded;
+            });
+        }
+        int net = 0;
+        for (Future<Integer> future : executor.invokeAll(tasks))
+            net += future.get();
+        executor.shutdown();
+
+        //Assert the balances
+        Assertions.assertEquals(Money.of(2000), ledgerEngine.getBalance(30) + ledgerEngine.getBalance(31), "Money should be conserved");
+        Assertions.assertEquals(Money.of(1000 - net), ledgerEngine.getBalance(30), "Every successful transfer should be applied");
+    }
+
+    @Test
+    @DisplayName("test every changed balance is handed to write-behind")
+    void testWriteBehind() {
+        //Setup our mock repository
+        doReturn(new Account(40, AccountType.SAVING, Money.of(300), null)).when(accountRepository).findByAccountId(40);
+        doReturn(new Account(41, AccountType.CURRENT, Money.of(0), null)).when(accountRepository).findByAccountId(41);
+
+        //Execute the ledger calls
+        ledgerEngine.transfer(40, 41, Money.of(100));
+        ledgerEngine.transfer(40, 41, Money.of(100));
+
+        //Assert the submissions
+        verify(balanceWriteBehind).submit(40, Money.of(200));
+        verify(balanceWriteBehind).submit(40, Money.of(100));
+        verify(balanceWriteBehind).submit(41, Money.of(200));
+        verify(accountRepository, never()).updateBalance(anyInt(), anyLong());
+    }
+}
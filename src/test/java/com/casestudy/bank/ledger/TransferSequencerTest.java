@@ -0,0 +1,134 @@
+package com.casestudy.bank.ledger;
+
+import com.casestudy.bank.dto.SequencerStats;
+import com.casestudy.bank.model.Account;
+import com.casestudy.bank.model.AccountType;
+import com.casestudy.bank.money.Money;
+import com.casestudy.bank.repository.AccountRepository;
+import com.casestudy.bank.repository.CustomerRepository;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.mockito.Mockito.*;
+
+//four partitions, account id modulo 4 picks the writer; rings of 8 slots so producers regularly find them full
+@SpringBootTest(properties = {"bank.ledger.enabled=true", "bank.ledger.write-behind.window-ms=60000",
+        "bank.ledger.sequencer.enabled=true", "bank.ledger.sequencer.partitions=4", "bank.ledger.sequencer.ring-size=8"})
+class TransferSequencerTest {
+
+    @Autowired
+    LedgerEngine ledgerEngine;
+
+    @Autowired
+    TransferSequencer transferSequencer;
+
+    @MockBean
+    AccountRepository accountRepository;
+
+    @MockBean
+    CustomerRepository customerRepository;
+
+    @MockBean
+    BalanceWriteBehind balanceWriteBehind;
+
+    @Test
+    @DisplayName("test concurrent transfers across partitions keep balances consistent")
+    void testConcurrentCrossPartitionTransfers() throws Exception {
+        //Setup our mock repository, 30, 31 and 33 live on different partitions, 34 shares one with 30
+        int[] accountIds = {30, 31, 33, 34};
+        for (int accountId : accountIds)
+            doReturn(new Account(accountId, AccountType.SAVING, Money.of(1000), null)).when(accountRepository).findByAccountId(accountId);
+        long before = totalTransfers();
+
+        //Execute transfers between every pair from several threads
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Callable<long[]>> tasks = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            int seed = i;
+            tasks.add(() -> {
+                long[] net = new long[accountIds.length];
+                for (int j = 0; j < 2000; j++) {
+                    int from = (seed + j) % accountIds.length;
+                    int to = (seed + j * 3 + 1) % accountIds.length;
+                    if (ledgerEngine.transfer(accountIds[from], accountIds[to], Money.of(1)).equals("SUCCESS")) {
+                        net[from] -= Money.of(1);
+                        net[to] += Money.of(1);
+                    }
+                }
+                return net;
+            });
+        }
+        long[] net = new long[accountIds.length];
+        for (Future<long[]> future : executor.invokeAll(tasks)) {
+            long[] result = future.get();
+            for (int k = 0; k < net.length; k++)
+                net[k] += result[k];
+        }
+        executor.shutdown();
+
+        //Assert the balances
+        long total = 0;
+        for (int k = 0; k < accountIds.length; k++) {
+            Assertions.assertEquals(Money.of(1000) + net[k], ledgerEngine.getBalance(accountIds[k]), "Every successful transfer should be applied");
+            total += ledgerEngine.getBalance(accountIds[k]);
+        }
+        Assertions.assertEquals(Money.of(4000), total, "Money should be conserved");
+        Assertions.assertEquals(8 * 2000, totalTransfers() - before, "Every transfer should go through a ring");
+    }
+
+    @Test
+    @DisplayName("test a cross-partition transfer completes once the target partition credited it")
+    void testCrossPartitionHandOff() {
+        //Setup our mock repository
+        doReturn(new Account(40, AccountType.SAVING, Money.of(300), null)).when(accountRepository).findByAccountId(40);
+        doReturn(new Account(41, AccountType.CURRENT, Money.of(0), null)).when(accountRepository).findByAccountId(41);
+        long handOffs = transferSequencer.getStats().get(1).getHandOffs();
+
+        //Execute the ledger calls
+        CompletableFuture<String> result = ledgerEngine.submitTransfer(40, 41, Money.of(100));
+        String status = result.join();
+        String insufficient = ledgerEngine.transfer(40, 41, Money.of(500));
+
+        //Assert the response and the submissions
+        Assertions.assertEquals("SUCCESS", status, "Transfer should happen");
+        Assertions.assertEquals("INSUFFICIENT FUNDS", insufficient, "Transfer should not happen");
+        Assertions.assertEquals(Money.of(200), ledgerEngine.getBalance(40), "Source should be debited once");
+        Assertions.assertEquals(Money.of(100), ledgerEngine.getBalance(41), "Target should be credited once");
+        Assertions.assertEquals(handOffs + 1, transferSequencer.getStats().get(1).getHandOffs(), "Credit should be handed to partition 1");
+        verify(balanceWriteBehind).submit(40, Money.of(200));
+        verify(balanceWriteBehind).submit(41, Money.of(100));
+    }
+
+    @Test
+    @DisplayName("test transfer with unknown account never reaches a ring")
+    void testTransferUnknownAccount() {
+        //Setup our mock repository
+        doReturn(new Account(50, AccountType.SAVING, Money.of(500), null)).when(accountRepository).findByAccountId(50);
+        doReturn(null).when(accountRepository).findByAccountId(51);
+        long before = totalTransfers();
+
+        //Execute the ledger call
+        String status = ledgerEngine.transfer(50, 51, Money.of(100));
+
+        //Assert the response
+        Assertions.assertEquals("ID MISMATCH", status, "Transfer should not happen");
+        Assertions.assertEquals(Money.of(500), ledgerEngine.getBalance(50), "Balance should not change");
+        Assertions.assertEquals(before, totalTransfers(), "No ring should take the transfer");
+    }
+
+    private long totalTransfers() {
+        return transferSequencer.getStats().stream().mapToLong(SequencerStats::getTransfers).sum();
+    }
+}
@@ -0,0 +1,58 @@
+package com.casestudy.bank.metrics;
+
+import com.casestudy.bank.dto.LatencyStats;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.hamcrest.Matchers.hasItem;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {"spring.datasource.url=jdbc:h2:mem:metricsdb;DB_CLOSE_DELAY=-1", "bank.metrics.enabled=true"})
+@AutoConfigureMockMvc
+public class InstrumentationIT {
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @Autowired
+    LatencyRecorder latencyRecorder;
+
+    @BeforeEach
+    void setUp() {
+        latencyRecorder.reset();
+    }
+
+    @Test
+    @DisplayName("test endpoint, service and repository calls are timed")
+    void testLayersTimed() throws Exception {
+        //Execute the GET request
+        mockMvc.perform(get("/bank/balance/{accountId}", 2)).andExpect(status().isOk());
+
+        //Assert the timers
+        LatencyStats endpoint = latencyRecorder.getStats("controller.BankController.getBalanceOf").get();
+        Assertions.assertEquals(1, endpoint.getCount(), "Endpoint should be timed once");
+        Assertions.assertEquals(1.0, endpoint.getStatementsPerCall(), "Balance should be one statement");
+        Assertions.assertEquals(1, latencyRecorder.getStats("service.BankService.getBalanceOf").get().getCount(), "Service should be timed");
+        Assertions.assertEquals(1, latencyRecorder.getStats("repository.AccountRepository.findBalanceByAccountId").get().getCount(), "Repository should be timed");
+    }
+
+    @Test
+    @DisplayName("GET /bank/metrics/latency lists the timers")
+    void testLatencyEndpoint() throws Exception {
+        mockMvc.perform(get("/bank/customer/{customerId}", 2)).andExpect(status().isOk());
+
+        //Execute the GET request
+        mockMvc.perform(get("/bank/metrics/latency"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].name", hasItem("controller.BankController.getOneCustomer")))
+                .andExpect(jsonPath("$[*].name", hasItem("repository.CustomerRepository.findById")));
+    }
+}
@@ -0,0 +1,43 @@
+package com.casestudy.bank.metrics;
+
+import com.casestudy.bank.dto.LatencyStats;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class LatencyRecorderTest {
+
+    @Test
+    @DisplayName("test percentiles of recorded latencies")
+    void testPercentiles() {
+        LatencyRecorder recorder = new LatencyRecorder();
+
+        //Record 1..1000 microseconds
+        for (int i = 1; i <= 1000; i++)
+            recorder.record("test", i * 1000L);
+
+        //Assert the response
+        LatencyStats stats = recorder.getStats("test").get();
+        Assertions.assertEquals(1000, stats.getCount(), "Every value should be counted");
+        Assertions.assertEquals(500, stats.getP50(), 10, "Median should be within histogram precision");
+        Assertions.assertEquals(990, stats.getP99(), 10, "p99 should be within histogram precision");
+        Assertions.assertEquals(1000, stats.getMax(), 10, "Max should be within histogram precision");
+    }
+
+    @Test
+    @DisplayName("test statements per call and reset")
+    void testStatementsAndReset() {
+        LatencyRecorder recorder = new LatencyRecorder();
+
+        //Record two calls with three statements between them
+        LatencyTimer timer = recorder.timer("test");
+        timer.record(1000, 1);
+        timer.record(1000, 2);
+
+        //Assert the response
+        Assertions.assertEquals(1.5, recorder.getStats("test").get().getStatementsPerCall(), "Statements should be averaged per call");
+        recorder.reset();
+        Assertions.assertEquals(0, recorder.getStats("test").get().getCount(), "Reset should clear the timer");
+        Assertions.assertFalse(recorder.getStats("unknown").isPresent(), "Unknown timer should be empty");
+    }
+}
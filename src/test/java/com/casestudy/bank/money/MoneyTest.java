@@ -0,0 +1,38 @@
+package com.casestudy.bank.money;
+
+import com.casestudy.bank.dto.FundTransfer;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+class MoneyTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    @DisplayName("test decimal amounts convert to minor units exactly")
+    void testFromDecimal() {
+        Assertions.assertEquals(10L, Money.fromDecimal(new BigDecimal("0.1")), "0.1 should be 10 minor units");
+        Assertions.assertEquals(20000L, Money.fromDecimal(new BigDecimal("200")), "200 should be 20000 minor units");
+        Assertions.assertEquals(new BigDecimal("0.30"), Money.toDecimal(Money.fromDecimal(new BigDecimal("0.1")) * 3), "Minor units should not accumulate rounding errors");
+        Assertions.assertThrows(ArithmeticException.class, () -> Money.fromDecimal(new BigDecimal("0.001")), "Amounts finer than a cent should be rejected");
+    }
+
+    @Test
+    @DisplayName("test FundTransfer amount json round trip")
+    void testJsonRoundTrip() throws Exception {
+        FundTransfer fundTransfer = objectMapper.readValue("{\"fromAccount\":1,\"toAccount\":2,\"amount\":200.5}", FundTransfer.class);
+        Assertions.assertEquals(20050L, fundTransfer.getAmount(), "Amount should be read in minor units");
+        Assertions.assertEquals("{\"fromAccount\":1,\"toAccount\":2,\"amount\":200.50}", objectMapper.writeValueAsString(fundTransfer), "Amount should be written in major units");
+    }
+
+    @Test
+    @DisplayName("test FundTransfer amount finer than a cent is rejected")
+    void testJsonRejectsSubCent() {
+        Assertions.assertThrows(JsonMappingException.class, () -> objectMapper.readValue("{\"fromAccount\":1,\"toAccount\":2,\"amount\":0.001}", FundTransfer.class));
+    }
+}
@@ -0,0 +1,169 @@
+package com.casestudy.bank.replica;
+
+import com.casestudy.bank.BankApplication;
+import com.casestudy.bank.dto.FundTransfer;
+import com.casestudy.bank.dto.ReplicaStats;
+import com.casestudy.bank.money.Money;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.hamcrest.Matchers.is;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+//Two more H2 databases stand in for the replicas, each test copies the primary into them as replication would
+@SpringBootTest(properties = {"spring.datasource.url=jdbc:h2:mem:rwprimary;DB_CLOSE_DELAY=-1",
+        "bank.datasource.replicas.enabled=true",
+        "bank.datasource.replicas.urls=" + ReplicaRoutingIT.REPLICA_1 + "," + ReplicaRoutingIT.REPLICA_2,
+        "bank.datasource.replicas.check-interval-ms=3600000"})
+@AutoConfigureMockMvc
+public class ReplicaRoutingIT {
+
+    static final String REPLICA_1 = "jdbc:h2:mem:rwreplica1;DB_CLOSE_DELAY=-1";
+    static final String REPLICA_2 = "jdbc:h2:mem:rwreplica2;DB_CLOSE_DELAY=-1";
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    ReplicaRoutingDataSource replicaRoutingDataSource;
+
+    @TempDir
+    Path directory;
+
+    private final List<JdbcTemplate> replicas = List.of(replica(REPLICA_1), replica(REPLICA_2));
+
+    @BeforeEach
+    void setUp() {
+        //heartbeat, copy, then a check that finds both replicas caught up
+        replicaRoutingDataSource.checkReplicas();
+        String script = directory.resolve("primary.sql").toString();
+        jdbcTemplate.execute("script to '" + script + "'");
+        for (JdbcTemplate replica : replicas) {
+            replica.execute("drop all objects");
+            replica.execute("runscript from '" + script + "'");
+            //marks what was read from a replica
+            replica.update("update customer set first_name = 'Replica' where customer_id = 1");
+        }
+        replicaRoutingDataSource.checkReplicas();
+    }
+
+    @Test
+    @DisplayName("test reads go to the replicas, writes and the writer's next reads to the primary")
+    void testReadYourWrites() throws Exception {
+        //Setup the replicated balance
+        String balance = jdbcTemplate.queryForObject("select balance from account where account_id = 1", String.class);
+
+        //Execute a transfer by one client
+        mockMvc.perform(post("/bank/transfer")
+                .header(ReplicaClientFilter.CLIENT_ID_HEADER, "writer")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(new FundTransfer(1, 2, Money.of(1)))))
+                .andExpect(status().isOk());
+
+        //Assert another client reads the replicas, the writer the primary
+        mockMvc.perform(get("/bank/customer/{customerId}", 1).header(ReplicaClientFilter.CLIENT_ID_HEADER, "reader"))
+                .andExpect(jsonPath("$.firstName", is("Replica")))
+                .andExpect(jsonPath("$.account.balance", is(Double.valueOf(balance))));
+        mockMvc.perform(get("/bank/customers").header(ReplicaClientFilter.CLIENT_ID_HEADER, "reader"))
+                .andExpect(jsonPath("$[0].firstName", is("Replica")));
+        mockMvc.perform(get("/bank/balance/{accountId}", 1).header(ReplicaClientFilter.CLIENT_ID_HEADER, "reader"))
+                .andExpect(jsonPath("$.balance", is(Double.valueOf(balance))));
+        mockMvc.perform(get("/bank/customer/{customerId}", 1).header(ReplicaClientFilter.CLIENT_ID_HEADER, "writer"))
+                .andExpect(jsonPath("$.firstName", is("Sagar")))
+                .andExpect(jsonPath("$.account.balance", is(Double.valueOf(balance) - 1)));
+    }
+
+    @Test
+    @DisplayName("test reads fall back to the primary when every replica lags")
+    void testLaggingReplicas() throws Exception {
+        //Setup replicas whose heartbeat stopped a minute ago
+        for (JdbcTemplate replica : replicas)
+            replica.update("update replica_heartbeat set written_at = written_at - 60000");
+        replicaRoutingDataSource.checkReplicas();
+
+        //Execute and Assert the read comes from the primary
+        mockMvc.perform(get("/bank/customer/{customerId}", 1).header(ReplicaClientFilter.CLIENT_ID_HEADER, "reader"))
+                .andExpect(jsonPath("$.firstName", is("Sagar")));
+        mockMvc.perform(get("/bank/metrics/replicas"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].healthy", is(false)))
+                .andExpect(jsonPath("$[1].healthy", is(false)));
+    }
+
+    @Test
+    @DisplayName("test a lagging replica takes no reads until it catches up")
+    void testReplicaCatchesUp() throws Exception {
+        //Setup one lagging replica
+        replicas.get(0).update("update replica_heartbeat set written_at = written_at - 60000");
+        replicaRoutingDataSource.checkReplicas();
+
+        long[] readsBefore = {replicaRoutingDataSource.getStats().get(0).getReads(), replicaRoutingDataSource.getStats().get(1).getReads()};
+
+        //Execute reads that would go round robin
+        for (int i = 0; i < 4; i++)
+            mockMvc.perform(get("/bank/customer/{customerId}", 1)).andExpect(jsonPath("$.firstName", is("Replica")));
+
+        //Assert the healthy replica served them all
+        List<ReplicaStats> stats = replicaRoutingDataSource.getStats();
+        Assertions.assertFalse(stats.get(0).isHealthy(), "Lagging replica should be skipped");
+        Assertions.assertEquals(readsBefore[0], stats.get(0).getReads(), "Lagging replica should serve no reads");
+        Assertions.assertEquals(readsBefore[1] + 4, stats.get(1).getReads(), "Healthy replica should serve every read");
+
+        //Execute the replication of the latest heartbeat and the next check
+        Long heartbeat = jdbcTemplate.queryForObject("select written_at from replica_heartbeat", Long.class);
+        replicas.get(0).update("update replica_heartbeat set written_at = ?", heartbeat);
+        replicaRoutingDataSource.checkReplicas();
+
+        //Assert it is back
+        mockMvc.perform(get("/bank/metrics/replicas"))
+                .andExpect(jsonPath("$[0].healthy", is(true)))
+                .andExpect(jsonPath("$[0].lagMs", is(0)));
+    }
+
+    @Test
+    @DisplayName("test replicas refuse to start with open-in-view")
+    void testOpenInViewRejected() {
+        //Execute a startup with the entity manager held for the whole request
+        Exception exception = Assertions.assertThrows(Exception.class, () -> new SpringApplicationBuilder(BankApplication.class).run(
+                "--spring.datasource.url=jdbc:h2:mem:rwopeninview;DB_CLOSE_DELAY=-1",
+                "--spring.main.banner-mode=off",
+                "--server.port=0",
+                "--spring.jpa.open-in-view=true",
+                "--bank.datasource.replicas.enabled=true",
+                "--bank.datasource.replicas.urls=" + REPLICA_1).close());
+
+        //Assert the response
+        Throwable cause = NestedExceptionUtils.getMostSpecificCause(exception);
+        Assertions.assertTrue(cause instanceof IllegalStateException, "Startup should fail on the replica data source");
+        Assertions.assertEquals("bank.datasource.replicas.enabled needs spring.jpa.open-in-view=false", cause.getMessage(), "Failure should name the setting");
+    }
+
+    private static JdbcTemplate replica(String url) {
+        return new JdbcTemplate(new DriverManagerDataSource(url, "sa", ""));
+    }
+}
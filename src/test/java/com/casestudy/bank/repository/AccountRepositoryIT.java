@@ -2,6 +2,7 @@ package com.casestudy.bank.repository;
 
 import com.casestudy.bank.model.Account;
 import com.casestudy.bank.model.AccountType;
+import com.casestudy.bank.money.Money;
 import com.github.database.rider.core.api.connection.ConnectionHolder;
 import com.github.database.rider.junit5.DBUnitExtension;
 import org.assertj.core.util.Lists;
@@ -13,6 +14,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 
 import javax.sql.DataSource;
+import java.math.BigDecimal;
 import java.util.List;
 import java.util.Optional;
 
@@ -46,7 +48,7 @@ public class AccountRepositoryIT {
         Account a = account.get();
         Assertions.assertEquals(1, a.getAccountId(), "The widget ID should be 1");
         Assertions.assertEquals(AccountType.SAVING, a.getAccountType(), "Incorrect Account Type");
-        Assertions.assertEquals(20000.0, a.getBalance(), "Incorrect Balance");
+        Assertions.assertEquals(Money.of(20000), a.getBalance(), "Incorrect Balance");
     }
 
     @Test
@@ -69,4 +71,14 @@ public class AccountRepositoryIT {
         Account account = accountRepository.findByAccountId(4);
         Assertions.assertFalse(account != null, "A account should not be returned");
     }
-}
\ No newline at end of file
+
+    @Test
+    @DisplayName("Update Balance")
+    void testUpdateBalance() {
+        long original = accountRepository.findByAccountId(3).getBalance();
+        int updated = accountRepository.updateBalance(3, Money.fromDecimal(new BigDecimal("1234.56")));
+        Assertions.assertEquals(1, updated, "One account should be updated");
+        Assertions.assertEquals(123456L, accountRepository.findByAccountId(3).getBalance(), "Balance should keep its minor units");
+        accountRepository.updateBalance(3, original);
+    }
+}
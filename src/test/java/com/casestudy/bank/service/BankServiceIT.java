@@ -1,7 +1,10 @@
 package com.casestudy.bank.service;
 
-import com.casestudy.bank.model.Account;
+import com.casestudy.bank.dto.AccountBalance;
+import com.casestudy.bank.dto.FundTransfer;
+import com.casestudy.bank.dto.TransferResult;
 import com.casestudy.bank.model.Customer;
+import com.casestudy.bank.money.Money;
 import com.casestudy.bank.repository.AccountRepository;
 import com.casestudy.bank.repository.CustomerRepository;
 import org.junit.jupiter.api.Assertions;
@@ -10,6 +13,7 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 
+import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
 
@@ -46,16 +50,38 @@ public class BankServiceIT {
     @DisplayName("test transferFunds")
     void testTransferFunds() {
         //Execute the service call
-        String status = bankService.transferFunds(1, 2, 600.0);
+        String status = bankService.transferFunds(1, 2, Money.of(600));
         //Assert the response
         Assertions.assertEquals("SUCCESS", status, "Transfer should not happen");
     }
 
+    @Test
+    @DisplayName("test transferFundsBatch")
+    void testTransferFundsBatch() {
+        long balance2 = accountRepository.findByAccountId(2).getBalance();
+        long balance3 = accountRepository.findByAccountId(3).getBalance();
+
+        //Execute the service call
+        List<TransferResult> results = bankService.transferFundsBatch(Arrays.asList(
+                new FundTransfer(3, 2, Money.of(100)),
+                new FundTransfer(2, 3, Money.of(100)),
+                new FundTransfer(2, 99, Money.of(100)),
+                new FundTransfer(2, 3, balance2 + 1)));
+
+        //Assert the response
+        Assertions.assertEquals("SUCCESS", results.get(0).getStatus(), "First transfer should happen");
+        Assertions.assertEquals("SUCCESS", results.get(1).getStatus(), "Second transfer should happen");
+        Assertions.assertEquals("ID MISMATCH", results.get(2).getStatus(), "Unknown account should not be credited");
+        Assertions.assertEquals("INSUFFICIENT FUNDS", results.get(3).getStatus(), "Overdraft should not happen");
+        Assertions.assertEquals(balance2, accountRepository.findByAccountId(2).getBalance(), "Balance of account 2 should be restored");
+        Assertions.assertEquals(balance3, accountRepository.findByAccountId(3).getBalance(), "Balance of account 3 should be restored");
+    }
+
     @Test
     @DisplayName("Test getBalanceInfo Success")
     void testGetBalanceInfo() {
         //Execute the service call
-        Optional<Account> returnedAccount = bankService.getBalanceOf(1);
+        Optional<AccountBalance> returnedAccount = bankService.getBalanceOf(1);
 
         //Assert the response
         Assertions.assertTrue(returnedAccount.isPresent(), "Account was not found");
@@ -1,23 +1,34 @@
 package com.casestudy.bank.service;
 
+import com.casestudy.bank.contention.ContentionMonitor;
+import com.casestudy.bank.customer.EmailIndex;
+import com.casestudy.bank.dto.AccountBalance;
 import com.casestudy.bank.model.Account;
 import com.casestudy.bank.model.AccountType;
 import com.casestudy.bank.model.Customer;
+import com.casestudy.bank.money.Money;
 import com.casestudy.bank.repository.AccountRepository;
 import com.casestudy.bank.repository.CustomerRepository;
 import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 
 import java.util.Arrays;
 import java.util.List;
+import java.util.Locale;
 import java.util.Optional;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 
 @SpringBootTest
 class BankServiceTest {
@@ -25,17 +36,29 @@ class BankServiceTest {
     @Autowired
     BankService bankService;
 
+    @Autowired
+    ContentionMonitor contentionMonitor;
+
     @MockBean
     AccountRepository accountRepository;
 
     @MockBean
     CustomerRepository customerRepository;
 
+    @MockBean
+    EmailIndex emailIndex;
+
+    @BeforeEach
+    void setUp() {
+        //every email is free unless a test says otherwise
+        doReturn(true).when(emailIndex).reserve(any());
+    }
+
     @Test
     @DisplayName("Test getCustomerByID Success")
     void testGetCustomerByIdSuccess() {
         //Setup our mock repository
-        Account account = new Account(1, AccountType.SAVING, 200.0, null);
+        Account account = new Account(1, AccountType.SAVING, Money.of(200), null);
         Customer customer = new Customer(1, "Sagar", "Nath", "sagar.nath@example.com", account);
         doReturn(Optional.of(customer)).when(customerRepository).findById(1);
 
@@ -80,7 +103,7 @@ class BankServiceTest {
     void testAddAccountSavingWithOneCustomer() {
         //Setup our mock repository
         Customer customer = new Customer(1, "Sagar", "Nath", "sagar.nath@example.com", null);
-        Account account = new Account(1, AccountType.SAVING, 200.0, Arrays.asList(customer));
+        Account account = new Account(1, AccountType.SAVING, Money.of(200), Arrays.asList(customer));
         doReturn(account).when(accountRepository).save(any());
 
         //Execute the service call
@@ -97,7 +120,7 @@ class BankServiceTest {
         //Setup our mock repository
         Customer customer1 = new Customer(1, "Sagar", "Nath", "sagar.nath@example.com", null);
         Customer customer2 = new Customer(2, "Deepak", "Nath", "deeapk.nath@example.com", null);
-        Account account = new Account(1, AccountType.SAVING, 200.0, Arrays.asList(customer1, customer2));
+        Account account = new Account(1, AccountType.SAVING, Money.of(200), Arrays.asList(customer1, customer2));
         doReturn(null).when(accountRepository).save(any());
 
         //Execute the service call
@@ -112,7 +135,7 @@ class BankServiceTest {
     void testAddAccountCurrentWithOneCustomer() {
         //Setup our mock repository
         Customer customer = new Customer(1, "Sagar", "Nath", "sagar.nath@example.com", null);
-        Account account = new Account(1, AccountType.CURRENT, 200.0, Arrays.asList(customer));
+        Account account = new Account(1, AccountType.CURRENT, Money.of(200), Arrays.asList(customer));
         doReturn(account).when(accountRepository).save(account);
 
         //Execute the service call
@@ -129,7 +152,7 @@ class BankServiceTest {
         //Setup our mock repository
         Customer customer1 = new Customer(1, "Sagar", "Nath", "sagar.nath@example.com", null);
         Customer customer2 = new Customer(2, "Deepak", "Nath", "deeapk.nath@example.com", null);
-        Account account = new Account(1, AccountType.CURRENT, 200.0, Arrays.asList(customer1, customer2));
+        Account account = new Account(1, AccountType.CURRENT, Money.of(200), Arrays.asList(customer1, customer2));
         doReturn(null).when(accountRepository).save(any());
 
         //Execute the service call
@@ -146,7 +169,7 @@ class BankServiceTest {
         //Setup our mock repository
         Customer customer1 = new Customer(1, "Sagar", "Nath", "sagar.nath@example.com", null);
         Customer customer2 = new Customer(2, "Deepak", "Nath", "deepak.nath@example.com", null);
-        Account account = new Account(1, AccountType.JOINT, 200.0, Arrays.asList(customer1, customer2));
+        Account account = new Account(1, AccountType.JOINT, Money.of(200), Arrays.asList(customer1, customer2));
         doReturn(account).when(accountRepository).save(account);
 
         //Execute the service call
@@ -162,7 +185,7 @@ class BankServiceTest {
     void testAddAccountJointWithOneCustomer() {
         //Setup our mock repository
         Customer customer1 = new Customer(1, "Sagar", "Nath", "sagar.nath@example.com", null);
-        Account account = new Account(1, AccountType.JOINT, 200.0, Arrays.asList(customer1));
+        Account account = new Account(1, AccountType.JOINT, Money.of(200), Arrays.asList(customer1));
         doReturn(null).when(accountRepository).save(any());
 
         //Execute the service call
@@ -172,6 +195,22 @@ class BankServiceTest {
         Assertions.assertFalse(returnedAccount != null, "Account Should not be created");
     }
 
+    @Test
+    @DisplayName("test addAccount with a registered email")
+    void testAddAccountWithRegisteredEmail() {
+        //Setup an index that already holds the email
+        Customer customer = new Customer(1, "Sagar", "Nath", "Sagar.Nath@example.com", null);
+        Account account = new Account(1, AccountType.SAVING, Money.of(200), Arrays.asList(customer));
+        doReturn(false).when(emailIndex).reserve("sagar.nath@example.com");
+
+        //Execute the service call
+        Account returnedAccount = bankService.addAccount(account);
+
+        //Assert the account is refused without an insert
+        Assertions.assertNull(returnedAccount, "Account Should not be created");
+        verify(accountRepository, never()).save(any());
+    }
+
     @Test
     @DisplayName("test upDateCustomer with unique updated email")
     void testUpdateCustomerSuccess() {
@@ -189,6 +228,47 @@ class BankServiceTest {
         Assertions.assertEquals("Deepak", returnedCustomer.getFirstName(), "Customer Details were not updated");
     }
 
+    @Test
+    @DisplayName("test upDateCustomer to an email another customer holds")
+    void testUpdateCustomerToRegisteredEmail() {
+        //Setup our mock repository and an index that already holds the new email
+        Customer customer1 = new Customer(1, "Sagar", "Nath", "sagar.nath@example.com", null);
+        Customer request = new Customer(1, "Sagar", "Nath", "deepak.nath@example.com", null);
+        doReturn(Optional.of(customer1)).when(customerRepository).findById(1);
+        doReturn(false).when(emailIndex).reserve("deepak.nath@example.com");
+
+        //Execute the service call
+        Customer returnedCustomer = bankService.upDateCustomer(1, request);
+
+        //Assert the update is refused without touching the database
+        Assertions.assertNull(returnedCustomer, "Customer Details Should not be Updated");
+        verify(customerRepository, never()).save(any());
+    }
+
+    @Test
+    @DisplayName("test emails are lower cased the same way whatever the default locale")
+    void testEmailsLowerCasedWithoutLocale() {
+        //Setup a default locale that lower cases "I" to a dotless "ı"
+        Locale defaultLocale = Locale.getDefault();
+        Locale.setDefault(new Locale("tr", "TR"));
+        try {
+            Account account = new Account(1, AccountType.SAVING, Money.of(200), Arrays.asList(new Customer("Irem", "Nath", "IREM.NATH@example.com", null)));
+            Customer customer = new Customer(2, "Sagar", "Nath", "sagar.nath@example.com", null);
+            doReturn(Optional.of(customer)).when(customerRepository).findById(2);
+            doAnswer(invocation -> invocation.getArgument(0)).when(customerRepository).save(any());
+
+            //Execute the service calls
+            bankService.saveAccountDetails(account);
+            Customer updated = bankService.upDateCustomer(2, new Customer(2, "Sagar", "Nath", "INFO@example.com", null));
+
+            //Assert the stored emails match the index's normal form
+            Assertions.assertEquals("irem.nath@example.com", account.getCustomers().get(0).getEmail(), "New customer email should be lower cased");
+            Assertions.assertEquals("info@example.com", updated.getEmail(), "Updated email should be lower cased");
+        } finally {
+            Locale.setDefault(defaultLocale);
+        }
+    }
+
     @Test
     @DisplayName("test upDateCustomer with existing customer having same email")
     void testUpdateCustomerFail() {
@@ -209,13 +289,12 @@ class BankServiceTest {
     @DisplayName("test transferFunds with valid account and sufficient funds")
     void testTransferFundsValidAccountSufficientFund() {
         //Setup our mock repository
-        Account account1 = new Account(1, AccountType.JOINT, 500.0, null);
-        Account account2 = new Account(2, AccountType.CURRENT, 200.0, null);
-        doReturn(account1).when(accountRepository).findByAccountId(1);
-        doReturn(account2).when(accountRepository).findByAccountId(2);
+        Account account1 = new Account(1, AccountType.JOINT, Money.of(500), null);
+        Account account2 = new Account(2, AccountType.CURRENT, Money.of(200), null);
+        doReturn(List.of(account1, account2)).when(accountRepository).findByAccountIdIn(any());
 
         //Execute the service call
-        String status = bankService.transferFunds(1, 2, 300.0);
+        String status = bankService.transferFunds(1, 2, Money.of(300));
         //Assert the response
         Assertions.assertEquals("SUCCESS", status, "Transfer should happen");
     }
@@ -224,13 +303,12 @@ class BankServiceTest {
     @DisplayName("test transferFunds with valid account and insufficient funds")
     void testTransferFundsValidAccountInSufficientFund() {
         //Setup our mock repository
-        Account account1 = new Account(1, AccountType.JOINT, 500.0, null);
-        Account account2 = new Account(2, AccountType.CURRENT, 200.0, null);
-        doReturn(account1).when(accountRepository).findByAccountId(1);
-        doReturn(account2).when(accountRepository).findByAccountId(2);
+        Account account1 = new Account(1, AccountType.JOINT, Money.of(500), null);
+        Account account2 = new Account(2, AccountType.CURRENT, Money.of(200), null);
+        doReturn(List.of(account1, account2)).when(accountRepository).findByAccountIdIn(any());
 
         //Execute the service call
-        String status = bankService.transferFunds(1, 2, 600.0);
+        String status = bankService.transferFunds(1, 2, Money.of(600));
         //Assert the response
         Assertions.assertEquals("INSUFFICIENT FUNDS", status, "Transfer should not happen");
     }
@@ -239,43 +317,79 @@ class BankServiceTest {
     @DisplayName("test transferFunds with invalid account")
     void testTransferFundsInValidAccount() {
         //Setup our mock repository
-        Account account1 = new Account(1, AccountType.JOINT, 500.0, null);
-        doReturn(account1).when(accountRepository).findByAccountId(1);
-        doReturn(null).when(accountRepository).findByAccountId(2);
+        Account account1 = new Account(1, AccountType.JOINT, Money.of(500), null);
+        doReturn(List.of(account1)).when(accountRepository).findByAccountIdIn(any());
 
         //Execute the service call
-        String status = bankService.transferFunds(1, 2, 200.0);
+        String status = bankService.transferFunds(1, 2, Money.of(200));
         //Assert the response
         Assertions.assertEquals("ID MISMATCH", status, "Transfer should not happen");
     }
 
+    @Test
+    @DisplayName("test transferFunds retries after an optimistic lock conflict")
+    void testTransferFundsRetriesConflict() {
+        //Setup our mock repository, the first save loses the race on account 50
+        doAnswer(invocation -> List.of(new Account(50, AccountType.JOINT, Money.of(500), null), new Account(51, AccountType.CURRENT, Money.of(200), null)))
+                .when(accountRepository).findByAccountIdIn(any());
+        doThrow(new ObjectOptimisticLockingFailureException(Account.class, 50))
+                .doAnswer(invocation -> invocation.getArgument(0))
+                .when(accountRepository).save(any(Account.class));
+
+        //Execute the service call
+        String status = bankService.transferFunds(50, 51, Money.of(300));
+
+        //Assert the response
+        Assertions.assertEquals("SUCCESS", status, "Transfer should succeed on retry");
+        Assertions.assertEquals(1, contentionMonitor.get(50).getConflicts(), "Conflict should be blamed on account 50");
+        Assertions.assertEquals(0, contentionMonitor.get(51).getConflicts(), "Account 51 did not conflict");
+        Assertions.assertEquals(1, contentionMonitor.get(51).getRetries(), "Retry should be counted for both accounts");
+    }
+
+    @Test
+    @DisplayName("test transferFunds gives up after max attempts")
+    void testTransferFundsGivesUp() {
+        //Setup our mock repository, every save loses the race
+        doAnswer(invocation -> List.of(new Account(60, AccountType.JOINT, Money.of(500), null), new Account(61, AccountType.CURRENT, Money.of(200), null)))
+                .when(accountRepository).findByAccountIdIn(any());
+        doThrow(new ObjectOptimisticLockingFailureException(Account.class, 61)).when(accountRepository).save(any(Account.class));
+
+        //Execute the service call
+        String status = bankService.transferFunds(60, 61, Money.of(300));
+
+        //Assert the response
+        Assertions.assertEquals("CONFLICT", status, "Transfer should give up");
+        Assertions.assertEquals(5, contentionMonitor.get(61).getConflicts(), "Every attempt should conflict");
+        Assertions.assertEquals(4, contentionMonitor.get(60).getRetries(), "All but the last attempt should be retried");
+        Assertions.assertEquals(1, contentionMonitor.get(60).getGiveUps(), "Give-up should be counted");
+    }
+
     @Test
     @DisplayName("Test getBalanceInfo Success")
     void testGetBalanceInfoSuccess() {
         //Setup our mock repository
-        Customer customer = new Customer(1, "Sagar", "Nath", "sagar.nath@example.com", null);
-        Account account = new Account(1, AccountType.SAVING, 200.0, Arrays.asList(customer));
-        doReturn(Optional.of(account)).when(accountRepository).findById(1);
+        AccountBalance balance = new AccountBalance(1, AccountType.SAVING, Money.of(200));
+        doReturn(Optional.of(balance)).when(accountRepository).findBalanceByAccountId(1);
 
         //Execute the service call
-        Optional<Account> returnedAccount = bankService.getBalanceOf(1);
+        Optional<AccountBalance> returnedBalance = bankService.getBalanceOf(1);
 
 
         //Assert the response
-        Assertions.assertTrue(returnedAccount.isPresent(), "Account was not found");
-        Assertions.assertSame(returnedAccount.get(), account, "The Account was not the same as the mock");
+        Assertions.assertTrue(returnedBalance.isPresent(), "Account was not found");
+        Assertions.assertSame(returnedBalance.get(), balance, "The Account was not the same as the mock");
     }
 
     @Test
     @DisplayName("Test getBalanceInfo Failure")
     void testGetBalanceInfoNotFound() {
         //Setup our mock repository
-        doReturn(Optional.empty()).when(accountRepository).findById(1);
+        doReturn(Optional.empty()).when(accountRepository).findBalanceByAccountId(1);
 
         //Execute the service call
-        Optional<Account> returnedAccount = bankService.getBalanceOf(1);
+        Optional<AccountBalance> returnedBalance = bankService.getBalanceOf(1);
 
         //Assert the response
-        Assertions.assertFalse(returnedAccount.isPresent(), "Account should not be found");
+        Assertions.assertFalse(returnedBalance.isPresent(), "Account should not be found");
     }
 }
\ No newline at end of file
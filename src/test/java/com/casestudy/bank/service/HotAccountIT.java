@@ -0,0 +1,121 @@
+package com.casestudy.bank.service;
+
+import com.casestudy.bank.money.Money;
+import com.casestudy.bank.repository.AccountRepository;
+import com.casestudy.bank.repository.AccountSlotRepository;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+@SpringBootTest(properties = {"spring.datasource.url=jdbc:h2:mem:hotdb;DB_CLOSE_DELAY=-1",
+        "bank.hot-accounts.ids=3", "bank.hot-accounts.slots=4", "bank.transfer.retry.max-attempts=100"})
+public class HotAccountIT {
+
+    @Autowired
+    BankService bankService;
+
+    @Autowired
+    AccountRepository accountRepository;
+
+    @Autowired
+    AccountSlotRepository accountSlotRepository;
+
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+    @Test
+    @DisplayName("test concurrent credits to a hot account go to its slots")
+    void testConcurrentCredits() throws Exception {
+        long before = bankService.getBalanceOf(3).get().getBalance();
+        Long rowVersion = accountRepository.findByAccountId(3).getVersion();
+
+        //Execute credits to account 3 from several threads
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Callable<Integer>> tasks = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            int from = i % 2 == 0 ? 1 : 2;
+            tasks.add(() -> {
+                int succeeded = 0;
+                for (int j = 0; j < 25; j++) {
+                    if (bankService.transferFunds(from, 3, Money.of(1)).equals("SUCCESS"))
+                        succeeded++;
+                }
+                return succeeded;
+            });
+        }
+        int succeeded = 0;
+        for (Future<Integer> future : executor.invokeAll(tasks))
+            succeeded += future.get();
+        executor.shutdown();
+
+        //Assert the balances
+        Assertions.assertEquals(200, succeeded, "Every credit should succeed");
+        Assertions.assertEquals(before + Money.of(succeeded), bankService.getBalanceOf(3).get().getBalance(), "Balance should be the row plus its slots");
+        Assertions.assertEquals(rowVersion, accountRepository.findByAccountId(3).getVersion(), "Credits should not touch the account row");
+    }
+
+    @Test
+    @DisplayName("test a credit to a hot account does not wait for its row lock")
+    void testCreditWhileRowLocked() throws Exception {
+        //Setup a transaction holding the row lock of account 3 until released
+        CountDownLatch locked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        Future<?> holder = executor.submit(() -> transactionTemplate.executeWithoutResult(transaction -> {
+            accountRepository.findLockedByAccountId(3);
+            locked.countDown();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+        Assertions.assertTrue(locked.await(5, TimeUnit.SECONDS), "Row lock should be taken");
+
+        //Execute a credit to account 3 while the row is locked
+        Future<String> credit = executor.submit(() -> bankService.transferFunds(1, 3, Money.of(1)));
+        String status;
+        try {
+            status = credit.get(2, TimeUnit.SECONDS);
+        } finally {
+            release.countDown();
+            holder.get(5, TimeUnit.SECONDS);
+            executor.shutdown();
+        }
+
+        //Assert the response
+        Assertions.assertEquals("SUCCESS", status, "Credit should land on a slot without the row lock");
+    }
+
+    @Test
+    @DisplayName("test debit beyond the account row folds the slots")
+    void testDebitFoldsSlots() {
+        //Setup credits that stay in the slots
+        for (int i = 0; i < 10; i++)
+            bankService.transferFunds(2, 3, Money.of(10));
+        long total = bankService.getBalanceOf(3).get().getBalance();
+        long row = accountRepository.findByAccountId(3).getBalance();
+
+        //Execute a debit larger than the row, then one larger than everything left
+        String status = bankService.transferFunds(3, 1, row + Money.of(50));
+        String insufficient = bankService.transferFunds(3, 1, total);
+
+        //Assert the response
+        Assertions.assertEquals("SUCCESS", status, "Slots should cover the debit");
+        Assertions.assertEquals("INSUFFICIENT FUNDS", insufficient, "Debit should not exceed the total");
+        Assertions.assertEquals(total - row - Money.of(50), bankService.getBalanceOf(3).get().getBalance(), "Total should drop by the debit");
+        Assertions.assertEquals(0, accountSlotRepository.findTotalBalanceByAccountId(3).get().getBalance() - accountRepository.findByAccountId(3).getBalance(), "Slots should be folded into the row");
+    }
+}
@@ -0,0 +1,128 @@
+package com.casestudy.bank.service;
+
+import com.casestudy.bank.dto.FundTransfer;
+import com.casestudy.bank.dto.TransferResult;
+import com.casestudy.bank.idempotency.IdempotencyKeys;
+import com.casestudy.bank.metrics.StatementCounter;
+import com.casestudy.bank.money.Money;
+import com.casestudy.bank.repository.AccountRepository;
+import com.casestudy.bank.repository.IdempotencyRecordRepository;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+@SpringBootTest(properties = {"spring.datasource.url=jdbc:h2:mem:idempotencydb;DB_CLOSE_DELAY=-1", "bank.transfer.retry.max-attempts=100"})
+public class IdempotentTransferIT {
+
+    @Autowired
+    BankService bankService;
+
+    @Autowired
+    AccountRepository accountRepository;
+
+    @Autowired
+    IdempotencyKeys idempotencyKeys;
+
+    @Autowired
+    IdempotencyRecordRepository idempotencyRecordRepository;
+
+    @Test
+    @DisplayName("test a replayed transfer is applied once and answered from memory")
+    void testReplay() {
+        long before = accountRepository.findByAccountId(2).getBalance();
+
+        //Execute the transfer and its replay
+        String status = bankService.transferFunds(2, 3, Money.of(10), "replay-1");
+        long statements = StatementCounter.current();
+        String replayed = bankService.transferFunds(2, 3, Money.of(10), "replay-1");
+        long replayStatements = StatementCounter.current() - statements;
+
+        //Assert the response
+        Assertions.assertEquals("SUCCESS", status, "Transfer should happen");
+        Assertions.assertEquals("SUCCESS", replayed, "Replay should get the first status");
+        Assertions.assertEquals(0, replayStatements, "Replay should not reach the database");
+        Assertions.assertEquals(before - Money.of(10), accountRepository.findByAccountId(2).getBalance(), "Transfer should be applied once");
+        Assertions.assertTrue(idempotencyRecordRepository.existsById("replay-1"), "Key should be persisted");
+    }
+
+    @Test
+    @DisplayName("test a key reused for another transfer is refused")
+    void testKeyReused() {
+        //Execute two different transfers with one key
+        bankService.transferFunds(2, 3, Money.of(10), "reused-1");
+        long before = accountRepository.findByAccountId(2).getBalance();
+        String status = bankService.transferFunds(2, 3, Money.of(20), "reused-1");
+
+        //Assert the response
+        Assertions.assertEquals("KEY REUSED", status, "Second transfer should be refused");
+        Assertions.assertEquals(before, accountRepository.findByAccountId(2).getBalance(), "Balance should not change");
+    }
+
+    @Test
+    @DisplayName("test a key missing from memory is still caught by the database")
+    void testReplayAfterIndexLost() {
+        //Setup a transfer, then drop the in-memory index as a restart without reload would
+        bankService.transferFunds(2, 3, Money.of(10), "lost-1");
+        long before = accountRepository.findByAccountId(2).getBalance();
+        idempotencyKeys.init();
+
+        //Execute the replay
+        String status = bankService.transferFunds(2, 3, Money.of(10), "lost-1");
+
+        //Assert the response
+        Assertions.assertEquals("SUCCESS", status, "Replay should get the first status");
+        Assertions.assertEquals(before, accountRepository.findByAccountId(2).getBalance(), "Replay should be rolled back");
+    }
+
+    @Test
+    @DisplayName("test a batch replays keys seen before and within itself")
+    void testBatchReplay() {
+        //Setup a keyed transfer
+        bankService.transferFunds(2, 3, Money.of(10), "batch-1");
+        long before = accountRepository.findByAccountId(2).getBalance();
+
+        //Execute a batch repeating it and another key twice
+        List<TransferResult> results = bankService.transferFundsBatch(Arrays.asList(
+                new FundTransfer(2, 3, Money.of(10), "batch-1"),
+                new FundTransfer(2, 3, Money.of(5), "batch-2"),
+                new FundTransfer(2, 3, Money.of(5), "batch-2"),
+                new FundTransfer(2, 3, Money.of(6), "batch-2")));
+
+        //Assert the results
+        Assertions.assertEquals("SUCCESS", results.get(0).getStatus(), "Earlier key should be replayed");
+        Assertions.assertEquals("SUCCESS", results.get(2).getStatus(), "Key repeated in the batch should be replayed");
+        Assertions.assertEquals("KEY REUSED", results.get(3).getStatus(), "Key of another transfer should be refused");
+        Assertions.assertEquals(before - Money.of(5), accountRepository.findByAccountId(2).getBalance(), "Only the new transfer should be applied");
+        Assertions.assertEquals("SUCCESS", bankService.transferFunds(2, 3, Money.of(5), "batch-2"), "Batch key should be replayed later");
+    }
+
+    @Test
+    @DisplayName("test concurrent requests with one key transfer once")
+    void testConcurrentDuplicates() throws Exception {
+        long before = accountRepository.findByAccountId(3).getBalance();
+
+        //Execute the same keyed transfer from several threads
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Callable<String>> tasks = new ArrayList<>();
+        for (int i = 0; i < 8; i++)
+            tasks.add(() -> bankService.transferFunds(3, 1, Money.of(100), "concurrent-1"));
+        List<String> statuses = new ArrayList<>();
+        for (Future<String> future : executor.invokeAll(tasks))
+            statuses.add(future.get());
+        executor.shutdown();
+
+        //Assert the balances
+        statuses.forEach(status -> Assertions.assertEquals("SUCCESS", status, "Every request should get the first status"));
+        Assertions.assertEquals(before - Money.of(100), accountRepository.findByAccountId(3).getBalance(), "Transfer should be applied once");
+    }
+}
@@ -0,0 +1,95 @@
+package com.casestudy.bank.service;
+
+import com.casestudy.bank.dto.FundTransfer;
+import com.casestudy.bank.dto.TransferResult;
+import com.casestudy.bank.idempotency.IdempotencyKeys;
+import com.casestudy.bank.money.Money;
+import com.casestudy.bank.repository.IdempotencyRecordRepository;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+//The ledger moves money outside any database transaction, so a duplicate key must be caught before the transfer runs
+@SpringBootTest(properties = {"spring.datasource.url=jdbc:h2:mem:ledgeridempotencydb;DB_CLOSE_DELAY=-1", "bank.ledger.enabled=true"})
+public class LedgerIdempotentTransferIT {
+
+    @Autowired
+    BankService bankService;
+
+    @Autowired
+    IdempotencyKeys idempotencyKeys;
+
+    @Autowired
+    IdempotencyRecordRepository idempotencyRecordRepository;
+
+    @Test
+    @DisplayName("test a key the index forgot is answered from the table without moving money")
+    void testReplayAfterIndexLost() {
+        //Setup a transfer, then drop the in-memory index as a rotation would
+        bankService.transferFunds(2, 3, Money.of(10), "ledger-lost-1");
+        long before = balanceOf(2);
+        idempotencyKeys.init();
+
+        //Execute the replay
+        String status = bankService.transferFunds(2, 3, Money.of(10), "ledger-lost-1");
+
+        //Assert the response
+        Assertions.assertEquals("SUCCESS", status, "Replay should get the first status");
+        Assertions.assertEquals(before, balanceOf(2), "Replay should not move money");
+        Assertions.assertEquals("SUCCESS", idempotencyRecordRepository.findById("ledger-lost-1").get().getStatus(), "Outcome should be stored");
+    }
+
+    @Test
+    @DisplayName("test a batch replays a key the index forgot without moving money")
+    void testBatchReplayAfterIndexLost() {
+        //Setup a transfer, then drop the in-memory index
+        bankService.transferFunds(2, 3, Money.of(10), "ledger-batch-1");
+        long before = balanceOf(2);
+        idempotencyKeys.init();
+
+        //Execute a batch repeating it next to a new key
+        List<TransferResult> results = bankService.transferFundsBatch(Arrays.asList(
+                new FundTransfer(2, 3, Money.of(10), "ledger-batch-1"),
+                new FundTransfer(2, 3, Money.of(5), "ledger-batch-2")));
+
+        //Assert the results
+        Assertions.assertEquals("SUCCESS", results.get(0).getStatus(), "Earlier key should be replayed");
+        Assertions.assertEquals("SUCCESS", results.get(1).getStatus(), "New key should transfer");
+        Assertions.assertEquals(before - Money.of(5), balanceOf(2), "Only the new transfer should be applied");
+    }
+
+    @Test
+    @DisplayName("test concurrent requests with one key transfer once")
+    void testConcurrentDuplicates() throws Exception {
+        long before = balanceOf(3);
+
+        //Execute the same keyed transfer from several threads
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Callable<String>> tasks = new ArrayList<>();
+        for (int i = 0; i < 8; i++)
+            tasks.add(() -> bankService.transferFunds(3, 1, Money.of(100), "ledger-concurrent-1"));
+        List<String> statuses = new ArrayList<>();
+        for (Future<String> future : executor.invokeAll(tasks))
+            statuses.add(future.get());
+        executor.shutdown();
+
+        //Assert the balances, a request that met the transfer still in flight is told to retry
+        statuses.forEach(status -> Assertions.assertTrue(status.equals("SUCCESS") || status.equals("CONFLICT"), "Unexpected status " + status));
+        Assertions.assertEquals(before - Money.of(100), balanceOf(3), "Transfer should be applied once");
+        Assertions.assertEquals("SUCCESS", bankService.transferFunds(3, 1, Money.of(100), "ledger-concurrent-1"), "Retry should get the first status");
+    }
+
+    private long balanceOf(int accountId) {
+        return bankService.getBalanceOf(accountId).get().getBalance();
+    }
+}
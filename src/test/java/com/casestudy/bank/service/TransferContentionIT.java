@@ -0,0 +1,90 @@
+package com.casestudy.bank.service;
+
+import com.casestudy.bank.contention.ContentionMonitor;
+import com.casestudy.bank.dto.AccountContention;
+import com.casestudy.bank.model.Account;
+import com.casestudy.bank.money.Money;
+import com.casestudy.bank.repository.AccountRepository;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+//Concurrent transfers on the same two accounts take no row locks, they must collide on the version check and be retried
+//without losing updates
+@SpringBootTest(properties = {"spring.datasource.url=jdbc:h2:mem:contentiondb;DB_CLOSE_DELAY=-1",
+        "bank.transfer.retry.max-attempts=100"})
+public class TransferContentionIT {
+
+    @Autowired
+    BankService bankService;
+
+    @Autowired
+    AccountRepository accountRepository;
+
+    @Autowired
+    ContentionMonitor contentionMonitor;
+
+    @Test
+    @DisplayName("test concurrent transfers keep balances consistent")
+    void testConcurrentTransfers() throws Exception {
+        long before2 = accountRepository.findByAccountId(2).getBalance();
+        long before3 = accountRepository.findByAccountId(3).getBalance();
+
+        //Execute transfers in both directions from several threads
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Callable<Integer>> tasks = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            boolean forward = i % 2 == 0;
+            tasks.add(() -> {
+                int succeeded = 0;
+                for (int j = 0; j < 50; j++) {
+                    String status = forward ? bankService.transferFunds(2, 3, Money.of(1)) : bankService.transferFunds(3, 2, Money.of(1));
+                    if (status.equals("SUCCESS"))
+                        succeeded++;
+                }
+                return forward ? succeeded : -succeeded;
+            });
+        }
+        int net = 0;
+        for (Future<Integer> future : executor.invokeAll(tasks))
+            net += future.get();
+        executor.shutdown();
+
+        //Assert the balances
+        long after2 = accountRepository.findByAccountId(2).getBalance();
+        long after3 = accountRepository.findByAccountId(3).getBalance();
+        Assertions.assertEquals(before2 + before3, after2 + after3, "Money should be conserved");
+        Assertions.assertEquals(before2 - Money.of(net), after2, "Every successful transfer should be applied once");
+        AccountContention contention2 = contentionMonitor.get(2);
+        AccountContention contention3 = contentionMonitor.get(3);
+        Assertions.assertTrue(contention2.getConflicts() + contention3.getConflicts() > 0, "Colliding transfers should fail their version check");
+        Assertions.assertTrue(contention2.getRetries() > 0, "Conflicts should be retried");
+    }
+
+    @Test
+    @DisplayName("test a write based on a stale read is rejected")
+    void testStaleWriteRejected() {
+        //Setup a copy of account 2 read before a transfer commits
+        Account stale = accountRepository.findByAccountId(2);
+        long before = stale.getBalance();
+        Assertions.assertEquals("SUCCESS", bankService.transferFunds(2, 3, Money.of(10)), "Transfer should happen");
+
+        //Execute a write of the stale copy
+        stale.setBalance(stale.getBalance() + Money.of(1000));
+
+        //Assert the response
+        Assertions.assertThrows(ObjectOptimisticLockingFailureException.class, () -> accountRepository.save(stale), "Stale version should be rejected");
+        Assertions.assertEquals(before - Money.of(10), accountRepository.findByAccountId(2).getBalance(), "Transfer should not be overwritten");
+        Assertions.assertEquals(stale.getVersion() + 1, accountRepository.findByAccountId(2).getVersion(), "Transfer should bump the version");
+    }
+}
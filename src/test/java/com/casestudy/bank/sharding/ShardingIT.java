@@ -0,0 +1,170 @@
+package com.casestudy.bank.sharding;
+
+import com.casestudy.bank.model.Account;
+import com.casestudy.bank.model.AccountType;
+import com.casestudy.bank.model.Customer;
+import com.casestudy.bank.money.Money;
+import com.casestudy.bank.service.BankService;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.hamcrest.Matchers.is;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+//Three H2 databases as shards, each checked directly to see where rows landed
+@SpringBootTest(properties = {"spring.datasource.url=" + ShardingIT.SHARD_0,
+        "bank.sharding.enabled=true",
+        "bank.sharding.urls=" + ShardingIT.SHARD_1 + "," + ShardingIT.SHARD_2,
+        "bank.sharding.recovery-delay-ms=0",
+        "bank.sharding.recovery-interval-ms=3600000"})
+@AutoConfigureMockMvc
+public class ShardingIT {
+
+    static final String SHARD_0 = "jdbc:h2:mem:shard0db;DB_CLOSE_DELAY=-1";
+    static final String SHARD_1 = "jdbc:h2:mem:shard1db;DB_CLOSE_DELAY=-1";
+    static final String SHARD_2 = "jdbc:h2:mem:shard2db;DB_CLOSE_DELAY=-1";
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @Autowired
+    BankService bankService;
+
+    @Autowired
+    AccountShards accountShards;
+
+    @Autowired
+    CrossShardTransfers crossShardTransfers;
+
+    private final List<JdbcTemplate> shards = List.of(shard(SHARD_0), shard(SHARD_1), shard(SHARD_2));
+
+    @Test
+    @DisplayName("test new accounts and their customers are spread over the shards and found again by id")
+    void testAccountsSpreadOverShards() {
+        //Execute three account openings
+        Set<Integer> used = new HashSet<>();
+        for (int i = 0; i < 3; i++) {
+            Account account = openAccount(100);
+
+            //Assert the account and its customer are on the shard their ids map to, and only there
+            int shard = accountShards.shardOf(account.getAccountId());
+            Integer customerId = account.getCustomers().get(0).getCustomerId();
+            Assertions.assertEquals(shard, accountShards.shardOf(customerId), "Customer should live with its account");
+            for (int other = 0; other < shards.size(); other++) {
+                Integer accounts = shards.get(other).queryForObject("select count(*) from account where account_id = ?", Integer.class, account.getAccountId());
+                Assertions.assertEquals(other == shard ? 1 : 0, accounts, "Account " + account.getAccountId() + " on shard " + other);
+            }
+            Assertions.assertTrue(bankService.getCustomerById(customerId).isPresent(), "Customer should be found on its shard");
+            Assertions.assertEquals(Money.of(100), bankService.getBalanceOf(account.getAccountId()).get().getBalance());
+            used.add(shard);
+        }
+        Assertions.assertEquals(3, used.size(), "Round robin should use every shard");
+    }
+
+    @Test
+    @DisplayName("test a transfer between shards debits one and credits the other")
+    void testCrossShardTransfer() throws Exception {
+        //Setup accounts on two shards
+        Account from = openAccount(100);
+        Account to = openAccount(100);
+        Assertions.assertNotEquals(accountShards.shardOf(from.getAccountId()), accountShards.shardOf(to.getAccountId()));
+        long transfers = crossShardTransfers.getStats().getCrossShardTransfers();
+
+        //Execute
+        String status = bankService.transferFunds(from.getAccountId(), to.getAccountId(), Money.of(30));
+
+        //Assert both sides and their history, nothing left pending
+        Assertions.assertEquals("SUCCESS", status);
+        Assertions.assertEquals(Money.of(70), bankService.getBalanceOf(from.getAccountId()).get().getBalance());
+        Assertions.assertEquals(Money.of(130), bankService.getBalanceOf(to.getAccountId()).get().getBalance());
+        Assertions.assertEquals(1, bankService.getTransactionsPage(from.getAccountId(), null, 0, Long.MAX_VALUE, 10).size());
+        Assertions.assertEquals(1, bankService.getTransactionsPage(to.getAccountId(), null, 0, Long.MAX_VALUE, 10).size());
+        Assertions.assertEquals("INSUFFICIENT FUNDS", bankService.transferFunds(from.getAccountId(), to.getAccountId(), Money.of(71)));
+        mockMvc.perform(get("/bank/metrics/sharding"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.shards", is(3)))
+                .andExpect(jsonPath("$.crossShardTransfers", is((int) transfers + 1)))
+                .andExpect(jsonPath("$.pendingReservations", is(0)));
+    }
+
+    @Test
+    @DisplayName("test recovery credits a transfer whose source shard committed alone, exactly once")
+    void testRecovery() {
+        //Setup the state a crash between the debit and the credit leaves behind
+        Account from = openAccount(100);
+        Account to = openAccount(100);
+        JdbcTemplate source = shards.get(accountShards.shardOf(from.getAccountId()));
+        source.update("update account set balance = balance - ? where account_id = ?", Money.of(40), from.getAccountId());
+        source.update("insert into transfer_reservation(transfer_id, from_account, to_account, amount, created_at) values(?, ?, ?, ?, ?)",
+                UUID.randomUUID().toString(), from.getAccountId(), to.getAccountId(), Money.of(40), System.currentTimeMillis() - 1000);
+
+        //Execute recovery twice
+        int first = crossShardTransfers.recover();
+        int second = crossShardTransfers.recover();
+
+        //Assert the credit landed once and the reservation is gone
+        Assertions.assertEquals(1, first, "The reservation should be completed");
+        Assertions.assertEquals(0, second, "Nothing should be left to complete");
+        Assertions.assertEquals(Money.of(140), bankService.getBalanceOf(to.getAccountId()).get().getBalance());
+        Assertions.assertEquals(0, source.queryForObject("select count(*) from transfer_reservation", Integer.class));
+        Assertions.assertTrue(crossShardTransfers.getStats().getRecoveredTransfers() >= 1, "Recovery should be counted");
+    }
+
+    @Test
+    @DisplayName("test customer pages merge every shard in id order and emails stay unique across shards")
+    void testPagesAndEmailsAcrossShards() throws Exception {
+        //Setup a customer on every shard
+        List<Integer> customerIds = new ArrayList<>();
+        for (int i = 0; i < 3; i++)
+            customerIds.add(openAccount(10).getCustomers().get(0).getCustomerId());
+
+        //Execute and Assert a page of every customer is ordered by id
+        List<Integer> all = new ArrayList<>();
+        bankService.getCustomersPage(null, 1000).forEach(customer -> all.add(customer.getCustomerId()));
+        Assertions.assertTrue(all.containsAll(customerIds), "Page should hold the customers of every shard");
+        for (int i = 1; i < all.size(); i++)
+            Assertions.assertTrue(all.get(i - 1) < all.get(i), "Page should be in id order");
+        Assertions.assertEquals(all.subList(0, 2), pageIds(null, 2));
+        Assertions.assertEquals(all.subList(2, 4), pageIds(all.get(1), 2));
+        Assertions.assertEquals(all.size(), bankService.getAllCustomers().size());
+
+        //Assert an email of another shard is refused
+        Customer taken = bankService.getCustomerById(customerIds.get(1)).get();
+        Account duplicate = new Account(null, AccountType.SAVING, Money.of(10), new ArrayList<>(List.of(new Customer("Dup", "Licate", taken.getEmail(), null))));
+        Assertions.assertNull(bankService.addAccount(duplicate), "Email registered on another shard should be refused");
+        mockMvc.perform(get("/bank/customer").param("email", taken.getEmail()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.customerId", is(taken.getCustomerId())));
+    }
+
+    private List<Integer> pageIds(Integer after, int size) {
+        List<Integer> ids = new ArrayList<>();
+        bankService.getCustomersPage(after, size).forEach(customer -> ids.add(customer.getCustomerId()));
+        return ids;
+    }
+
+    private Account openAccount(long units) {
+        String email = UUID.randomUUID() + "@example.com";
+        Account request = new Account(null, AccountType.SAVING, Money.of(units), new ArrayList<>(List.of(new Customer("Shard", "Test", email, null))));
+        return bankService.addAccount(request);
+    }
+
+    private static JdbcTemplate shard(String url) {
+        return new JdbcTemplate(new DriverManagerDataSource(url, "sa", ""));
+    }
+}